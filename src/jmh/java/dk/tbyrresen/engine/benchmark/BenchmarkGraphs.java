@@ -0,0 +1,63 @@
+package dk.tbyrresen.engine.benchmark;
+
+import dk.tbyrresen.engine.CompactGraph;
+import dk.tbyrresen.engine.Graph;
+import dk.tbyrresen.engine.GraphUtils;
+import dk.tbyrresen.engine.Node;
+import dk.tbyrresen.engine.StandardGraph;
+import dk.tbyrresen.engine.generator.GeneratedGraphs;
+import dk.tbyrresen.engine.generator.GraphGenerator;
+import dk.tbyrresen.engine.generator.GridGraphGenerator;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Builds the graphs benchmarks run on from a specification given as a JMH parameter:
+//   grid-<width>        seeded width x width grid with 10% of the edges deleted
+//   <type>:<numNodes>   graph from a generator, see GeneratedGraphs
+//   snapshot:<path>     preprocessed real graph from the graph snapshot cache
+// Generated graphs are reduced to their largest connected component.
+final class BenchmarkGraphs {
+    static final long SEED = 42;
+    private static final double GRID_DELETION_PROBABILITY = 0.1;
+
+    private BenchmarkGraphs() {
+    }
+
+    static Graph<Node> load(String specification) {
+        if (specification.startsWith("grid-")) {
+            var width = Integer.parseInt(specification.substring("grid-".length()));
+            return generate(new GridGraphGenerator(width, width, GRID_DELETION_PROBABILITY, SEED));
+        } else if (specification.startsWith("snapshot:")) {
+            try {
+                return CompactGraph.map(Path.of(specification.substring("snapshot:".length()))).asGraph();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return generate(GeneratedGraphs.fromSpecification(specification));
+    }
+
+    private static Graph<Node> generate(GraphGenerator generator) {
+        var graph = GeneratedGraphs.toGraph(generator);
+        return new StandardGraph<>(GraphUtils.findLargestConnectedComponent(graph));
+    }
+
+    // Deterministic source and target pair for single flow computations
+    static ImmutablePair<Node, Node> pickSourceAndTarget(Graph<Node> graph) {
+        var random = new Random(SEED);
+        List<Node> nodes = new ArrayList<>(graph.getNodes());
+        nodes.sort((n1, n2) -> Long.compare(n1.getId(), n2.getId()));
+        var source = nodes.get(random.nextInt(nodes.size()));
+        var target = source;
+        while (target.equals(source)) {
+            target = nodes.get(random.nextInt(nodes.size()));
+        }
+        return ImmutablePair.of(source, target);
+    }
+}
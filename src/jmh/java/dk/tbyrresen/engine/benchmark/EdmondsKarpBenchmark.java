@@ -0,0 +1,61 @@
+package dk.tbyrresen.engine.benchmark;
+
+import dk.tbyrresen.engine.EdmondsKarp;
+import dk.tbyrresen.engine.Graph;
+import dk.tbyrresen.engine.Node;
+import dk.tbyrresen.engine.UnitFlowNetwork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Measures the augmentation loop alone. The flow network holds the flow, so a fresh one is built before every
+// invocation outside of the measurement.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class EdmondsKarpBenchmark {
+    @Param({"grid-32", "grid-64", "grid-128"})
+    public String graph;
+
+    @Param({"true", "false"})
+    public boolean bidirectional;
+
+    private Graph<Node> benchmarkGraph;
+    private Node source;
+    private Node target;
+    private UnitFlowNetwork<Node> unitFlowNetwork;
+
+    @Setup(Level.Trial)
+    public void setupGraph() {
+        benchmarkGraph = BenchmarkGraphs.load(graph);
+        var sourceAndTarget = BenchmarkGraphs.pickSourceAndTarget(benchmarkGraph);
+        source = sourceAndTarget.getLeft();
+        target = sourceAndTarget.getRight();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupFlowNetwork() {
+        unitFlowNetwork = new UnitFlowNetwork<>(benchmarkGraph, source, target);
+    }
+
+    @Benchmark
+    public int augmentToMaxFlow() {
+        var edmondsKarp = new EdmondsKarp<>(unitFlowNetwork, bidirectional);
+        edmondsKarp.updateFlow();
+        return edmondsKarp.getMaxFlow();
+    }
+}
@@ -0,0 +1,56 @@
+package dk.tbyrresen.engine.benchmark;
+
+import dk.tbyrresen.engine.EdgeCut;
+import dk.tbyrresen.engine.FlowCutter;
+import dk.tbyrresen.engine.Graph;
+import dk.tbyrresen.engine.Node;
+import dk.tbyrresen.engine.VertexCut;
+import dk.tbyrresen.engine.VertexFlowCutter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class FlowCutterBenchmark {
+    @Param({"grid-32", "grid-64", "grid-128", "roadlike:16384"})
+    public String graph;
+
+    private Graph<Node> benchmarkGraph;
+    private Node source;
+    private Node target;
+
+    @Setup
+    public void setup() {
+        benchmarkGraph = BenchmarkGraphs.load(graph);
+        var sourceAndTarget = BenchmarkGraphs.pickSourceAndTarget(benchmarkGraph);
+        source = sourceAndTarget.getLeft();
+        target = sourceAndTarget.getRight();
+    }
+
+    @Benchmark
+    public Set<EdgeCut<Node>> singleRun() {
+        return new FlowCutter<>(benchmarkGraph, source, target, 0.6).getCuts();
+    }
+
+    @Benchmark
+    public List<VertexCut<Node>> singleVertexRun() {
+        return new VertexFlowCutter<>(benchmarkGraph, source, target, 0.6).getCuts();
+    }
+}
@@ -0,0 +1,45 @@
+package dk.tbyrresen.engine.benchmark;
+
+import dk.tbyrresen.engine.Graph;
+import dk.tbyrresen.engine.GraphSeparator;
+import dk.tbyrresen.engine.Node;
+import dk.tbyrresen.engine.Separator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(2)
+public class GraphSeparatorBenchmark {
+    @Param({"grid-32", "grid-64"})
+    public String graph;
+
+    @Param({"1", "8", "32"})
+    public int numFlowCutterRuns;
+
+    private Graph<Node> benchmarkGraph;
+
+    @Setup
+    public void setup() {
+        benchmarkGraph = BenchmarkGraphs.load(graph);
+    }
+
+    @Benchmark
+    public Separator<Node> separate() {
+        return new GraphSeparator<>(benchmarkGraph, 0.6, numFlowCutterRuns).getSeparator();
+    }
+}
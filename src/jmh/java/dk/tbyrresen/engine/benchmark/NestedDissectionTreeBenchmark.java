@@ -0,0 +1,86 @@
+package dk.tbyrresen.engine.benchmark;
+
+import dk.tbyrresen.engine.Graph;
+import dk.tbyrresen.engine.NestedDissectionTree;
+import dk.tbyrresen.engine.NestedDissectionTreeNode;
+import dk.tbyrresen.engine.Node;
+import dk.tbyrresen.engine.StandardEdge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class NestedDissectionTreeBenchmark {
+    private static final double EPSILON = 0.6;
+
+    @State(Scope.Benchmark)
+    public static class GraphState {
+        @Param({"grid-32", "grid-64", "roadlike:16384"})
+        public String graph;
+
+        @Param({"8"})
+        public int numFlowCutterRuns;
+
+        Graph<Node> benchmarkGraph;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            benchmarkGraph = BenchmarkGraphs.load(graph);
+        }
+    }
+
+    // Every measurement iteration starts from a freshly built tree. Each invocation inserts an edge between a new
+    // node and a random existing node, which mirrors the node insertions of the benchmark driver in Runner.
+    @State(Scope.Benchmark)
+    public static class TreeState {
+        NestedDissectionTree<Node> ndTree;
+        List<Node> nodes;
+        Random random;
+        long nextNodeId;
+
+        @Setup(Level.Iteration)
+        public void setup(GraphState graphState) {
+            ndTree = new NestedDissectionTree<>(graphState.benchmarkGraph, EPSILON, graphState.numFlowCutterRuns);
+            nodes = new ArrayList<>(graphState.benchmarkGraph.getNodes());
+            nodes.sort((n1, n2) -> Long.compare(n1.getId(), n2.getId()));
+            random = new Random(BenchmarkGraphs.SEED);
+            nextNodeId = -1; // negative ids never collide with the ids of the benchmark graphs
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Fork(2)
+    public NestedDissectionTree<Node> construction(GraphState graphState) {
+        return new NestedDissectionTree<>(graphState.benchmarkGraph, EPSILON, graphState.numFlowCutterRuns);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(2)
+    public Optional<NestedDissectionTreeNode<Node>> addEdge(TreeState treeState) {
+        var existingNode = treeState.nodes.get(treeState.random.nextInt(treeState.nodes.size()));
+        var newNode = new Node(treeState.nextNodeId--);
+        return treeState.ndTree.addEdge(new StandardEdge<>(newNode, existingNode));
+    }
+}
@@ -0,0 +1,6 @@
+@NonNullApi
+@NonNullFields
+package dk.tbyrresen.engine.benchmark;
+
+import org.springframework.lang.NonNullApi;
+import org.springframework.lang.NonNullFields;
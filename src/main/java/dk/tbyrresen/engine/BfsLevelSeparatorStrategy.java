@@ -0,0 +1,125 @@
+package dk.tbyrresen.engine;
+
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+import dk.tbyrresen.engine.metrics.DissectionPhase;
+
+import java.util.Arrays;
+
+// Level structure bisection after George and Liu. A BFS from a pseudo peripheral node splits the graph into levels
+// where every level separates the levels before it from the levels after it, and we take the level of smallest
+// expansion among the balanced ones. It costs a few BFS passes, but level separators are wider than flow based
+// ones, so this is meant for the many small subgraphs deep in the ND-tree. The number of FlowCutter runs is ignored.
+public class BfsLevelSeparatorStrategy<T> implements SeparatorStrategy<T> {
+    // The search for a pseudo peripheral node stops when the eccentricity no longer grows or after this many BFS
+    private static final int MAX_PERIPHERAL_SWEEPS = 4;
+
+    @Override
+    public Separator<T> findSeparator(Graph<T> graph, double epsilon, int maxFlowCutterRuns, int depth) {
+        var indexedGraph = new IndexedGraph<>(graph);
+        if (indexedGraph.getNumNodes() == 0) {
+            throw new IllegalArgumentException("Cannot separate an empty graph");
+        }
+        var levels = findPseudoPeripheralLevels(indexedGraph);
+        var start = DissectionMetrics.startTimer();
+        var separator = findBestLevelCut(indexedGraph, levels).toSeparator(graph);
+        DissectionMetrics.stopTimer(DissectionPhase.SEPARATOR_CONVERSION, start);
+        start = DissectionMetrics.startTimer();
+        separator = new SeparatorRefiner<>(graph, DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE).refine(separator);
+        DissectionMetrics.stopTimer(DissectionPhase.SEPARATOR_REFINEMENT, start);
+        return separator;
+    }
+
+    // Starts from a node of minimum degree and sweeps to a node of minimum degree in the last level for as long
+    // as that increases the eccentricity. Returns the levels of the last root, where unreachable nodes have the
+    // level getNumNodes().
+    private int[] findPseudoPeripheralLevels(IndexedGraph<T> indexedGraph) {
+        var levels = HopDistances.computeDistancesFromNearest(indexedGraph, new int[] {findMinDegreeNode(indexedGraph)});
+        var eccentricity = getEccentricity(levels);
+        for (int i = 1; i < MAX_PERIPHERAL_SWEEPS; i++) {
+            var candidate = findMinDegreeNodeAtLevel(indexedGraph, levels, eccentricity);
+            var candidateLevels = HopDistances.computeDistancesFromNearest(indexedGraph, new int[] {candidate});
+            var candidateEccentricity = getEccentricity(candidateLevels);
+            if (candidateEccentricity <= eccentricity) {
+                break;
+            }
+            levels = candidateLevels;
+            eccentricity = candidateEccentricity;
+        }
+        return levels;
+    }
+
+    private static int findMinDegreeNode(IndexedGraph<?> indexedGraph) {
+        var best = 0;
+        for (int node = 1; node < indexedGraph.getNumNodes(); node++) {
+            if (indexedGraph.getDegree(node) < indexedGraph.getDegree(best)) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    private static int findMinDegreeNodeAtLevel(IndexedGraph<?> indexedGraph, int[] levels, int level) {
+        var best = -1;
+        for (int node = 0; node < levels.length; node++) {
+            if (levels[node] == level && (best == -1 || indexedGraph.getDegree(node) < indexedGraph.getDegree(best))) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    private static int getEccentricity(int[] levels) {
+        var eccentricity = 0;
+        for (var level : levels) {
+            if (level < levels.length) {
+                eccentricity = Math.max(eccentricity, level);
+            }
+        }
+        return eccentricity;
+    }
+
+    // Balanced levels are always better than imbalanced ones, as in GraphSeparator.findOptimalCut. Unreachable
+    // nodes are never adjacent to reachable ones, so they can go on the side after the separator level.
+    private VertexCut<T> findBestLevelCut(IndexedGraph<T> indexedGraph, int[] levels) {
+        var numNodes = indexedGraph.getNumNodes();
+        var eccentricity = getEccentricity(levels);
+        var levelSizes = new int[eccentricity + 1];
+        for (var level : levels) {
+            if (level < numNodes) {
+                levelSizes[level]++;
+            }
+        }
+        var bestLevel = -1;
+        var isBestBalanced = false;
+        var bestExpansion = Double.POSITIVE_INFINITY;
+        var bestImbalance = Double.POSITIVE_INFINITY;
+        var nodesBefore = 0;
+        for (int level = 0; level <= eccentricity; level++) {
+            var nodesAfter = numNodes - nodesBefore - levelSizes[level];
+            var imbalance = (((double) Math.max(nodesBefore, nodesAfter) * 2) / numNodes) - 1;
+            var expansion = (double) levelSizes[level] / Math.max(1, Math.min(nodesBefore, nodesAfter));
+            var isBalanced = imbalance <= DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE;
+            if (bestLevel == -1
+                    || (isBalanced && (!isBestBalanced || expansion < bestExpansion))
+                    || (!isBalanced && !isBestBalanced && imbalance < bestImbalance)) {
+                bestLevel = level;
+                isBestBalanced = isBalanced;
+                bestExpansion = expansion;
+                bestImbalance = imbalance;
+            }
+            nodesBefore += levelSizes[level];
+        }
+        var separatorNodes = new int[levelSizes[bestLevel]];
+        var sideNodes = new int[numNodes];
+        var numSeparatorNodes = 0;
+        var numSideNodes = 0;
+        for (int node = 0; node < numNodes; node++) {
+            if (levels[node] == bestLevel) {
+                separatorNodes[numSeparatorNodes++] = node;
+            } else if (levels[node] < bestLevel) {
+                sideNodes[numSideNodes++] = node;
+            }
+        }
+        return new VertexCut<>(indexedGraph, separatorNodes, Arrays.copyOf(sideNodes, numSideNodes));
+    }
+}
@@ -0,0 +1,294 @@
+package dk.tbyrresen.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+// Iterative Hopcroft-Tarjan decomposition of a graph into its biconnected components (blocks) and articulation
+// points. An explicit DFS stack is used so that multi million node graphs don't overflow the call stack.
+// The block-cut tree is used to find, in linear time, the articulation point whose removal splits the graph
+// most evenly since such a node is a separator of size one.
+public class BiconnectedComponents<T> {
+    private final Graph<T> graph;
+    private final IndexedGraph<T> indexedGraph;
+    private final List<int[]> blocks = new ArrayList<>();
+    private final boolean[] isArticulation;
+
+    public BiconnectedComponents(Graph<T> graph) {
+        this.graph = graph;
+        indexedGraph = new IndexedGraph<>(graph);
+        isArticulation = new boolean[indexedGraph.getNumNodes()];
+        findBlocks();
+    }
+
+    private void findBlocks() {
+        var numNodes = indexedGraph.getNumNodes();
+        var pre = new int[numNodes];
+        var low = new int[numNodes];
+        var parent = new int[numNodes];
+        var nextNeighbor = new int[numNodes];
+        var dfsStack = new int[numNodes];
+        var vertexStack = new int[numNodes];
+        Arrays.fill(pre, -1);
+        var counter = 0;
+        for (int root = 0; root < numNodes; root++) {
+            if (pre[root] != -1) {
+                continue;
+            }
+            pre[root] = low[root] = counter++;
+            if (indexedGraph.getDegree(root) == 0) {
+                blocks.add(new int[] {root});
+                continue;
+            }
+            var dfsTop = 0;
+            var vertexTop = 0;
+            var rootChildren = 0;
+            parent[root] = -1;
+            dfsStack[dfsTop++] = root;
+            vertexStack[vertexTop++] = root;
+            while (dfsTop > 0) {
+                var v = dfsStack[dfsTop - 1];
+                if (nextNeighbor[v] < indexedGraph.getDegree(v)) {
+                    var w = indexedGraph.getNeighbor(v, nextNeighbor[v]++);
+                    if (pre[w] == -1) {
+                        pre[w] = low[w] = counter++;
+                        parent[w] = v;
+                        dfsStack[dfsTop++] = w;
+                        vertexStack[vertexTop++] = w;
+                        if (v == root) {
+                            rootChildren++;
+                        }
+                    } else if (w != parent[v]) {
+                        low[v] = Math.min(low[v], pre[w]);
+                    }
+                } else {
+                    dfsTop--;
+                    var u = parent[v];
+                    if (u == -1) {
+                        continue;
+                    }
+                    low[u] = Math.min(low[u], low[v]);
+                    if (low[v] >= pre[u]) {
+                        if (u != root) {
+                            isArticulation[u] = true;
+                        }
+                        // everything above and including v on the vertex stack is in the subtree of v and forms
+                        // a block together with u
+                        var blockStart = vertexTop;
+                        do {
+                            blockStart--;
+                        } while (vertexStack[blockStart] != v);
+                        var block = Arrays.copyOfRange(vertexStack, blockStart, vertexTop + 1);
+                        block[block.length - 1] = u;
+                        blocks.add(block);
+                        vertexTop = blockStart;
+                    }
+                }
+            }
+            if (rootChildren > 1) {
+                isArticulation[root] = true;
+            }
+        }
+    }
+
+    public List<Set<T>> getBlocks() {
+        List<Set<T>> blockNodes = new ArrayList<>(blocks.size());
+        for (var block : blocks) {
+            Set<T> nodes = new HashSet<>();
+            for (var node : block) {
+                nodes.add(indexedGraph.getNode(node));
+            }
+            blockNodes.add(nodes);
+        }
+        return blockNodes;
+    }
+
+    public Set<T> getArticulationPoints() {
+        Set<T> articulationPoints = new HashSet<>();
+        for (int i = 0; i < isArticulation.length; i++) {
+            if (isArticulation[i]) {
+                articulationPoints.add(indexedGraph.getNode(i));
+            }
+        }
+        return articulationPoints;
+    }
+
+    // Returns the single node separator given by the articulation point whose removal leaves the most balanced
+    // split of the remaining components into two sides, or empty if the graph has no articulation points.
+    public Optional<Separator<T>> findMostBalancedArticulationSeparator() {
+        var bestArticulation = -1;
+        var bestLargerSide = Integer.MAX_VALUE;
+        var blockCutTree = new BlockCutTree();
+        for (int i = 0; i < isArticulation.length; i++) {
+            if (isArticulation[i]) {
+                var largerSide = getLargerSideSize(blockCutTree.getComponentSizesWithout(i));
+                if (largerSide < bestLargerSide) {
+                    bestLargerSide = largerSide;
+                    bestArticulation = i;
+                }
+            }
+        }
+        if (bestArticulation == -1) {
+            return Optional.empty();
+        }
+        return Optional.of(buildArticulationSeparator(bestArticulation));
+    }
+
+    // Greedily assigns the components, largest first, to the currently smallest side
+    private static int getLargerSideSize(int[] componentSizes) {
+        Arrays.sort(componentSizes);
+        var left = 0;
+        var right = 0;
+        for (int i = componentSizes.length - 1; i >= 0; i--) {
+            if (left <= right) {
+                left += componentSizes[i];
+            } else {
+                right += componentSizes[i];
+            }
+        }
+        return Math.max(left, right);
+    }
+
+    private Separator<T> buildArticulationSeparator(int articulation) {
+        var numNodes = indexedGraph.getNumNodes();
+        var component = new int[numNodes];
+        Arrays.fill(component, -1);
+        component[articulation] = Integer.MAX_VALUE;
+        List<List<Integer>> components = new ArrayList<>();
+        try (var queue = IntQueue.acquire()) {
+            for (int start = 0; start < numNodes; start++) {
+                if (component[start] != -1) {
+                    continue;
+                }
+                List<Integer> members = new ArrayList<>();
+                component[start] = components.size();
+                queue.add(start);
+                while (!queue.isEmpty()) {
+                    var current = queue.remove();
+                    members.add(current);
+                    for (int i = 0; i < indexedGraph.getDegree(current); i++) {
+                        var neighbor = indexedGraph.getNeighbor(current, i);
+                        if (component[neighbor] == -1) {
+                            component[neighbor] = components.size();
+                            queue.add(neighbor);
+                        }
+                    }
+                }
+                components.add(members);
+            }
+        }
+        components.sort((c1, c2) -> Integer.compare(c2.size(), c1.size()));
+        Set<T> leftNodes = new HashSet<>();
+        Set<T> rightNodes = new HashSet<>();
+        for (var members : components) {
+            var side = leftNodes.size() <= rightNodes.size() ? leftNodes : rightNodes;
+            members.forEach(n -> side.add(indexedGraph.getNode(n)));
+        }
+        var separatorNode = indexedGraph.getNode(articulation);
+        return new Separator<>(
+                new HashSet<>(Set.of(separatorNode)),
+                leftNodes,
+                rightNodes,
+                new HashSet<>(graph.getAdjacentEdges(separatorNode)));
+    }
+
+    // Tree (forest for disconnected graphs) with a vertex for every block and every articulation point where each
+    // articulation point is adjacent to the blocks containing it. Every graph node is weighted once: articulation
+    // points by their own vertex and all other nodes by the single block containing them.
+    private class BlockCutTree {
+        private final int numBlocks = blocks.size();
+        private final int[] treeIndexOfArticulation = new int[isArticulation.length];
+        private final List<List<Integer>> adjacency = new ArrayList<>();
+        private final int[] parent;
+        private final int[] subtreeWeight;
+        private final int[] treeWeight; // total weight of the tree containing each vertex
+
+        private BlockCutTree() {
+            for (int i = 0; i < numBlocks; i++) {
+                adjacency.add(new ArrayList<>());
+            }
+            for (int i = 0; i < isArticulation.length; i++) {
+                if (isArticulation[i]) {
+                    treeIndexOfArticulation[i] = adjacency.size();
+                    adjacency.add(new ArrayList<>());
+                }
+            }
+            var weight = new int[adjacency.size()];
+            for (int b = 0; b < numBlocks; b++) {
+                for (var node : blocks.get(b)) {
+                    if (isArticulation[node]) {
+                        var articulationVertex = treeIndexOfArticulation[node];
+                        adjacency.get(b).add(articulationVertex);
+                        adjacency.get(articulationVertex).add(b);
+                        weight[articulationVertex] = 1;
+                    } else {
+                        weight[b]++;
+                    }
+                }
+            }
+            parent = new int[adjacency.size()];
+            subtreeWeight = weight;
+            treeWeight = new int[adjacency.size()];
+            computeSubtreeWeights();
+        }
+
+        private void computeSubtreeWeights() {
+            var numVertices = adjacency.size();
+            var visited = new boolean[numVertices];
+            var order = new int[numVertices];
+            var stack = new int[numVertices];
+            for (int root = 0; root < numVertices; root++) {
+                if (visited[root]) {
+                    continue;
+                }
+                var orderStart = 0;
+                var orderEnd = 0;
+                var stackTop = 0;
+                visited[root] = true;
+                parent[root] = -1;
+                stack[stackTop++] = root;
+                while (stackTop > 0) {
+                    var vertex = stack[--stackTop];
+                    order[orderEnd++] = vertex;
+                    for (var neighbor : adjacency.get(vertex)) {
+                        if (!visited[neighbor]) {
+                            visited[neighbor] = true;
+                            parent[neighbor] = vertex;
+                            stack[stackTop++] = neighbor;
+                        }
+                    }
+                }
+                // children always come after their parent in the DFS order so we accumulate in reverse
+                for (int i = orderEnd - 1; i > orderStart; i--) {
+                    subtreeWeight[parent[order[i]]] += subtreeWeight[order[i]];
+                }
+                for (int i = orderStart; i < orderEnd; i++) {
+                    treeWeight[order[i]] = subtreeWeight[root];
+                }
+            }
+        }
+
+        // Sizes of the connected components left when removing the given articulation point from the graph
+        private int[] getComponentSizesWithout(int articulation) {
+            var vertex = treeIndexOfArticulation[articulation];
+            List<Integer> sizes = new ArrayList<>();
+            for (var neighbor : adjacency.get(vertex)) {
+                if (neighbor != parent[vertex]) {
+                    sizes.add(subtreeWeight[neighbor]);
+                }
+            }
+            var aboveSize = treeWeight[vertex] - subtreeWeight[vertex];
+            if (aboveSize > 0) {
+                sizes.add(aboveSize);
+            }
+            var otherTreesSize = indexedGraph.getNumNodes() - treeWeight[vertex];
+            if (otherTreesSize > 0) {
+                sizes.add(otherTreesSize);
+            }
+            return sizes.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package dk.tbyrresen.engine;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+// One level of the multilevel hierarchy: a graph on the nodes 0..n-1 in CSR arrays where every node is a cluster
+// of nodes of the finer level below it. Nodes are weighted by the number of original nodes they contain and edges
+// by the number of original edges they replace. The finest level is built from an indexed graph, whose node
+// indices are then the node ids, and every coarser level stores the node each node of the finer level went into.
+class CoarseGraph {
+    private final int[] offsets;
+    private final int[] adjacency;
+    private final int[] edgeWeights;
+    private final int[] nodeWeights;
+    @Nullable private final int[] coarseNodeOfFineNode;
+    // weighted mean coordinates of the original nodes of every node, if the original nodes have coordinates
+    @Nullable private final double[] xs;
+    @Nullable private final double[] ys;
+
+    private CoarseGraph(int[] offsets,
+                        int[] adjacency,
+                        int[] edgeWeights,
+                        int[] nodeWeights,
+                        @Nullable int[] coarseNodeOfFineNode,
+                        @Nullable double[] xs,
+                        @Nullable double[] ys) {
+        this.offsets = offsets;
+        this.adjacency = adjacency;
+        this.edgeWeights = edgeWeights;
+        this.nodeWeights = nodeWeights;
+        this.coarseNodeOfFineNode = coarseNodeOfFineNode;
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    static <T> CoarseGraph fromIndexedGraph(IndexedGraph<T> indexedGraph, @Nullable NodeCoordinates<T> coordinates) {
+        var numNodes = indexedGraph.getNumNodes();
+        var offsets = new int[numNodes + 1];
+        var adjacency = new int[2 * indexedGraph.getNumEdges()];
+        for (int node = 0; node < numNodes; node++) {
+            offsets[node + 1] = offsets[node] + indexedGraph.getDegree(node);
+            for (int i = 0; i < indexedGraph.getDegree(node); i++) {
+                adjacency[offsets[node] + i] = indexedGraph.getNeighbor(node, i);
+            }
+        }
+        var edgeWeights = new int[adjacency.length];
+        Arrays.fill(edgeWeights, 1);
+        var nodeWeights = new int[numNodes];
+        Arrays.fill(nodeWeights, 1);
+        double[] xs = null;
+        double[] ys = null;
+        if (coordinates != null && indexedGraph.getNodes().stream().allMatch(coordinates::hasCoordinates)) {
+            xs = new double[numNodes];
+            ys = new double[numNodes];
+            for (int node = 0; node < numNodes; node++) {
+                xs[node] = coordinates.getX(indexedGraph.getNode(node));
+                ys[node] = coordinates.getY(indexedGraph.getNode(node));
+            }
+        }
+        return new CoarseGraph(offsets, adjacency, edgeWeights, nodeWeights, null, xs, ys);
+    }
+
+    int getNumNodes() {
+        return nodeWeights.length;
+    }
+
+    int getNodeWeight(int node) {
+        return nodeWeights[node];
+    }
+
+    // The node of this level containing the given node of the finer level
+    int getCoarseNode(int fineNode) {
+        if (coarseNodeOfFineNode == null) {
+            throw new IllegalStateException("The finest level has no finer level");
+        }
+        return coarseNodeOfFineNode[fineNode];
+    }
+
+    // Heavy edge matching: the nodes are visited in random order and every unmatched node is matched with the
+    // unmatched neighbor maximizing the edge weight relative to the product of the node weights, which prefers
+    // strongly connected light pairs and keeps the node weights even. Pairs heavier than maxNodeWeight are never
+    // formed. Matched pairs are contracted into one node and their parallel edges are merged.
+    CoarseGraph contract(int maxNodeWeight, SplittableRandom random) {
+        var numNodes = getNumNodes();
+        var order = new int[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            var j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        var match = new int[numNodes];
+        Arrays.fill(match, -1);
+        for (var node : order) {
+            if (match[node] != -1) {
+                continue;
+            }
+            var bestNeighbor = node;
+            var bestRating = 0.0;
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                var neighbor = adjacency[i];
+                if (match[neighbor] != -1 || nodeWeights[node] + nodeWeights[neighbor] > maxNodeWeight) {
+                    continue;
+                }
+                var rating = (double) edgeWeights[i] / ((long) nodeWeights[node] * nodeWeights[neighbor]);
+                if (rating > bestRating) {
+                    bestRating = rating;
+                    bestNeighbor = neighbor;
+                }
+            }
+            match[node] = bestNeighbor;
+            match[bestNeighbor] = node;
+        }
+        var coarseNodeOfNode = new int[numNodes];
+        var numCoarseNodes = 0;
+        for (int node = 0; node < numNodes; node++) {
+            if (match[node] >= node) {
+                coarseNodeOfNode[node] = numCoarseNodes;
+                coarseNodeOfNode[match[node]] = numCoarseNodes;
+                numCoarseNodes++;
+            }
+        }
+        return buildCoarseGraph(match, coarseNodeOfNode, numCoarseNodes);
+    }
+
+    private CoarseGraph buildCoarseGraph(int[] match, int[] coarseNodeOfNode, int numCoarseNodes) {
+        var coarseOffsets = new int[numCoarseNodes + 1];
+        var coarseAdjacency = new int[adjacency.length];
+        var coarseEdgeWeights = new int[adjacency.length];
+        var coarseNodeWeights = new int[numCoarseNodes];
+        var coarseXs = xs == null ? null : new double[numCoarseNodes];
+        var coarseYs = ys == null ? null : new double[numCoarseNodes];
+        // position of the edge to each coarse neighbor of the current coarse node, valid if at least its start
+        var edgePosition = new int[numCoarseNodes];
+        Arrays.fill(edgePosition, -1);
+        var numCoarseAdjacencies = 0;
+        for (int node = 0; node < getNumNodes(); node++) {
+            if (match[node] < node) {
+                continue;
+            }
+            var coarseNode = coarseNodeOfNode[node];
+            var start = numCoarseAdjacencies;
+            var members = match[node] == node ? new int[] {node} : new int[] {node, match[node]};
+            for (var member : members) {
+                coarseNodeWeights[coarseNode] += nodeWeights[member];
+                if (coarseXs != null && coarseYs != null && xs != null && ys != null) {
+                    coarseXs[coarseNode] += xs[member] * nodeWeights[member];
+                    coarseYs[coarseNode] += ys[member] * nodeWeights[member];
+                }
+                for (int i = offsets[member]; i < offsets[member + 1]; i++) {
+                    var coarseNeighbor = coarseNodeOfNode[adjacency[i]];
+                    if (coarseNeighbor == coarseNode) {
+                        continue;
+                    }
+                    if (edgePosition[coarseNeighbor] >= start) {
+                        coarseEdgeWeights[edgePosition[coarseNeighbor]] += edgeWeights[i];
+                    } else {
+                        edgePosition[coarseNeighbor] = numCoarseAdjacencies;
+                        coarseAdjacency[numCoarseAdjacencies] = coarseNeighbor;
+                        coarseEdgeWeights[numCoarseAdjacencies] = edgeWeights[i];
+                        numCoarseAdjacencies++;
+                    }
+                }
+            }
+            if (coarseXs != null && coarseYs != null) {
+                coarseXs[coarseNode] /= coarseNodeWeights[coarseNode];
+                coarseYs[coarseNode] /= coarseNodeWeights[coarseNode];
+            }
+            coarseOffsets[coarseNode + 1] = numCoarseAdjacencies;
+        }
+        return new CoarseGraph(coarseOffsets,
+                               Arrays.copyOf(coarseAdjacency, numCoarseAdjacencies),
+                               Arrays.copyOf(coarseEdgeWeights, numCoarseAdjacencies),
+                               coarseNodeWeights,
+                               coarseNodeOfNode,
+                               coarseXs,
+                               coarseYs);
+    }
+
+    // Materializes the level as a graph on the integer nodes 0..n-1, so separators of it can be computed and
+    // refined like those of any other graph
+    Graph<Integer> toGraph() {
+        Set<Integer> nodes = new HashSet<>(2 * getNumNodes());
+        Set<Edge<Integer>> edges = new HashSet<>(adjacency.length);
+        for (int node = 0; node < getNumNodes(); node++) {
+            nodes.add(node);
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                if (node < adjacency[i]) {
+                    edges.add(new StandardEdge<>(node, adjacency[i]));
+                }
+            }
+        }
+        return new StandardGraph<>(nodes, edges);
+    }
+
+    @Nullable
+    NodeCoordinates<Integer> getCoordinates() {
+        var xs = this.xs;
+        var ys = this.ys;
+        if (xs == null || ys == null) {
+            return null;
+        }
+        return new NodeCoordinates<>() {
+            @Override
+            public boolean hasCoordinates(Integer node) {
+                return true;
+            }
+
+            @Override
+            public double getX(Integer node) {
+                return xs[node];
+            }
+
+            @Override
+            public double getY(Integer node) {
+                return ys[node];
+            }
+        };
+    }
+}
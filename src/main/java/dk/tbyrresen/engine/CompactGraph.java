@@ -0,0 +1,132 @@
+package dk.tbyrresen.engine;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Immutable undirected graph stored as CSR arrays together with a table of the original node ids. Node i has
+// id nodeIds[i] and its neighbors are adjacency[offsets[i]] until adjacency[offsets[i + 1]] (exclusive).
+// The binary layout is: header | node ids (long) | offsets (int) | adjacency (int), all little endian, which
+// allows us to memory map a stored graph and use the buffers directly without copying. See CompactGraphWriter.
+public class CompactGraph {
+    static final int MAGIC = 0x50374743; // "P7GC"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_BYTES = 16;
+
+    private final LongBuffer nodeIds;
+    private final IntBuffer offsets;
+    private final IntBuffer adjacency;
+
+    private CompactGraph(LongBuffer nodeIds, IntBuffer offsets, IntBuffer adjacency) {
+        this.nodeIds = nodeIds;
+        this.offsets = offsets;
+        this.adjacency = adjacency;
+    }
+
+    public static CompactGraph fromGraph(Graph<Node> graph) {
+        List<Node> nodes = new ArrayList<>(graph.getNodes());
+        var indices = new LongIntHashMap(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            indices.put(nodes.get(i).getId(), i);
+        }
+        var nodeIds = LongBuffer.allocate(nodes.size());
+        var offsets = IntBuffer.allocate(nodes.size() + 1);
+        var adjacency = IntBuffer.allocate(graph.getEdges().size() * 2);
+        offsets.put(0);
+        for (var node : nodes) {
+            nodeIds.put(node.getId());
+            for (var neighbor : graph.getAdjacentNodes(node)) {
+                adjacency.put(indices.get(neighbor.getId(), -1));
+            }
+            offsets.put(adjacency.position());
+        }
+        return new CompactGraph(nodeIds.flip(), offsets.flip(), adjacency.flip());
+    }
+
+    // Maps the file read only into memory. The returned graph is backed directly by the mapping. Each section is
+    // mapped on its own since a single mapping is limited to Integer.MAX_VALUE bytes.
+    public static CompactGraph map(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(String.format("File %s is not a compact graph", file));
+            }
+            var header = map(channel, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(String.format("File %s is not a compact graph", file));
+            }
+            if (header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException(String.format(
+                        "Compact graph %s has unsupported format version %d", file, header.getInt(4)));
+            }
+            var numNodes = header.getInt(8);
+            var numAdjacencies = header.getInt(12);
+            long idsStart = HEADER_BYTES;
+            long offsetsStart = idsStart + 8L * numNodes;
+            long adjacencyStart = offsetsStart + 4L * (numNodes + 1);
+            if (numNodes < 0 || numAdjacencies < 0 || adjacencyStart + 4L * numAdjacencies != channel.size()) {
+                throw new IOException(String.format("Compact graph %s is truncated or corrupt", file));
+            }
+            var nodeIds = map(channel, idsStart, 8L * numNodes).asLongBuffer();
+            var offsets = map(channel, offsetsStart, 4L * (numNodes + 1)).asIntBuffer();
+            var adjacency = map(channel, adjacencyStart, 4L * numAdjacencies).asIntBuffer();
+            return new CompactGraph(nodeIds, offsets, adjacency);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Compact graph section of %d bytes is too large to map", size));
+        }
+        var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    public void write(Path file) throws IOException {
+        try (var writer = new CompactGraphWriter(file, getNumNodes())) {
+            var neighbors = new int[0];
+            for (int i = 0; i < getNumNodes(); i++) {
+                var degree = getDegree(i);
+                if (neighbors.length < degree) {
+                    neighbors = new int[Math.max(degree, neighbors.length * 2)];
+                }
+                for (int j = 0; j < degree; j++) {
+                    neighbors[j] = getNeighbor(i, j);
+                }
+                writer.writeNode(getNodeId(i), neighbors, degree);
+            }
+        }
+    }
+
+    public int getNumNodes() {
+        return nodeIds.limit();
+    }
+
+    public int getNumEdges() {
+        return adjacency.limit() / 2;
+    }
+
+    public long getNodeId(int node) {
+        return nodeIds.get(node);
+    }
+
+    public int getDegree(int node) {
+        return offsets.get(node + 1) - offsets.get(node);
+    }
+
+    public int getNeighbor(int node, int i) {
+        return adjacency.get(offsets.get(node) + i);
+    }
+
+    // A read only graph of Node objects with the original ids, backed directly by the buffers of this graph
+    public Graph<Node> asGraph() {
+        return new CompactGraphView(this);
+    }
+}
@@ -0,0 +1,261 @@
+package dk.tbyrresen.engine;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Read only view of a compact graph as a graph of Nodes with the original ids. Nodes and edges are created on the
+// fly from the CSR buffers, so viewing a memory mapped graph costs only the map from node ids to indices instead
+// of a set per node and an object per edge. Every edge has the node of the smaller index as its source. Use
+// CompactGraph.asGraph to create views.
+// Equality is identity based like for subgraph views, since comparing the full node and edge sets is very expensive.
+public class CompactGraphView implements Graph<Node> {
+    private final CompactGraph compactGraph;
+    private final LongIntHashMap indices;
+    private final Set<Node> nodes = new NodeSet();
+    private final Set<Edge<Node>> edges = new EdgeSet();
+
+    CompactGraphView(CompactGraph compactGraph) {
+        this.compactGraph = compactGraph;
+        indices = new LongIntHashMap(compactGraph.getNumNodes());
+        for (int i = 0; i < compactGraph.getNumNodes(); i++) {
+            indices.put(compactGraph.getNodeId(i), i);
+        }
+    }
+
+    @Override
+    public Set<Node> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public Set<Node> getAdjacentNodes(Node node) {
+        return new AdjacentNodeSet(requireIndex(node));
+    }
+
+    @Override
+    public Set<Edge<Node>> getAdjacentEdges(Node node) {
+        return new AdjacentEdgeSet(requireIndex(node));
+    }
+
+    @Override
+    public void addEdge(Edge<Node> edge) {
+        throw new UnsupportedOperationException("Compact graph views are read only");
+    }
+
+    @Override
+    public Set<Edge<Node>> getEdges() {
+        return edges;
+    }
+
+    @Override
+    public boolean allowsSelfLoops() {
+        return false;
+    }
+
+    @Override
+    public boolean allowsParallelEdges() {
+        return false;
+    }
+
+    // The index of the node, or -1 if the object is not a node of the graph
+    private int findIndex(Object o) {
+        if (!(o instanceof Node)) {
+            return -1;
+        }
+        return indices.get(((Node) o).getId(), -1);
+    }
+
+    private int requireIndex(Node node) {
+        var index = findIndex(node);
+        if (index == -1) {
+            throw new IllegalArgumentException(String.format("Graph does not contain node %s", node));
+        }
+        return index;
+    }
+
+    private Node getNode(int index) {
+        return new Node(compactGraph.getNodeId(index));
+    }
+
+    private Edge<Node> getEdge(int first, int second) {
+        return new StandardEdge<>(getNode(Math.min(first, second)), getNode(Math.max(first, second)));
+    }
+
+    private boolean isAdjacent(int node, int other) {
+        for (int i = 0; i < compactGraph.getDegree(node); i++) {
+            if (compactGraph.getNeighbor(node, i) == other) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean containsEdge(Object o) {
+        if (!(o instanceof Edge)) {
+            return false;
+        }
+        var edge = (Edge<?>) o;
+        var source = findIndex(edge.getSource());
+        var target = findIndex(edge.getTarget());
+        return source != -1 && target != -1 && isAdjacent(source, target);
+    }
+
+    private class NodeSet extends AbstractSet<Node> {
+        @Override
+        public boolean contains(Object o) {
+            return findIndex(o) != -1;
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return new Iterator<>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < compactGraph.getNumNodes();
+                }
+
+                @Override
+                public Node next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return getNode(next++);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return compactGraph.getNumNodes();
+        }
+    }
+
+    private class AdjacentNodeSet extends AbstractSet<Node> {
+        private final int node;
+
+        private AdjacentNodeSet(int node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            var index = findIndex(o);
+            return index != -1 && isAdjacent(node, index);
+        }
+
+        @Override
+        public Iterator<Node> iterator() {
+            return new Iterator<>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < compactGraph.getDegree(node);
+                }
+
+                @Override
+                public Node next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return getNode(compactGraph.getNeighbor(node, next++));
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return compactGraph.getDegree(node);
+        }
+    }
+
+    private class AdjacentEdgeSet extends AbstractSet<Edge<Node>> {
+        private final int node;
+
+        private AdjacentEdgeSet(int node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!containsEdge(o)) {
+                return false;
+            }
+            var edge = (Edge<?>) o;
+            return findIndex(edge.getSource()) == node || findIndex(edge.getTarget()) == node;
+        }
+
+        @Override
+        public Iterator<Edge<Node>> iterator() {
+            return new Iterator<>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < compactGraph.getDegree(node);
+                }
+
+                @Override
+                public Edge<Node> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return getEdge(node, compactGraph.getNeighbor(node, next++));
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return compactGraph.getDegree(node);
+        }
+    }
+
+    // The edges are reported from their source, the node of the smaller index, so every edge is seen once
+    private class EdgeSet extends AbstractSet<Edge<Node>> {
+        @Override
+        public boolean contains(Object o) {
+            return containsEdge(o);
+        }
+
+        @Override
+        public Iterator<Edge<Node>> iterator() {
+            return new Iterator<>() {
+                private int node = 0;
+                private int nextNeighbor = 0;
+
+                @Override
+                public boolean hasNext() {
+                    while (node < compactGraph.getNumNodes()) {
+                        while (nextNeighbor < compactGraph.getDegree(node)) {
+                            if (compactGraph.getNeighbor(node, nextNeighbor) > node) {
+                                return true;
+                            }
+                            nextNeighbor++;
+                        }
+                        node++;
+                        nextNeighbor = 0;
+                    }
+                    return false;
+                }
+
+                @Override
+                public Edge<Node> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return getEdge(node, compactGraph.getNeighbor(node, nextNeighbor++));
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return compactGraph.getNumEdges();
+        }
+    }
+}
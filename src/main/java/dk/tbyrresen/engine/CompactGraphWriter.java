@@ -0,0 +1,101 @@
+package dk.tbyrresen.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Streams a graph into the CompactGraph file format one node at a time, so graphs that don't fit in memory as
+// objects can still be written. Nodes must be written in index order and the number of nodes must be known up
+// front since the id, offset and adjacency sections are written at fixed positions in the file.
+public class CompactGraphWriter implements Closeable {
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final int numNodes;
+    private final ByteBuffer idBuffer = newBuffer();
+    private final ByteBuffer offsetBuffer = newBuffer();
+    private final ByteBuffer adjacencyBuffer = newBuffer();
+    private long idPosition;
+    private long offsetPosition;
+    private long adjacencyPosition;
+    private int numWrittenNodes = 0;
+    private long numAdjacencies = 0;
+
+    public CompactGraphWriter(Path file, int numNodes) throws IOException {
+        if (numNodes < 0) {
+            throw new IllegalArgumentException(String.format("Number of nodes %d must be non negative", numNodes));
+        }
+        this.numNodes = numNodes;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+        idPosition = CompactGraph.HEADER_BYTES;
+        offsetPosition = idPosition + 8L * numNodes;
+        adjacencyPosition = offsetPosition + 4L * (numNodes + 1);
+        offsetBuffer.putInt(0);
+    }
+
+    private static ByteBuffer newBuffer() {
+        return ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Writes the next node with its neighbors given as indices of nodes in the graph
+    public void writeNode(long id, int[] neighbors, int numNeighbors) throws IOException {
+        if (numWrittenNodes == numNodes) {
+            throw new IllegalStateException(String.format("All %d nodes have already been written", numNodes));
+        }
+        if (!idBuffer.hasRemaining()) {
+            idPosition = flush(idBuffer, idPosition);
+        }
+        idBuffer.putLong(id);
+        for (int i = 0; i < numNeighbors; i++) {
+            if (!adjacencyBuffer.hasRemaining()) {
+                adjacencyPosition = flush(adjacencyBuffer, adjacencyPosition);
+            }
+            adjacencyBuffer.putInt(neighbors[i]);
+        }
+        numAdjacencies += numNeighbors;
+        if (numAdjacencies > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Compact graphs are limited to Integer.MAX_VALUE adjacency entries");
+        }
+        if (!offsetBuffer.hasRemaining()) {
+            offsetPosition = flush(offsetBuffer, offsetPosition);
+        }
+        offsetBuffer.putInt((int) numAdjacencies);
+        numWrittenNodes++;
+    }
+
+    private long flush(ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        return position;
+    }
+
+    // Writes the header last since the number of adjacency entries is only known once all nodes are written
+    @Override
+    public void close() throws IOException {
+        try {
+            if (numWrittenNodes != numNodes) {
+                throw new IllegalStateException(String.format(
+                        "Only %d of %d nodes were written", numWrittenNodes, numNodes));
+            }
+            flush(idBuffer, idPosition);
+            flush(offsetBuffer, offsetPosition);
+            flush(adjacencyBuffer, adjacencyPosition);
+            var header = ByteBuffer.allocate(CompactGraph.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(CompactGraph.MAGIC)
+                  .putInt(CompactGraph.FORMAT_VERSION)
+                  .putInt(numNodes)
+                  .putInt((int) numAdjacencies);
+            flush(header, 0);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package dk.tbyrresen.engine;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Lock free disjoint set forest over the elements 0..n-1 that supports concurrent unions from many threads.
+// Roots are always linked below the root with the larger index using CAS, which makes it impossible to create
+// cycles, and finds compress paths by halving with CAS as well. A failed CAS only means another thread made
+// progress, so operations simply retry from the current roots. Unlike UnionFind it cannot grow, so components over
+// a stream of edges, such as while parsing OSM ways, are tracked with UnionFind instead.
+public class ConcurrentUnionFind {
+    private final AtomicIntegerArray parent;
+
+    public ConcurrentUnionFind(int numElements) {
+        parent = new AtomicIntegerArray(numElements);
+        for (int i = 0; i < numElements; i++) {
+            parent.set(i, i);
+        }
+    }
+
+    public int find(int element) {
+        var current = element;
+        while (true) {
+            var currentParent = parent.get(current);
+            if (currentParent == current) {
+                return current;
+            }
+            var grandParent = parent.get(currentParent);
+            if (currentParent != grandParent) {
+                parent.compareAndSet(current, currentParent, grandParent);
+            }
+            current = grandParent;
+        }
+    }
+
+    public void union(int first, int second) {
+        while (true) {
+            var firstRoot = find(first);
+            var secondRoot = find(second);
+            if (firstRoot == secondRoot) {
+                return;
+            }
+            var lower = Math.min(firstRoot, secondRoot);
+            var higher = Math.max(firstRoot, secondRoot);
+            if (parent.compareAndSet(lower, lower, higher)) {
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return parent.length();
+    }
+}
@@ -0,0 +1,92 @@
+package dk.tbyrresen.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Connected components of the subgraph induced by a set of nodes, computed in parallel with a concurrent union
+// find directly on the parent graph so the induced subgraph is never built. The nodes are stored grouped by
+// component such that component c consists of the nodes in the range [offsets[c], offsets[c + 1]).
+public class ConnectedComponentLabelling<T> {
+    private final List<T> nodesByComponent;
+    private final int[] offsets;
+
+    public ConnectedComponentLabelling(Graph<T> graph, Set<T> nodes) {
+        List<T> indexedNodes = new ArrayList<>(nodes);
+        Map<T, Integer> indices = new HashMap<>(indexedNodes.size() * 2);
+        for (int i = 0; i < indexedNodes.size(); i++) {
+            indices.put(indexedNodes.get(i), i);
+        }
+        var unionFind = new ConcurrentUnionFind(indexedNodes.size());
+        // The index map is only read from here on, so it is safe to share between the threads
+        IntStream.range(0, indexedNodes.size()).parallel().forEach(i -> {
+            for (var neighbor : graph.getAdjacentNodes(indexedNodes.get(i))) {
+                var neighborIndex = indices.get(neighbor);
+                if (neighborIndex != null && neighborIndex < i) {
+                    unionFind.union(i, neighborIndex);
+                }
+            }
+        });
+        var roots = IntStream.range(0, indexedNodes.size()).parallel().map(unionFind::find).toArray();
+
+        // Counting sort of the nodes by component where components are numbered in order of their roots
+        var componentOfRoot = new int[indexedNodes.size()];
+        var numComponents = 0;
+        for (int i = 0; i < roots.length; i++) {
+            if (roots[i] == i) {
+                componentOfRoot[i] = numComponents++;
+            }
+        }
+        offsets = new int[numComponents + 1];
+        for (var root : roots) {
+            offsets[componentOfRoot[root] + 1]++;
+        }
+        for (int c = 0; c < numComponents; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        var nextPosition = new int[numComponents];
+        System.arraycopy(offsets, 0, nextPosition, 0, numComponents);
+        @SuppressWarnings("unchecked")
+        var sortedNodes = (T[]) new Object[indexedNodes.size()];
+        for (int i = 0; i < roots.length; i++) {
+            sortedNodes[nextPosition[componentOfRoot[roots[i]]]++] = indexedNodes.get(i);
+        }
+        nodesByComponent = List.of(sortedNodes);
+    }
+
+    public int getNumComponents() {
+        return offsets.length - 1;
+    }
+
+    public int getComponentSize(int component) {
+        return offsets[component + 1] - offsets[component];
+    }
+
+    public List<T> getComponentNodes(int component) {
+        return nodesByComponent.subList(offsets[component], offsets[component + 1]);
+    }
+
+    // Returns the index of the largest component or -1 if there are no components
+    public int getLargestComponent() {
+        var largest = -1;
+        for (int c = 0; c < getNumComponents(); c++) {
+            if (largest == -1 || getComponentSize(c) > getComponentSize(largest)) {
+                largest = c;
+            }
+        }
+        return largest;
+    }
+
+    // Returns every component as its own subgraph view of the given graph
+    public Set<Graph<T>> extractComponents(Graph<T> graph) {
+        return IntStream.range(0, getNumComponents())
+                .parallel()
+                .mapToObj(c -> GraphUtils.viewSubGraph(graph, new HashSet<>(getComponentNodes(c))))
+                .collect(Collectors.toSet());
+    }
+}
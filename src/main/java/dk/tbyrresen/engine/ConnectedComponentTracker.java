@@ -0,0 +1,52 @@
+package dk.tbyrresen.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Tracks connected components over a stream of nodes and edges using union find, so the largest connected
+// component can be found without materializing any of the components as graphs.
+public class ConnectedComponentTracker<T> {
+    private final Map<T, Integer> indices = new HashMap<>();
+    private final List<T> nodes = new ArrayList<>();
+    private final UnionFind unionFind = new UnionFind();
+
+    public void addNode(T node) {
+        indexOf(node);
+    }
+
+    public void addEdge(T source, T target) {
+        unionFind.union(indexOf(source), indexOf(target));
+    }
+
+    private int indexOf(T node) {
+        var index = indices.get(node);
+        if (index == null) {
+            index = unionFind.add();
+            indices.put(node, index);
+            nodes.add(node);
+        }
+        return index;
+    }
+
+    public Set<T> getLargestComponentNodes() {
+        var largestRoot = unionFind.findLargestRoot();
+        if (largestRoot == -1) {
+            return new HashSet<>();
+        }
+        Set<T> largestComponent = new HashSet<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (unionFind.find(i) == largestRoot) {
+                largestComponent.add(nodes.get(i));
+            }
+        }
+        return largestComponent;
+    }
+
+    public int getNumNodes() {
+        return nodes.size();
+    }
+}
@@ -0,0 +1,7 @@
+package dk.tbyrresen.engine;
+
+// A bipartition found by a FlowCutter run, compared by its balance and by its size relative to the smaller side
+public interface Cut {
+    double getImbalance();
+    double getExpansionSize();
+}
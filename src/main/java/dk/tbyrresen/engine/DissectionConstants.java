@@ -1,5 +1,41 @@
 package dk.tbyrresen.engine;
 
 public class DissectionConstants {
+    // Find vertex separators directly with FlowCutter on node capacities instead of converting edge cuts
+    public static final boolean VERTEX_CAPACITATED_FLOWCUTTER = true;
     public static final double OPTIMAL_CUT_MAX_IMBALANCE = 0.6;
+    // Edge FlowCutter grows its augmenting path search trees from both the sources and the targets
+    public static final boolean BIDIRECTIONAL_AUGMENTING_PATH_SEARCH = true;
+    // FlowCutter runs per separator of the initial tree in anytime construction
+    public static final int ANYTIME_INITIAL_FLOWCUTTER_RUNS = 1;
+    // FlowCutter stops after this many waves of runs without improving the optimal cut
+    public static final int FLOWCUTTER_CONVERGENCE_WAVES = 2;
+    public static final int MIN_FLOWCUTTER_RUNS = 2;
+    public static final int MIN_FLOWCUTTER_WAVE_SIZE = 4;
+    // The max number of FlowCutter runs is halved every this many levels of the ND-tree
+    public static final int FLOWCUTTER_RUNS_DEPTH_HALVING_INTERVAL = 8;
+    // Mixed with the graph size to seed the choice of FlowCutter sources and targets, so runs are reproducible
+    public static final long SOURCE_TARGET_SEED = 0x5eed_f10c_a77e_5L;
+    // Inertial flow runs one flow per direction, at most this many and at most the number of FlowCutter runs
+    public static final int MAX_INERTIAL_FLOW_DIRECTIONS = 4;
+    // Fraction of the nodes at either end of the projection taken as sources and targets by inertial flow
+    public static final double INERTIAL_FLOW_TERMINAL_FRACTION = 0.25;
+    // By default the hybrid separator strategy uses its cheap engine on subgraphs of at most this many nodes
+    public static final int HYBRID_CHEAP_SEPARATOR_MAX_NODES = 4096;
+    // Graphs with more nodes than this are coarsened to at most MULTILEVEL_COARSE_NODES nodes before FlowCutter
+    public static final int MULTILEVEL_MIN_NODES = 1 << 18;
+    public static final int MULTILEVEL_COARSE_NODES = 1 << 15;
+    // Coarse nodes contain at most this many times the number of original nodes per node of the target size
+    public static final double MULTILEVEL_MAX_NODE_WEIGHT_FACTOR = 2.0;
+    // Coarsening stops when a level has more than this fraction of the nodes of the level below it
+    public static final double MULTILEVEL_MAX_CONTRACTION_RATIO = 0.9;
+    // Mixed with the graph size to seed the order in which the heavy edge matching visits the nodes
+    public static final long COARSENING_SEED = 0xc0a4_5e4e_d5L;
+    // Default of the runner for the size of ND-tree subgraphs that become leaves ordered by minimum degree. The
+    // constructors without a leaf size do not order leaves, so their trees are unchanged.
+    public static final int ORDERED_LEAF_MAX_NODES = 64;
+    // Vertex FlowCutter computes the first flow of a run by parallel push-relabel on graphs of this many nodes or
+    // more. Graphs above MULTILEVEL_MIN_NODES only reach FlowCutter as their coarsest level, so this must stay well
+    // below MULTILEVEL_COARSE_NODES for the largest graphs to use it.
+    public static final int PUSH_RELABEL_MIN_NODES = MULTILEVEL_COARSE_NODES / 4;
 }
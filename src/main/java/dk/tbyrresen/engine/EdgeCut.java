@@ -1,46 +1,59 @@
 package dk.tbyrresen.engine;
 
+import java.util.Collections;
 import java.util.Objects;
 import java.util.Set;
 
-public class EdgeCut<T> {
+public class EdgeCut<T> implements Cut {
     private final Graph<T> parentGraph;
     private final Set<UnitFlowEdge<T>> cutEdges;
     private final Set<T> nodesInCut;
     private final double imbalance;
     private final double expansionSize;
+    private final int hash; // the cut is only exposed as read only views, and hashing every node is too slow to repeat
 
     public EdgeCut(Graph<T> parentGraph, Set<UnitFlowEdge<T>> cut, Set<T> nodesInCut) {
+        this(parentGraph, cut, nodesInCut, nodesInCut.size(), parentGraph.getNodes().size());
+    }
+
+    // The weights of the nodes in the cut and of the whole graph take the place of their number of nodes in the
+    // imbalance and expansion, as needed for coarsened graphs
+    public EdgeCut(Graph<T> parentGraph,
+                   Set<UnitFlowEdge<T>> cut,
+                   Set<T> nodesInCut,
+                   int weightInCut,
+                   int totalWeight) {
         this.parentGraph = parentGraph;
         this.cutEdges = cut;
         this.nodesInCut = nodesInCut;
-        var numNodesInGraph = parentGraph.getNodes().size();
-        var numNodesInCut = nodesInCut.size();
-        this.imbalance = computeImbalance(numNodesInGraph, numNodesInCut);
-        expansionSize = (double) cut.size() / Math.min(numNodesInGraph, numNodesInCut);
+        this.imbalance = computeImbalance(totalWeight, weightInCut);
+        expansionSize = (double) cut.size() / Math.min(totalWeight, weightInCut);
+        hash = Objects.hash(parentGraph, cutEdges, nodesInCut, imbalance, expansionSize);
     }
 
     private double computeImbalance(int numNodesInGraph, int numNodesInCut) {
         // Epsilon balance is defined as Max(V1, V2) <= ceil((1 + epsilon) * N / 2)
-        // where N is the number of nodes in the graph, V2 is the number of reachable nodes and V1 is N - V2
+        // where N is the number (or weight) of nodes in the graph, V2 that of the reachable nodes and V1 is N - V2
         // Finding the epsilon imbalance for an edge cut thus corresponds to (Max(V1, V2) * 2 / N) - 1.
         return (((double) Math.max(numNodesInCut, numNodesInGraph - numNodesInCut) * 2) / numNodesInGraph) - 1;
     }
 
     public Set<UnitFlowEdge<T>> getCutEdges() {
-        return cutEdges;
+        return Collections.unmodifiableSet(cutEdges);
     }
 
+    @Override
     public double getImbalance() {
         return imbalance;
     }
 
+    @Override
     public double getExpansionSize() {
         return expansionSize;
     }
 
     public Set<T> getNodesInCut() {
-        return nodesInCut;
+        return Collections.unmodifiableSet(nodesInCut);
     }
 
     @Override
@@ -52,7 +65,8 @@ public class EdgeCut<T> {
             return false;
         }
         EdgeCut<?> edgeCut = (EdgeCut<?>) o;
-        return Double.compare(edgeCut.imbalance, imbalance) == 0 &&
+        return hash == edgeCut.hash &&
+               Double.compare(edgeCut.imbalance, imbalance) == 0 &&
                Double.compare(edgeCut.expansionSize, expansionSize) == 0 &&
                parentGraph.equals(edgeCut.parentGraph) && cutEdges.equals(edgeCut.cutEdges) &&
                nodesInCut.equals(edgeCut.nodesInCut);
@@ -60,6 +74,6 @@ public class EdgeCut<T> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(parentGraph, cutEdges, nodesInCut, imbalance, expansionSize);
+        return hash;
     }
 }
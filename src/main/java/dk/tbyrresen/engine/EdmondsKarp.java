@@ -1,202 +1,333 @@
 package dk.tbyrresen.engine;
 
-import org.springframework.lang.Nullable;
-
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
+import dk.tbyrresen.engine.jfr.EdmondsKarpPhaseEvent;
+import dk.tbyrresen.engine.metrics.DissectionCounter;
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+// Augmenting paths are found by search trees that are kept across augmentations in the style of Boykov and
+// Kolmogorov, instead of a new breadth first search from the sources for every path. The source tree holds the
+// source reachable nodes and the target tree the nodes from which a target is reachable, with the terminals as
+// roots. An augmentation saturates the tree edges on its path, which orphans the nodes below them. Orphans are
+// adopted by another node of their tree with a residual edge to them whose own path to a root is intact, or
+// otherwise freed together with their subtrees, and their neighbors in the tree are searched again so the tree can
+// grow back into them. The first search finds a shortest path, later ones not necessarily, which makes no
+// difference to the maximum flow or the reachable sets.
+//
+// The unidirectional search only grows the tree on the side of the new terminals and computes the reachable set
+// of the other side by a breadth first search at the end. The bidirectional search grows both trees until they
+// meet, and ends with both reachable sets complete.
+//
+// The trees, queues and marks work on the node indices of the flow network and are taken from the pools of the
+// thread once per FlowCutter run, so the searches reuse them instead of hashing nodes into new collections. The
+// reachable sets are live views of the trees.
 // TODO various optimization steps have left this class with many speficic methods that really needs generalization
-public class EdmondsKarp<T> {
+public class EdmondsKarp<T> implements AutoCloseable {
+    private static final int NO_PARENT = -1;
+
     private final UnitFlowNetwork<T> unitFlowNetwork;
-    private final Map<T, MultiFlowEdge<T>> edgeTo = new HashMap<>();
-    private final Map<T, MultiFlowEdge<T>> edgeFrom = new HashMap<>();
-    private final Set<T> sourceReachableNodes = new HashSet<>();
-    private final Set<T> targetReachableNodes = new HashSet<>();
-    // Use a single target node for augmenting the flow to avoid having to create
-    // super nodes when growing the source and target sets in the flow network
-    @Nullable private T augmentingPathTarget;
-    @Nullable private T augmentingPathStart;
+    private final boolean isBidirectional;
+    private final TreeNodes sourceReachableNodes; // the source tree
+    private final TreeNodes targetReachableNodes; // the target tree
+    private final IntQueue activeNodes; // tree nodes whose neighbors may not be in a tree
+    private final IntQueue orphanNodes;
+    private final IntQueue queue; // of the reachability searches, reused like the trees
+    private final VisitedMarks validOriginNodes; // tree nodes with an intact path to a root
+    // The out edge where the trees meet, between a node of the source tree and a node of the target tree
+    private int meetingOutEdge;
+    private int meetingSourceTreeNode;
+    private int meetingTargetTreeNode;
     private int maxFlow = 0; // TODO do we need to keep track of this?
+    private long numVisitedNodes = 0; // since the last recorded phase, kept locally to stay off the hot path
 
     public EdmondsKarp(UnitFlowNetwork<T> unitFlowNetwork) {
+        this(unitFlowNetwork, DissectionConstants.BIDIRECTIONAL_AUGMENTING_PATH_SEARCH);
+    }
+
+    // Takes its buffers from the pools of the calling thread, so it must be used and closed on that thread
+    public EdmondsKarp(UnitFlowNetwork<T> unitFlowNetwork, boolean isBidirectional) {
         this.unitFlowNetwork = unitFlowNetwork;
+        this.isBidirectional = isBidirectional;
+        var numNodes = unitFlowNetwork.getNumNodes();
+        sourceReachableNodes = new TreeNodes(VisitedMarks.acquire(numNodes));
+        targetReachableNodes = new TreeNodes(VisitedMarks.acquire(numNodes));
+        validOriginNodes = VisitedMarks.acquire(numNodes);
+        activeNodes = IntQueue.acquire();
+        orphanNodes = IntQueue.acquire();
+        queue = IntQueue.acquire();
     }
 
     public void updateFlow() {
-        while (hasAugmentingPath()) {
-            var currentNode = augmentingPathTarget;
-            while (!unitFlowNetwork.isSourceNode(currentNode)) {
-                edgeTo.get(currentNode).flowTo(currentNode);
-                currentNode = edgeTo.get(currentNode).getOppositeOf(currentNode);
-            }
-            maxFlow++; // Minimum possible flow increment is always 1 in a unit capacity flow network
+        var event = new EdmondsKarpPhaseEvent();
+        event.begin();
+        var initialFlow = maxFlow;
+        augmentFlow(unitFlowNetwork.getSourceNodes(), isBidirectional ? unitFlowNetwork.getTargetNodes() : Set.of());
+        if (!isBidirectional) {
+            updateTargetReachable(); // Source reachable nodes are computed when exhausting augmenting paths
         }
-        updateTargetReachable(); // Source reachable nodes are computed when exhausting augmenting paths
+        recordPhase(event, "updateFlow", initialFlow);
     }
 
-    // Note that the very last trip when result is false will result precisely in the source reachable set
-    private boolean hasAugmentingPath() {
-        edgeTo.clear();
-        sourceReachableNodes.clear();
-        sourceReachableNodes.addAll(unitFlowNetwork.getSourceNodes());
-        Queue<T> queue = new LinkedList<>(sourceReachableNodes);
-        while (!queue.isEmpty()) {
-            var currentNode = queue.remove();
-            for (var multiFlowEdge : unitFlowNetwork.getOutEdges(currentNode)) {
-                var oppositeNode = multiFlowEdge.getOppositeOf(currentNode);
-                if (multiFlowEdge.canFlowTo(oppositeNode) && !sourceReachableNodes.contains(oppositeNode)) {
-                    sourceReachableNodes.add(oppositeNode);
-                    edgeTo.put(oppositeNode, multiFlowEdge);
-                    if (unitFlowNetwork.isTargetNode(oppositeNode)) {
-                        augmentingPathTarget = oppositeNode;
-                        return true;
-                    }
-                    queue.add(oppositeNode);
-                }
-            }
+    // The sources other than the node must already be closed, that is all nodes they reach must be sources
+    public void updateFlowFrom(T node) {
+        var event = new EdmondsKarpPhaseEvent();
+        event.begin();
+        var initialFlow = maxFlow;
+        augmentFlow(Set.of(node), isBidirectional ? unitFlowNetwork.getTargetNodes() : Set.of());
+        if (!isBidirectional) {
+            updateTargetReachable(); // Source reachable nodes are computed when exhausting augmenting paths
         }
-        return false;
+        recordPhase(event, "updateFlowFrom", initialFlow);
     }
 
-    public void updateFlowFrom(T node) {
-        while (hasAugmentingPathFrom(node)) {
-            var currentNode = augmentingPathTarget;
-            while (!unitFlowNetwork.isSourceNode(currentNode)) {
-                edgeTo.get(currentNode).flowTo(currentNode);
-                currentNode = edgeTo.get(currentNode).getOppositeOf(currentNode);
-            }
+    // The targets other than the node must already be closed, that is all nodes reaching them must be targets
+    public void updateFlowTo(T node) {
+        var event = new EdmondsKarpPhaseEvent();
+        event.begin();
+        var initialFlow = maxFlow;
+        augmentFlow(isBidirectional ? unitFlowNetwork.getSourceNodes() : Set.of(), Set.of(node));
+        if (!isBidirectional) {
+            updateSourceReachable(); // Target reachable nodes are computed when exhausting augmenting paths
+        }
+        recordPhase(event, "updateFlowTo", initialFlow);
+    }
+
+    // Grows the trees from the given nodes and augments along every path found. When no path is left the tree of
+    // each side that was grown holds exactly the reachable nodes of that side.
+    private void augmentFlow(Set<T> sourceTreeStarts, Set<T> targetTreeStarts) {
+        resetToRoots(sourceReachableNodes, unitFlowNetwork.getSourceNodes());
+        resetToRoots(targetReachableNodes, unitFlowNetwork.getTargetNodes());
+        activeNodes.clear();
+        sourceTreeStarts.forEach(n -> activeNodes.add(unitFlowNetwork.getIndex(n)));
+        targetTreeStarts.forEach(n -> activeNodes.add(unitFlowNetwork.getIndex(n)));
+        while (growTrees()) {
+            augment();
             maxFlow++; // Minimum possible flow increment is always 1 in a unit capacity flow network
+            DissectionMetrics.increment(DissectionCounter.AUGMENTING_PATHS);
+            adoptOrphans();
         }
-        updateTargetReachable(); // Source reachable nodes are computed when exhausting augmenting paths
     }
 
-    private boolean hasAugmentingPathFrom(T node) {
-        edgeTo.clear();
-        sourceReachableNodes.clear();
-        sourceReachableNodes.addAll(unitFlowNetwork.getSourceNodes());
-        Queue<T> queue = new LinkedList<>(Collections.singletonList(node));
-        while (!queue.isEmpty()) {
-            var currentNode = queue.remove();
-            for (var multiFlowEdge : unitFlowNetwork.getOutEdges(currentNode)) {
-                var oppositeNode = multiFlowEdge.getOppositeOf(currentNode);
-                if (multiFlowEdge.canFlowTo(oppositeNode) && !sourceReachableNodes.contains(oppositeNode)) {
-                    sourceReachableNodes.add(oppositeNode);
-                    edgeTo.put(oppositeNode, multiFlowEdge);
-                    if (unitFlowNetwork.isTargetNode(oppositeNode)) {
-                        augmentingPathTarget = oppositeNode;
-                        return true;
-                    }
-                    queue.add(oppositeNode);
+    private void resetToRoots(TreeNodes treeNodes, Set<T> rootNodes) {
+        treeNodes.clear();
+        rootNodes.forEach(n -> treeNodes.add(unitFlowNetwork.getIndex(n), NO_PARENT));
+    }
+
+    // Searches breadth first from the active nodes. Returns true if the trees meet, in which case the node that
+    // found the meeting edge stays active since some of its neighbors may not have been searched.
+    private boolean growTrees() {
+        while (!activeNodes.isEmpty()) {
+            var currentNode = activeNodes.remove();
+            var isInSourceTree = sourceReachableNodes.contains(currentNode);
+            if (!isInSourceTree && !targetReachableNodes.contains(currentNode)) {
+                continue; // freed after it was activated
+            }
+            numVisitedNodes++;
+            var ownTreeNodes = isInSourceTree ? sourceReachableNodes : targetReachableNodes;
+            var otherTreeNodes = isInSourceTree ? targetReachableNodes : sourceReachableNodes;
+            for (int outEdge = unitFlowNetwork.getOutEdgesStart(currentNode);
+                 outEdge < unitFlowNetwork.getOutEdgesEnd(currentNode);
+                 outEdge++) {
+                var oppositeNode = unitFlowNetwork.getOutEdgeTarget(outEdge);
+                if (!canTreeFlow(outEdge, currentNode, oppositeNode, isInSourceTree)) {
+                    continue;
+                }
+                if (otherTreeNodes.contains(oppositeNode)) {
+                    activeNodes.addFirst(currentNode);
+                    meetingOutEdge = outEdge;
+                    meetingSourceTreeNode = isInSourceTree ? currentNode : oppositeNode;
+                    meetingTargetTreeNode = isInSourceTree ? oppositeNode : currentNode;
+                    return true;
+                }
+                if (!ownTreeNodes.contains(oppositeNode)) {
+                    ownTreeNodes.add(oppositeNode, unitFlowNetwork.getReverseOutEdge(outEdge));
+                    activeNodes.add(oppositeNode);
                 }
             }
         }
         return false;
     }
 
-    public void updateFlowTo(T node) {
-        while (hasAugmentingPathTo(node)) {
-            var currentNode = augmentingPathStart;
-            while (!unitFlowNetwork.isTargetNode(currentNode)) {
-                var oppositeNode = edgeFrom.get(currentNode).getOppositeOf(currentNode);
-                edgeFrom.get(currentNode).flowTo(oppositeNode);
-                currentNode = oppositeNode;
+    // Sends a unit along the path through the meeting edge and orphans the nodes whose parent edge got saturated
+    private void augment() {
+        unitFlowNetwork.getOutEdge(meetingOutEdge).flowTo(unitFlowNetwork.getNode(meetingTargetTreeNode));
+        var currentNode = meetingSourceTreeNode;
+        while (!unitFlowNetwork.isSourceNode(currentNode)) {
+            var parentOutEdge = sourceReachableNodes.getParentOutEdge(currentNode);
+            var parentEdge = unitFlowNetwork.getOutEdge(parentOutEdge);
+            var parentNode = unitFlowNetwork.getOutEdgeTarget(parentOutEdge);
+            var node = unitFlowNetwork.getNode(currentNode);
+            parentEdge.flowTo(node);
+            if (!parentEdge.canFlowTo(node)) {
+                sourceReachableNodes.setParentOutEdge(currentNode, NO_PARENT);
+                orphanNodes.add(currentNode);
             }
-            maxFlow++; // Minimum possible flow increment is always 1 in a unit capacity flow network
+            currentNode = parentNode;
+        }
+        currentNode = meetingTargetTreeNode;
+        while (!unitFlowNetwork.isTargetNode(currentNode)) {
+            var parentOutEdge = targetReachableNodes.getParentOutEdge(currentNode);
+            var parentEdge = unitFlowNetwork.getOutEdge(parentOutEdge);
+            var parentNode = unitFlowNetwork.getOutEdgeTarget(parentOutEdge);
+            var parent = unitFlowNetwork.getNode(parentNode);
+            parentEdge.flowTo(parent);
+            if (!parentEdge.canFlowTo(parent)) {
+                targetReachableNodes.setParentOutEdge(currentNode, NO_PARENT);
+                orphanNodes.add(currentNode);
+            }
+            currentNode = parentNode;
         }
-        updateSourceReachable();
     }
 
-    private boolean hasAugmentingPathTo(T node) {
-        edgeFrom.clear();
-        targetReachableNodes.clear();
-        targetReachableNodes.addAll(unitFlowNetwork.getTargetNodes());
-        Queue<T> queue = new LinkedList<>(Collections.singletonList(node));
-        while (!queue.isEmpty()) {
-            var currentNode = queue.remove();
-            for (var multiFlowEdge : unitFlowNetwork.getOutEdges(currentNode)) {
-                var oppositeNode = multiFlowEdge.getOppositeOf(currentNode);
-                if (multiFlowEdge.canFlowTo(currentNode) && !targetReachableNodes.contains(oppositeNode)) {
-                    targetReachableNodes.add(oppositeNode);
-                    edgeFrom.put(oppositeNode, multiFlowEdge);
-                    if (unitFlowNetwork.isSourceNode(oppositeNode)) {
-                        augmentingPathStart = oppositeNode;
-                        return true;
-                    }
-                    queue.add(oppositeNode);
-                }
+    private void adoptOrphans() {
+        validOriginNodes.clear();
+        while (!orphanNodes.isEmpty()) {
+            var orphanNode = orphanNodes.remove();
+            if (sourceReachableNodes.contains(orphanNode)) {
+                adoptOrFree(orphanNode, sourceReachableNodes, true);
+            } else {
+                adoptOrFree(orphanNode, targetReachableNodes, false);
             }
         }
-        return false;
     }
 
-    public void updateSourceReachableFrom(T node) {
-        sourceReachableNodes.add(node);
-        Queue<T> queue = new LinkedList<>(Collections.singletonList(node));
-        while (!queue.isEmpty()) {
-            var currentNode = queue.remove();
-            for (var multiFlowEdge : unitFlowNetwork.getOutEdges(currentNode)) {
-                var oppositeNode = multiFlowEdge.getOppositeOf(currentNode);
-                if (multiFlowEdge.canFlowTo(oppositeNode) && !sourceReachableNodes.contains(oppositeNode)) {
-                    sourceReachableNodes.add(oppositeNode);
-                    queue.add(oppositeNode);
-                }
+    // A node of the source tree can adopt the orphan if it has a residual edge to it, a node of the target tree if
+    // the orphan has a residual edge to it. A freed orphan gives up its children, and its neighbors that could
+    // adopt it later are activated so the tree grows back into it if possible.
+    private void adoptOrFree(int orphanNode, TreeNodes treeNodes, boolean isSourceTree) {
+        for (int outEdge = unitFlowNetwork.getOutEdgesStart(orphanNode);
+             outEdge < unitFlowNetwork.getOutEdgesEnd(orphanNode);
+             outEdge++) {
+            var oppositeNode = unitFlowNetwork.getOutEdgeTarget(outEdge);
+            if (treeNodes.contains(oppositeNode)
+                    && canTreeFlow(outEdge, oppositeNode, orphanNode, isSourceTree)
+                    && hasValidOrigin(oppositeNode, treeNodes, isSourceTree)) {
+                treeNodes.setParentOutEdge(orphanNode, outEdge);
+                validOriginNodes.mark(orphanNode);
+                DissectionMetrics.increment(DissectionCounter.ADOPTED_ORPHANS);
+                return;
             }
         }
+        for (int outEdge = unitFlowNetwork.getOutEdgesStart(orphanNode);
+             outEdge < unitFlowNetwork.getOutEdgesEnd(orphanNode);
+             outEdge++) {
+            var oppositeNode = unitFlowNetwork.getOutEdgeTarget(outEdge);
+            if (!treeNodes.contains(oppositeNode)) {
+                continue;
+            }
+            if (treeNodes.getParentOutEdge(oppositeNode) == unitFlowNetwork.getReverseOutEdge(outEdge)) {
+                treeNodes.setParentOutEdge(oppositeNode, NO_PARENT);
+                orphanNodes.add(oppositeNode);
+            }
+            if (canTreeFlow(outEdge, oppositeNode, orphanNode, isSourceTree)) {
+                activeNodes.add(oppositeNode);
+            }
+        }
+        treeNodes.remove(orphanNode);
     }
 
-    public void updateTargetReachableFrom(T node) {
-        targetReachableNodes.add(node);
-        Queue<T> queue = new LinkedList<>(Collections.singletonList(node));
-        while (!queue.isEmpty()) {
-            var currentNode = queue.remove();
-            for (var multiFlowEdge : unitFlowNetwork.getOutEdges(currentNode)) {
-                var oppositeNode = multiFlowEdge.getOppositeOf(currentNode);
-                if (multiFlowEdge.canFlowTo(currentNode) && !targetReachableNodes.contains(oppositeNode)) {
-                    targetReachableNodes.add(oppositeNode);
-                    queue.add(oppositeNode);
-                }
+    // Whether the tree edge from the parent to the child has residual capacity in the direction of the tree
+    private boolean canTreeFlow(int outEdge, int parentNode, int childNode, boolean isSourceTree) {
+        return unitFlowNetwork.getOutEdge(outEdge).canFlowTo(
+                unitFlowNetwork.getNode(isSourceTree ? childNode : parentNode));
+    }
+
+    // Follows the parent edges to a root. Orphans have no parent edge, so a path through one ends at a non root.
+    // Nodes found valid stay valid while the orphans of an augmentation are processed, since a node is only
+    // orphaned when its parent is freed, and only orphans are freed.
+    private boolean hasValidOrigin(int node, TreeNodes treeNodes, boolean isSourceTree) {
+        var currentNode = node;
+        while (!isRoot(currentNode, isSourceTree) && !validOriginNodes.isMarked(currentNode)) {
+            var parentOutEdge = treeNodes.getParentOutEdge(currentNode);
+            if (parentOutEdge == NO_PARENT) {
+                return false;
             }
+            currentNode = unitFlowNetwork.getOutEdgeTarget(parentOutEdge);
         }
+        currentNode = node;
+        while (!isRoot(currentNode, isSourceTree) && validOriginNodes.mark(currentNode)) {
+            currentNode = unitFlowNetwork.getOutEdgeTarget(treeNodes.getParentOutEdge(currentNode));
+        }
+        return true;
+    }
+
+    private boolean isRoot(int node, boolean isSourceTree) {
+        return isSourceTree ? unitFlowNetwork.isSourceNode(node) : unitFlowNetwork.isTargetNode(node);
+    }
+
+    public void updateSourceReachableFrom(T node) {
+        var event = new EdmondsKarpPhaseEvent();
+        event.begin();
+        var initialFlow = maxFlow;
+        var index = unitFlowNetwork.getIndex(node);
+        sourceReachableNodes.add(index, NO_PARENT);
+        queue.clear();
+        queue.add(index);
+        searchReachable(sourceReachableNodes, true);
+        recordPhase(event, "updateSourceReachableFrom", initialFlow);
+    }
+
+    public void updateTargetReachableFrom(T node) {
+        var event = new EdmondsKarpPhaseEvent();
+        event.begin();
+        var initialFlow = maxFlow;
+        var index = unitFlowNetwork.getIndex(node);
+        targetReachableNodes.add(index, NO_PARENT);
+        queue.clear();
+        queue.add(index);
+        searchReachable(targetReachableNodes, false);
+        recordPhase(event, "updateTargetReachableFrom", initialFlow);
     }
 
     private void updateSourceReachable() {
-        sourceReachableNodes.clear();
-        sourceReachableNodes.addAll(unitFlowNetwork.getSourceNodes());
-        Queue<T> queue = new LinkedList<>(sourceReachableNodes);
-        while (!queue.isEmpty()) {
-            var currentNode = queue.remove();
-            for (var multiFlowEdge : unitFlowNetwork.getOutEdges(currentNode)) {
-                var oppositeNode = multiFlowEdge.getOppositeOf(currentNode);
-                if (multiFlowEdge.canFlowTo(oppositeNode) && !sourceReachableNodes.contains(oppositeNode)) {
-                    sourceReachableNodes.add(oppositeNode);
-                    queue.add(oppositeNode);
-                }
-            }
-        }
+        resetToRoots(sourceReachableNodes, unitFlowNetwork.getSourceNodes());
+        queue.clear();
+        unitFlowNetwork.getSourceNodes().forEach(n -> queue.add(unitFlowNetwork.getIndex(n)));
+        searchReachable(sourceReachableNodes, true);
     }
 
     // must be computed AFTER we have concluded the forward search i.e. have exhausted all augmenting paths
     private void updateTargetReachable() {
-        targetReachableNodes.clear();
-        targetReachableNodes.addAll(unitFlowNetwork.getTargetNodes());
-        Queue<T> queue = new LinkedList<>(targetReachableNodes);
+        resetToRoots(targetReachableNodes, unitFlowNetwork.getTargetNodes());
+        queue.clear();
+        unitFlowNetwork.getTargetNodes().forEach(n -> queue.add(unitFlowNetwork.getIndex(n)));
+        searchReachable(targetReachableNodes, false);
+    }
+
+    // Adds everything reachable from the queued nodes by residual edges, in the direction of the flow from the
+    // sources or against it towards the targets
+    private void searchReachable(TreeNodes reachableNodes, boolean isFromSources) {
         while (!queue.isEmpty()) {
             var currentNode = queue.remove();
-            for (var multiFlowEdge : unitFlowNetwork.getOutEdges(currentNode)) {
-                var oppositeNode = multiFlowEdge.getOppositeOf(currentNode);
-                if (multiFlowEdge.canFlowTo(currentNode) && !targetReachableNodes.contains(oppositeNode)) {
-                    targetReachableNodes.add(oppositeNode);
+            numVisitedNodes++;
+            for (int outEdge = unitFlowNetwork.getOutEdgesStart(currentNode);
+                 outEdge < unitFlowNetwork.getOutEdgesEnd(currentNode);
+                 outEdge++) {
+                var oppositeNode = unitFlowNetwork.getOutEdgeTarget(outEdge);
+                if (canTreeFlow(outEdge, currentNode, oppositeNode, isFromSources)
+                        && reachableNodes.add(oppositeNode, NO_PARENT)) {
                     queue.add(oppositeNode);
                 }
             }
         }
     }
 
+    private void recordPhase(EdmondsKarpPhaseEvent event, String operation, int initialFlow) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.numAugmentingPaths = maxFlow - initialFlow;
+            event.numVisitedNodes = numVisitedNodes;
+            event.commit();
+        }
+        DissectionMetrics.add(DissectionCounter.BFS_NODES_VISITED, numVisitedNodes);
+        numVisitedNodes = 0;
+    }
+
     public Set<T> getSourceReachableNodes() {
         return sourceReachableNodes;
     }
@@ -208,4 +339,100 @@ public class EdmondsKarp<T> {
     public int getMaxFlow() {
         return maxFlow;
     }
-}
\ No newline at end of file
+
+    // Gives the buffers back to the pools of the thread, after which the reachable sets must not be used
+    @Override
+    public void close() {
+        sourceReachableNodes.marks.close();
+        targetReachableNodes.marks.close();
+        validOriginNodes.close();
+        activeNodes.close();
+        orphanNodes.close();
+        queue.close();
+    }
+
+    // The nodes of a tree, marked by their index with the out edge to their parent as the value of the mark. The
+    // members are also kept densely in the order they were added, so that iterating the tree as a live set of
+    // nodes takes time in its size rather than in the size of the network.
+    private final class TreeNodes extends AbstractSet<T> {
+        private final VisitedMarks marks;
+        private final int[] members;
+        private final int[] positions; // of the members in the members array
+        private int size = 0;
+
+        private TreeNodes(VisitedMarks marks) {
+            this.marks = marks;
+            members = new int[unitFlowNetwork.getNumNodes()];
+            positions = new int[unitFlowNetwork.getNumNodes()];
+        }
+
+        private boolean contains(int node) {
+            return marks.isMarked(node);
+        }
+
+        // Returns true if the node was not in the tree before
+        private boolean add(int node, int parentOutEdge) {
+            if (!marks.mark(node, parentOutEdge)) {
+                return false;
+            }
+            positions[node] = size;
+            members[size++] = node;
+            return true;
+        }
+
+        private void remove(int node) {
+            if (marks.isMarked(node)) {
+                marks.unmark(node);
+                var lastMember = members[--size];
+                members[positions[node]] = lastMember;
+                positions[lastMember] = positions[node];
+            }
+        }
+
+        private int getParentOutEdge(int node) {
+            return marks.getValue(node);
+        }
+
+        private void setParentOutEdge(int node, int parentOutEdge) {
+            marks.setValue(node, parentOutEdge);
+        }
+
+        @Override
+        public void clear() {
+            marks.clear();
+            size = 0;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            @SuppressWarnings("unchecked")
+            var index = unitFlowNetwork.findIndex((T) o);
+            return index != -1 && marks.isMarked(index);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<>() {
+                private int position = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return position < size;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return unitFlowNetwork.getNode(members[position++]);
+                }
+            };
+        }
+    }
+}
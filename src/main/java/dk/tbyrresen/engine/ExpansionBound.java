@@ -0,0 +1,22 @@
+package dk.tbyrresen.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Smallest expansion of a balanced cut found so far by any of the FlowCutter runs computing the same separator.
+// Runs that can no longer find a cut below it stop early. Stored as the bits of a double for lock free updates.
+public class ExpansionBound {
+    private final AtomicLong bits = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+
+    public double get() {
+        return Double.longBitsToDouble(bits.get());
+    }
+
+    // Lowers the bound to the given expansion if it is smaller than the current bound
+    public void offer(double expansion) {
+        var current = bits.get();
+        while (expansion < Double.longBitsToDouble(current)
+                && !bits.compareAndSet(current, Double.doubleToLongBits(expansion))) {
+            current = bits.get();
+        }
+    }
+}
@@ -1,14 +1,15 @@
 package dk.tbyrresen.engine;
 
+import dk.tbyrresen.engine.jfr.FlowCutterRunEvent;
+import dk.tbyrresen.engine.metrics.DissectionCounter;
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+import dk.tbyrresen.engine.metrics.DissectionPhase;
 import org.apache.commons.collections4.SetUtils;
 import org.springframework.lang.Nullable;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -20,66 +21,120 @@ public class FlowCutter<T> {
 
     private final UnitFlowNetwork<T> unitFlowNetwork;
     private final double epsilon;
-    private final Map<T, Integer> hopDistancesToSource;
-    private final Map<T, Integer> hopDistancesToTarget;
+    private final IndexedGraph<T> indexedGraph;
+    private final int[] hopDistancesToSource;
+    private final int[] hopDistancesToTarget;
+    @Nullable private final int[] nodeWeights; // by node index, null if every node has weight one
+    private final int totalWeight;
     private final Set<EdgeCut<T>> cuts = new HashSet<>();
     @Nullable private T piercingNode;
     @Nullable private CutSide piercingNodeCutSide;
     private boolean isPiercingNodeAugmenting;
+    private final ExpansionBound expansionBound;
+    private int numPiercingSteps = 0;
+    private int maxFlow = 0;
+    private boolean isAbandoned = false;
 
     public FlowCutter(Graph<T> graph, T source, T target, double epsilon) {
+        this(graph, source, target, epsilon, new ExpansionBound());
+    }
+
+    // The expansion bound is shared with the other runs for the same graph. The run is abandoned as soon as it can
+    // no longer find a balanced cut with smaller expansion than the bound, and lowers it when it finds one.
+    public FlowCutter(Graph<T> graph, T source, T target, double epsilon, ExpansionBound expansionBound) {
+        this(graph, source, target, epsilon, expansionBound,
+             new HopDistances<>(new IndexedGraph<>(graph), Set.of(source, target)));
+    }
+
+    // The hop distances must include the source and target and are usually shared with the other runs on the graph
+    public FlowCutter(Graph<T> graph,
+                      T source,
+                      T target,
+                      double epsilon,
+                      ExpansionBound expansionBound,
+                      HopDistances<T> hopDistances) {
+        this(graph, source, target, epsilon, expansionBound, hopDistances, null);
+    }
+
+    // Node weights, indexed like the graph of the hop distances, make the balance of the cuts depend on the total
+    // weight of the sides instead of their number of nodes, as needed on coarsened graphs
+    public FlowCutter(Graph<T> graph,
+                      T source,
+                      T target,
+                      double epsilon,
+                      ExpansionBound expansionBound,
+                      HopDistances<T> hopDistances,
+                      @Nullable int[] nodeWeights) {
         if (epsilon < 0.0 || epsilon > 1.0) {
             throw new IllegalArgumentException(String.format(
                     "Epsilon of %s is not in valid range of [0.0, 1.0]", epsilon));
         }
         this.epsilon = epsilon;
-        unitFlowNetwork = new UnitFlowNetwork<>(graph, source, target);
-        hopDistancesToSource = computeHopDistancesTo(unitFlowNetwork.getOriginalSource());
-        hopDistancesToTarget = computeHopDistancesTo(unitFlowNetwork.getOriginalTarget());
+        this.expansionBound = expansionBound;
+        var event = new FlowCutterRunEvent();
+        event.begin();
+        indexedGraph = hopDistances.getIndexedGraph();
+        unitFlowNetwork = new UnitFlowNetwork<>(graph, indexedGraph, source, target);
+        hopDistancesToSource = hopDistances.getDistancesFrom(source);
+        hopDistancesToTarget = hopDistances.getDistancesFrom(target);
+        this.nodeWeights = nodeWeights;
+        totalWeight = nodeWeights == null ? indexedGraph.getNumNodes() : Arrays.stream(nodeWeights).sum();
         computeCutSets();
-    }
-
-    private Map<T, Integer> computeHopDistancesTo(T node) {
-        Map<T, Integer> hopDistancesToNode = new HashMap<>(Collections.singletonMap(node, 0));
-        Set<T> visited = new HashSet<>(Collections.singleton(node));
-        Queue<T> queue = new LinkedList<>(visited);
-        while (!queue.isEmpty()) {
-            var currentNode = queue.remove();
-            var neighbors = unitFlowNetwork.getAdjacentNodes(currentNode);
-            for (var neighbor : neighbors) {
-                if (!visited.contains(neighbor)) {
-                    visited.add(neighbor);
-                    queue.add(neighbor);
-                    hopDistancesToNode.put(neighbor, hopDistancesToNode.get(currentNode) + 1);
-                }
-            }
+        event.end();
+        if (event.shouldCommit()) {
+            event.numNodes = unitFlowNetwork.getNodes().size();
+            event.numPiercingSteps = numPiercingSteps;
+            event.maxFlow = maxFlow;
+            event.numCuts = cuts.size();
+            event.isAbandoned = isAbandoned;
+            event.commit();
         }
-        return hopDistancesToNode;
     }
 
     private void computeCutSets() {
         var foundEpsilonBalancedBipartition = false;
-        var edmondsKarp = new EdmondsKarp<>(unitFlowNetwork);
-        edmondsKarp.updateFlowFrom(unitFlowNetwork.getOriginalSource());
-        while (!foundEpsilonBalancedBipartition && !isIntersectingSourceAndTarget()) {
-            handleFlowUpdates(edmondsKarp);
-            if (edmondsKarp.getSourceReachableNodes().size() <= edmondsKarp.getTargetReachableNodes().size()) {
-                unitFlowNetwork.setSourceNodes(new HashSet<>(edmondsKarp.getSourceReachableNodes()));
-                var sourceSideCut = findCutFor(edmondsKarp.getSourceReachableNodes());
-                cuts.add(sourceSideCut);
-                foundEpsilonBalancedBipartition = isEpsilonBalancedBipartition(edmondsKarp.getSourceReachableNodes());
-                piercingNode = findPiercingNode(sourceSideCut, edmondsKarp.getTargetReachableNodes(), CutSide.SOURCE);
-                unitFlowNetwork.addToSource(piercingNode);
-            } else {
-                unitFlowNetwork.setTargetNodes(new HashSet<>(edmondsKarp.getTargetReachableNodes()));
-                var targetSideCut = findCutFor(edmondsKarp.getTargetReachableNodes());
-                cuts.add(targetSideCut);
-                foundEpsilonBalancedBipartition = isEpsilonBalancedBipartition(edmondsKarp.getTargetReachableNodes());
-                piercingNode = findPiercingNode(targetSideCut, edmondsKarp.getSourceReachableNodes(), CutSide.TARGET);
-                unitFlowNetwork.addToTarget(piercingNode);
+        try (var edmondsKarp = new EdmondsKarp<>(unitFlowNetwork)) {
+            var start = DissectionMetrics.startTimer();
+            edmondsKarp.updateFlowFrom(unitFlowNetwork.getOriginalSource());
+            DissectionMetrics.stopTimer(DissectionPhase.AUGMENTING_PATH, start);
+            while (!foundEpsilonBalancedBipartition && !isIntersectingSourceAndTarget()) {
+                start = DissectionMetrics.startTimer();
+                handleFlowUpdates(edmondsKarp);
+                DissectionMetrics.stopTimer(DissectionPhase.AUGMENTING_PATH, start);
+                if (isHopeless(edmondsKarp.getMaxFlow())) {
+                    isAbandoned = true;
+                    DissectionMetrics.increment(DissectionCounter.ABANDONED_FLOWCUTTER_RUNS);
+                    break;
+                }
+                start = DissectionMetrics.startTimer();
+                var sourceSideWeight = computeWeight(edmondsKarp.getSourceReachableNodes());
+                var targetSideWeight = computeWeight(edmondsKarp.getTargetReachableNodes());
+                if (sourceSideWeight <= targetSideWeight) {
+                    unitFlowNetwork.setSourceNodes(new HashSet<>(edmondsKarp.getSourceReachableNodes()));
+                    var sourceSideCut = findCutFor(edmondsKarp.getSourceReachableNodes(), sourceSideWeight);
+                    addCut(sourceSideCut);
+                    foundEpsilonBalancedBipartition = isEpsilonBalancedBipartition(sourceSideWeight);
+                    piercingNode = findPiercingNode(
+                            sourceSideCut, edmondsKarp.getTargetReachableNodes(), CutSide.SOURCE);
+                    unitFlowNetwork.addToSource(piercingNode);
+                } else {
+                    unitFlowNetwork.setTargetNodes(new HashSet<>(edmondsKarp.getTargetReachableNodes()));
+                    var targetSideCut = findCutFor(edmondsKarp.getTargetReachableNodes(), targetSideWeight);
+                    addCut(targetSideCut);
+                    foundEpsilonBalancedBipartition = isEpsilonBalancedBipartition(targetSideWeight);
+                    piercingNode = findPiercingNode(
+                            targetSideCut, edmondsKarp.getSourceReachableNodes(), CutSide.TARGET);
+                    unitFlowNetwork.addToTarget(piercingNode);
+                }
+                numPiercingSteps++;
+                DissectionMetrics.increment(DissectionCounter.PIERCING_STEPS);
+                DissectionMetrics.stopTimer(DissectionPhase.CUT_EXTRACTION, start);
             }
+            maxFlow = edmondsKarp.getMaxFlow();
         }
+        var start = DissectionMetrics.startTimer();
         cuts.removeIf(this::isDominatedCut); // Remove dominated cuts to ensure pareto optimal cuts
+        DissectionMetrics.stopTimer(DissectionPhase.CUT_EXTRACTION, start);
     }
 
     // Updates flow only if the currently found piercing node creates an augmenting path.
@@ -103,26 +158,51 @@ public class FlowCutter<T> {
         }
     }
 
-    private boolean isEpsilonBalancedBipartition(Set<T> sourceOrTargetSet) {
-        var numNodes = unitFlowNetwork.getNodes().size();
-        var partitionSize = sourceOrTargetSet.size();
-        return Math.max(numNodes - partitionSize, partitionSize) <= Math.ceil(((1 + epsilon) * numNodes) / 2.0);
+    // The flow never decreases when piercing, so every later cut has at least maxFlow edges, and the smaller side
+    // of a cut has at most half of the total weight. This bounds the expansion of any cut this run can still find.
+    private boolean isHopeless(int maxFlow) {
+        var lowestPossibleExpansion = maxFlow / (double) (totalWeight / 2);
+        return lowestPossibleExpansion >= expansionBound.get();
+    }
+
+    private void addCut(EdgeCut<T> cut) {
+        cuts.add(cut);
+        if (cut.getImbalance() <= DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE) {
+            expansionBound.offer(cut.getExpansionSize());
+        }
+    }
+
+    private boolean isEpsilonBalancedBipartition(int sideWeight) {
+        return Math.max(totalWeight - sideWeight, sideWeight) <= Math.ceil(((1 + epsilon) * totalWeight) / 2.0);
+    }
+
+    private int computeWeight(Set<T> nodes) {
+        if (nodeWeights == null) {
+            return nodes.size();
+        }
+        var weight = 0;
+        for (var node : nodes) {
+            weight += nodeWeights[indexedGraph.getIndex(node)];
+        }
+        return weight;
     }
 
     private boolean isIntersectingSourceAndTarget() {
         return !SetUtils.intersection(unitFlowNetwork.getSourceNodes(), unitFlowNetwork.getTargetNodes()).isEmpty();
     }
 
-    private EdgeCut<T> findCutFor(Set<T> reachableNodes) {
-        var cut = reachableNodes
+    // The reachable nodes are a live view of a search tree, so the cut keeps a copy of them
+    private EdgeCut<T> findCutFor(Set<T> reachableNodes, int reachableWeight) {
+        var nodesInCut = new HashSet<>(reachableNodes);
+        var cut = nodesInCut
                 .stream()
                 .map(unitFlowNetwork::getOutEdges)
-                .flatMap(Set::stream)
+                .flatMap(List::stream)
                 .map(MultiFlowEdge::getFirst)
-                .filter(e -> isCutEdge(reachableNodes, e))
+                .filter(e -> isCutEdge(nodesInCut, e))
                 .collect(Collectors.toSet());
 
-        return new EdgeCut<>(unitFlowNetwork, cut, new HashSet<>(reachableNodes));
+        return new EdgeCut<>(unitFlowNetwork, cut, nodesInCut, reachableWeight, totalWeight);
     }
 
     private boolean isCutEdge(Set<T> reachableNodes, UnitFlowEdge<T> edge) {
@@ -152,9 +232,11 @@ public class FlowCutter<T> {
 
         if (!nonAugmentingCandidates.isEmpty()) {
             isPiercingNodeAugmenting = false;
+            DissectionMetrics.increment(DissectionCounter.NON_AUGMENTING_PIERCINGS);
             return nonAugmentingCandidates;
         }
         isPiercingNodeAugmenting = true;
+        DissectionMetrics.increment(DissectionCounter.AUGMENTING_PIERCINGS);
         return allCandidates;
     }
 
@@ -171,12 +253,14 @@ public class FlowCutter<T> {
     }
 
     private int distanceHeuristic(T firstNode, T secondNode, CutSide cutSide) {
+        var first = indexedGraph.getIndex(firstNode);
+        var second = indexedGraph.getIndex(secondNode);
         if (CutSide.SOURCE == cutSide) {
-            return Integer.compare(hopDistancesToTarget.get(firstNode) - hopDistancesToSource.get(firstNode),
-                                   hopDistancesToTarget.get(secondNode) - hopDistancesToSource.get(secondNode));
+            return Integer.compare(hopDistancesToTarget[first] - hopDistancesToSource[first],
+                                   hopDistancesToTarget[second] - hopDistancesToSource[second]);
         }
-        return Integer.compare(hopDistancesToSource.get(firstNode) - hopDistancesToTarget.get(firstNode),
-                               hopDistancesToSource.get(secondNode) - hopDistancesToTarget.get(secondNode)
+        return Integer.compare(hopDistancesToSource[first] - hopDistancesToTarget[first],
+                               hopDistancesToSource[second] - hopDistancesToTarget[second]
         );
     }
 
@@ -0,0 +1,33 @@
+package dk.tbyrresen.engine;
+
+import org.springframework.lang.Nullable;
+
+import java.util.function.BooleanSupplier;
+
+// Separators found by a GraphSeparator, i.e. by merging the cuts of many FlowCutter runs. The slowest engine but
+// the one giving the smallest separators.
+public class FlowCutterSeparatorStrategy<T> implements SeparatorStrategy<T> {
+    @Nullable private final NodeCoordinates<T> coordinates;
+
+    public FlowCutterSeparatorStrategy() {
+        this(null);
+    }
+
+    public FlowCutterSeparatorStrategy(@Nullable NodeCoordinates<T> coordinates) {
+        this.coordinates = coordinates;
+    }
+
+    @Override
+    public Separator<T> findSeparator(Graph<T> graph, double epsilon, int maxFlowCutterRuns, int depth) {
+        return new GraphSeparator<>(graph, epsilon, maxFlowCutterRuns, depth, coordinates).getSeparator();
+    }
+
+    @Override
+    public Separator<T> findSeparator(Graph<T> graph,
+                                      double epsilon,
+                                      int maxFlowCutterRuns,
+                                      int depth,
+                                      BooleanSupplier shouldStop) {
+        return new GraphSeparator<>(graph, epsilon, maxFlowCutterRuns, depth, coordinates, shouldStop).getSeparator();
+    }
+}
@@ -1,39 +1,224 @@
 package dk.tbyrresen.engine;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
+import dk.tbyrresen.engine.jfr.GraphSeparatorEvent;
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+import dk.tbyrresen.engine.metrics.DissectionPhase;
 import org.apache.commons.lang3.tuple.MutablePair;
+import org.springframework.lang.Nullable;
 
-import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 public class GraphSeparator<T> {
-    private final int numFlowCutterRuns;
+    private final int maxFlowCutterRuns;
+    private int numFlowCutterRuns = 0;
     private final Graph<T> graph;
     private final Separator<T> separator;
+    @Nullable private final NodeCoordinates<T> coordinates;
+    @Nullable private final ToIntFunction<T> nodeWeights;
+    private final BooleanSupplier shouldStop;
 
-    public GraphSeparator(Graph<T> graph, double epsilon, int numFlowCutterRuns) {
+    public GraphSeparator(Graph<T> graph, double epsilon, int maxFlowCutterRuns) {
+        this(graph, epsilon, maxFlowCutterRuns, 0);
+    }
+
+    // FlowCutter is run in waves until the best cut hasn't improved for a number of waves or the max number of
+    // runs is reached, where the max is scaled down for small graphs and deep levels of the recursion
+    public GraphSeparator(Graph<T> graph, double epsilon, int maxFlowCutterRuns, int depth) {
+        this(graph, epsilon, maxFlowCutterRuns, depth, null);
+    }
+
+    // Coordinates of the nodes, if known, are used to choose sources and targets on opposite ends of the graph.
+    // Graphs of more than MULTILEVEL_MIN_NODES nodes are separated by the multilevel path.
+    public GraphSeparator(Graph<T> graph,
+                          double epsilon,
+                          int maxFlowCutterRuns,
+                          int depth,
+                          @Nullable NodeCoordinates<T> coordinates) {
+        this(graph, epsilon, maxFlowCutterRuns, depth, coordinates, () -> false);
+    }
+
+    // No FlowCutter wave is started once shouldStop returns true, and the separator is then the best one of the
+    // waves made so far. The first wave is always made so there is a separator.
+    public GraphSeparator(Graph<T> graph,
+                          double epsilon,
+                          int maxFlowCutterRuns,
+                          int depth,
+                          @Nullable NodeCoordinates<T> coordinates,
+                          BooleanSupplier shouldStop) {
+        this(graph, epsilon, maxFlowCutterRuns, depth, coordinates, null, shouldStop);
+    }
+
+    // Node weights are given for the coarsened graphs of the multilevel path, which are separated by FlowCutter
+    // alone with balance measured by weight. The edge cuts of the fallback measure their balance by weight too.
+    GraphSeparator(Graph<T> graph,
+                   double epsilon,
+                   int maxFlowCutterRuns,
+                   int depth,
+                   @Nullable NodeCoordinates<T> coordinates,
+                   @Nullable ToIntFunction<T> nodeWeights,
+                   BooleanSupplier shouldStop) {
         this.graph = graph;
-        this.numFlowCutterRuns = numFlowCutterRuns;
-        var edgeCuts = computeCutSets(epsilon);
-        var optimalCut = findOptimalCut(edgeCuts);
-        separator = findSeparator(optimalCut);
+        this.coordinates = coordinates;
+        this.nodeWeights = nodeWeights;
+        this.shouldStop = shouldStop;
+        this.maxFlowCutterRuns = scaleMaxFlowCutterRuns(maxFlowCutterRuns, graph.getNodes().size(), depth);
+        var event = new GraphSeparatorEvent();
+        event.begin();
+        var cutSize = 0;
+        var numCoarseningLevels = 0;
+        var start = DissectionMetrics.startTimer();
+        Optional<Separator<T>> articulationSeparator = nodeWeights == null
+                ? findBalancedArticulationSeparator()
+                : Optional.empty();
+        DissectionMetrics.stopTimer(DissectionPhase.COMPONENT_FINDING, start);
+        if (articulationSeparator.isPresent()) {
+            separator = articulationSeparator.get();
+        } else if (nodeWeights == null && graph.getNodes().size() > DissectionConstants.MULTILEVEL_MIN_NODES) {
+            var multilevelSeparator = new MultilevelSeparator<>(
+                    graph, epsilon, maxFlowCutterRuns, depth, coordinates, shouldStop);
+            separator = multilevelSeparator.getSeparator();
+            numFlowCutterRuns = multilevelSeparator.getNumFlowCutterRuns();
+            numCoarseningLevels = multilevelSeparator.getNumLevels() - 1;
+        } else {
+            // Graphs where all nodes are adjacent to each other, like cliques, have no vertex cuts at all, so we
+            // fall back to converting edge cuts for those
+            List<VertexCut<T>> vertexCuts = DissectionConstants.VERTEX_CAPACITATED_FLOWCUTTER
+                    ? computeCuts((source, target, expansionBound, hopDistances, indexedWeights) ->
+                            new VertexFlowCutter<>(source, target, epsilon, expansionBound, hopDistances,
+                                                   indexedWeights).getCuts())
+                    : List.of();
+            Separator<T> unrefinedSeparator;
+            if (!vertexCuts.isEmpty()) {
+                start = DissectionMetrics.startTimer();
+                var optimalCut = findOptimalCut(vertexCuts);
+                unrefinedSeparator = optimalCut.toSeparator(graph);
+                cutSize = optimalCut.getSize();
+                DissectionMetrics.stopTimer(DissectionPhase.SEPARATOR_CONVERSION, start);
+            } else {
+                var edgeCuts = computeCuts((source, target, expansionBound, hopDistances, indexedWeights) ->
+                        new FlowCutter<>(graph, source, target, epsilon, expansionBound, hopDistances,
+                                         indexedWeights).getCuts());
+                start = DissectionMetrics.startTimer();
+                var optimalCut = findOptimalCut(edgeCuts);
+                unrefinedSeparator = findSeparator(optimalCut);
+                cutSize = optimalCut.getCutEdges().size();
+                DissectionMetrics.stopTimer(DissectionPhase.SEPARATOR_CONVERSION, start);
+            }
+            start = DissectionMetrics.startTimer();
+            var refiner = nodeWeights == null
+                    ? new SeparatorRefiner<>(graph, DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE)
+                    : new SeparatorRefiner<>(graph, DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE, nodeWeights);
+            separator = refiner.refine(unrefinedSeparator);
+            DissectionMetrics.stopTimer(DissectionPhase.SEPARATOR_REFINEMENT, start);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.numNodes = graph.getNodes().size();
+            event.numFlowCutterRuns = numFlowCutterRuns;
+            event.isArticulationSeparator = articulationSeparator.isPresent();
+            event.cutSize = cutSize;
+            event.numCoarseningLevels = numCoarseningLevels;
+            event.separatorSize = separator.getSeparatorNodes().size();
+            event.imbalance = separator.getImbalance();
+            event.commit();
+        }
+    }
+
+    // A balanced articulation point is a separator of a single node which no flow based cut can improve upon,
+    // so we only need to run FlowCutter on graphs without one. The check is linear in the size of the graph.
+    private Optional<Separator<T>> findBalancedArticulationSeparator() {
+        return GraphUtils.findBiconnectedComponents(graph)
+                .findMostBalancedArticulationSeparator()
+                .filter(s -> s.getImbalance() <= DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE);
+    }
+
+    // A small graph has few substantially different cuts, so its runs are capped by half the square root of its
+    // size. The deep levels of the recursion hold many small graphs, so the runs are also halved every few levels.
+    static int scaleMaxFlowCutterRuns(int maxFlowCutterRuns, int numNodes, int depth) {
+        var sizeLimit = (int) Math.ceil(Math.sqrt(numNodes) / 2);
+        var depthLimit = maxFlowCutterRuns >> Math.min(
+                Integer.SIZE - 1, depth / DissectionConstants.FLOWCUTTER_RUNS_DEPTH_HALVING_INTERVAL);
+        var minRuns = Math.min(maxFlowCutterRuns, DissectionConstants.MIN_FLOWCUTTER_RUNS);
+        return Math.max(minRuns, Math.min(sizeLimit, depthLimit));
+    }
+
+    // Runs FlowCutter in waves of one run per processor and merges the cuts of all runs. Stops when the optimal
+    // cut of the merged cuts has not improved for FLOWCUTTER_CONVERGENCE_WAVES waves. The hop distances from the
+    // sources and targets of a wave are computed together before its runs start.
+    private <C extends Cut> List<C> computeCuts(FlowCutterRun<T, C> flowCutterRun) {
+        var waveSize = Math.max(
+                DissectionConstants.MIN_FLOWCUTTER_WAVE_SIZE, Runtime.getRuntime().availableProcessors());
+        List<C> cuts = new ArrayList<>();
+        var expansionBound = new ExpansionBound();
+        var indexedGraph = new IndexedGraph<>(graph);
+        var indexedWeights = nodeWeights == null
+                ? null
+                : indexedGraph.getNodes().stream().mapToInt(nodeWeights).toArray();
+        var selector = new SourceTargetSelector<>(
+                indexedGraph, coordinates, DissectionConstants.SOURCE_TARGET_SEED ^ indexedGraph.getNumNodes());
+        C bestCut = null;
+        var numStaleWaves = 0;
+        var numRunsMade = 0;
+        while (numRunsMade < maxFlowCutterRuns
+                && numStaleWaves < DissectionConstants.FLOWCUTTER_CONVERGENCE_WAVES
+                && (numRunsMade == 0 || !shouldStop.getAsBoolean())) {
+            var numRuns = Math.min(waveSize, maxFlowCutterRuns - numRunsMade);
+            var pairs = selector.selectPairs(numRuns);
+            numRunsMade += numRuns;
+            numFlowCutterRuns += numRuns;
+            Set<T> endpoints = new HashSet<>();
+            pairs.forEach(p -> {
+                endpoints.add(p.left);
+                endpoints.add(p.right);
+            });
+            var hopDistances = new HopDistances<>(indexedGraph, endpoints);
+            cuts.addAll(pairs.parallelStream()
+                                .flatMap(p -> flowCutterRun
+                                        .run(p.left, p.right, expansionBound, hopDistances, indexedWeights)
+                                        .stream())
+                                .collect(Collectors.toList()));
+            if (cuts.isEmpty()) {
+                numStaleWaves++;
+                continue;
+            }
+            var waveBestCut = findOptimalCut(cuts);
+            if (bestCut == null || isBetterCut(waveBestCut, bestCut)) {
+                bestCut = waveBestCut;
+                numStaleWaves = 0;
+            } else {
+                numStaleWaves++;
+            }
+        }
+        return cuts;
+    }
+
+    // A single FlowCutter run between a source and a target, either on edge or on node capacities. The node
+    // weights are indexed like the graph of the hop distances.
+    private interface FlowCutterRun<T, C extends Cut> {
+        Collection<C> run(T source,
+                          T target,
+                          ExpansionBound expansionBound,
+                          HopDistances<T> hopDistances,
+                          @Nullable int[] nodeWeights);
     }
 
-    private Set<EdgeCut<T>> computeCutSets(double epsilon) {
-        Set<EdgeCut<T>> edgeCuts = new HashSet<>();
-        Set<ImmutablePair<T, T>> randomPairs = new HashSet<>();
-        for (int i = 0; i < numFlowCutterRuns; i++) {
-            randomPairs.add(getRandomSourceAndTarget(graph));
+    // Balanced cuts are always better than imbalanced ones, as in findOptimalCut
+    private static boolean isBetterCut(Cut cut, Cut otherCut) {
+        var isBalanced = cut.getImbalance() <= DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE;
+        var isOtherBalanced = otherCut.getImbalance() <= DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE;
+        if (isBalanced != isOtherBalanced) {
+            return isBalanced;
         }
-        randomPairs.parallelStream().forEach(p -> {
-            var flowCutter = new FlowCutter<>(graph, p.left, p.right, epsilon);
-            edgeCuts.addAll(flowCutter.getCuts());
-        });
-        return edgeCuts;
+        return cut.getExpansionSize() < otherCut.getExpansionSize();
     }
 
 //    // non parallel for testing
@@ -50,69 +235,32 @@ public class GraphSeparator<T> {
 //        return edgeCuts;
 //    }
 
-    private ImmutablePair<T, T> getRandomSourceAndTarget(Graph<T> graph) {
-        var random = new SecureRandom();
-        var graphNodes = graph.getNodes();
-        var sourceIdx = random.nextInt(graphNodes.size());
-        var targetIdx = random.nextInt(graphNodes.size());
-        if (targetIdx == sourceIdx) {
-            targetIdx = (targetIdx + 1) % graphNodes.size(); // Ensure distinct source and target nodes
-        }
-        var nodesList = new ArrayList<>(graphNodes);
-        return new ImmutablePair<>(nodesList.get(sourceIdx), nodesList.get(targetIdx));
-    }
-
-    private EdgeCut<T> findOptimalCut(Set<EdgeCut<T>> cuts) {
+    static <C extends Cut> C findOptimalCut(List<C> cuts) {
         var optimalUsingMaxImbalance = cuts
                 .stream()
                 .filter(c -> c.getImbalance() <= DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE)
-                .min(Comparator.comparing(EdgeCut::getExpansionSize));
+                .min(Comparator.comparing(Cut::getExpansionSize));
 
         // TODO should we order these by imbalance? at least check if this ever happens on real world graphs
         return optimalUsingMaxImbalance.orElseGet(() -> cuts
                 .stream()
-                .min(Comparator.comparing(EdgeCut::getExpansionSize))
+                .min(Comparator.comparing(Cut::getExpansionSize))
                 .orElseThrow(() -> new IllegalStateException("No cut to choose as optimal one")));
     }
 
+    // The separator nodes are a minimum set of endpoints covering every cut edge
     private Separator<T> findSeparator(EdgeCut<T> edgeCut) {
-        var nodesInCut = edgeCut.getNodesInCut();
+        var separatorNodes = SeparatorRefiner.findMinimumCutCover(edgeCut);
+        var nodesInCut = new HashSet<>(edgeCut.getNodesInCut());
+        nodesInCut.removeAll(separatorNodes);
         var nodesNotInCut = graph.getNodes()
                 .stream()
-                .filter(n -> !nodesInCut.contains(n))
+                .filter(n -> !nodesInCut.contains(n) && !separatorNodes.contains(n))
                 .collect(Collectors.toSet());
-        var separatorNodes = new HashSet<T>();
-        for (var edge : edgeCut.getCutEdges()) {
-            if (!(separatorNodes.contains(edge.getSource()) || separatorNodes.contains(edge.getTarget()))) {
-                if (nodesInCut.size() <= nodesNotInCut.size()) {
-                    var separatorNode = getSeparatorNode(edge, edgeCut, false);
-                    separatorNodes.add(separatorNode);
-                    nodesNotInCut.remove(separatorNode);
-                } else {
-                    var separatorNode = getSeparatorNode(edge, edgeCut, true);
-                    separatorNodes.add(separatorNode);
-                    nodesInCut.remove(separatorNode);
-                }
-            }
-        }
         var separatingEdges = findSeparatingEdges(separatorNodes);
         return new Separator<>(separatorNodes, nodesInCut, nodesNotInCut, separatingEdges);
     }
 
-    private T getSeparatorNode(Edge<T> edge, EdgeCut<T> edgeCut, boolean extractFromCut) {
-        if (edgeCut.getNodesInCut().contains(edge.getSource())) {
-            if (extractFromCut) {
-                return edge.getSource();
-            }
-            return edge.getTarget();
-        } else {
-            if (extractFromCut) {
-                return edge.getTarget();
-            }
-            return edge.getSource();
-        }
-    }
-
     // returns all the edges that goes from the separator to the separated subgraphs
     private Set<Edge<T>> findSeparatingEdges(Set<T> separatorNodes) {
         return graph.getEdges()
@@ -122,18 +270,16 @@ public class GraphSeparator<T> {
                 .collect(Collectors.toSet());
     }
 
-    // TODO figure out if we can do this immutable
     public MutablePair<Set<Graph<T>>, Set<Graph<T>>> separate() {
-        Set<Edge<T>> leftSeparatedEdges = GraphUtils.extractSubGraphEdges(graph, separator.getLeftSeparatedNodes());
-        Set<Edge<T>> rightSeparatedEdges = GraphUtils.extractSubGraphEdges(graph, separator.getRightSeparatedNodes());
-        var leftConnectedComponents = GraphUtils.findConnectedComponents(
-                new StandardGraph<>(separator.getLeftSeparatedNodes(), leftSeparatedEdges));
-        var rightConnectedComponents = GraphUtils.findConnectedComponents(
-                new StandardGraph<>(separator.getRightSeparatedNodes(), rightSeparatedEdges));
-        return MutablePair.of(leftConnectedComponents, rightConnectedComponents);
+        return GraphUtils.separate(graph, separator);
     }
 
     public Separator<T> getSeparator() {
         return separator;
     }
-}
\ No newline at end of file
+
+    // Number of FlowCutter runs actually made, which is 0 if an articulation point was used as separator
+    public int getNumFlowCutterRuns() {
+        return numFlowCutterRuns;
+    }
+}
@@ -0,0 +1,96 @@
+package dk.tbyrresen.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+// Directory of preprocessed graphs stored as CompactGraph files. Entries are keyed by a fingerprint of the input
+// file contents together with the options used to preprocess it, so changing either gives a new entry.
+public class GraphSnapshotCache {
+    private static final int FINGERPRINT_BUFFER_BYTES = 1 << 20;
+    private static final String SNAPSHOT_SUFFIX = ".p7g";
+
+    private final Path cacheDirectory;
+
+    public GraphSnapshotCache(Path cacheDirectory) throws IOException {
+        this.cacheDirectory = Files.createDirectories(cacheDirectory);
+    }
+
+    // Returns the cached graph for the input file and options if present, otherwise computes it and stores it.
+    // A failure to read or write the cache is reported but never fails the computation itself.
+    public Graph<Node> getOrCompute(Path inputFile, String options, Supplier<Graph<Node>> computation) throws IOException {
+        var snapshotFile = getSnapshotFile(inputFile, options);
+        var cached = load(snapshotFile);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        var graph = computation.get();
+        store(snapshotFile, graph);
+        return graph;
+    }
+
+    public Path getSnapshotFile(Path inputFile, String options) throws IOException {
+        return cacheDirectory.resolve(fingerprint(inputFile, options) + SNAPSHOT_SUFFIX);
+    }
+
+    private Optional<Graph<Node>> load(Path snapshotFile) {
+        if (!Files.isRegularFile(snapshotFile)) {
+            return Optional.empty();
+        }
+        try {
+            var graph = CompactGraph.map(snapshotFile).asGraph();
+            System.out.println("Loaded cached graph snapshot " + snapshotFile);
+            return Optional.of(graph);
+        } catch (IOException e) {
+            System.out.println("Ignoring unreadable graph snapshot " + snapshotFile + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // Writes to a temporary file first so a concurrent or interrupted run never observes a partial snapshot
+    private void store(Path snapshotFile, Graph<Node> graph) {
+        Path temporaryFile = null;
+        try {
+            temporaryFile = Files.createTempFile(cacheDirectory, "snapshot", ".tmp");
+            CompactGraph.fromGraph(graph).write(temporaryFile);
+            Files.move(temporaryFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Stored graph snapshot " + snapshotFile);
+        } catch (IOException e) {
+            System.out.println("Could not store graph snapshot " + snapshotFile + ": " + e.getMessage());
+            try {
+                if (temporaryFile != null) {
+                    Files.deleteIfExists(temporaryFile);
+                }
+            } catch (IOException ignored) {
+                // nothing more we can do
+            }
+        }
+    }
+
+    // CRC32C is hardware accelerated, so fingerprinting even large OSM extracts is limited by disk throughput.
+    // The file size and snapshot format version are part of the key as well to make collisions irrelevant.
+    private static String fingerprint(Path inputFile, String options) throws IOException {
+        var crc = new CRC32C();
+        long size;
+        try (var channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            size = channel.size();
+            var buffer = ByteBuffer.allocateDirect(FINGERPRINT_BUFFER_BYTES);
+            while (channel.read(buffer) != -1) {
+                crc.update(buffer.flip());
+                buffer.clear();
+            }
+        }
+        var fileCrc = crc.getValue();
+        crc.reset();
+        crc.update(options.getBytes(StandardCharsets.UTF_8));
+        return String.format("%016x-%08x-%08x-v%d", size, fileCrc, crc.getValue(), CompactGraph.FORMAT_VERSION);
+    }
+}
@@ -1,14 +1,14 @@
 package dk.tbyrresen.engine;
 
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+import dk.tbyrresen.engine.metrics.DissectionPhase;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.SetUtils;
+import org.apache.commons.lang3.tuple.MutablePair;
 import org.springframework.lang.Nullable;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Queue;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -19,33 +19,43 @@ public class GraphUtils {
     }
 
     public static<T> Set<Graph<T>> findConnectedComponents(Graph<T> graph) {
-        Set<Graph<T>> connectedComponents = new HashSet<>();
-        Set<T> visited = new HashSet<>();
-        for (var node : graph.getNodes()) {
-            if (!visited.contains(node)) {
-                var connectedComponent = fillConnectedComponent(node, graph);
-                connectedComponents.add(extractSubGraph(graph, connectedComponent));
-                visited.addAll(connectedComponent);
-            }
+        return labelConnectedComponents(graph, graph.getNodes()).extractComponents(graph);
+    }
+
+    // Labels the connected components of the subgraph induced by the given nodes without building that subgraph
+    public static<T> ConnectedComponentLabelling<T> labelConnectedComponents(Graph<T> graph, Set<T> nodes) {
+        return new ConnectedComponentLabelling<>(graph, nodes);
+    }
+
+    // Extracts only the largest component as a subgraph, which avoids building a graph for every small component
+    // as findConnectedComponents does
+    public static<T> Graph<T> findLargestConnectedComponent(Graph<T> graph) {
+        var labelling = labelConnectedComponents(graph, graph.getNodes());
+        var largestComponent = labelling.getLargestComponent();
+        if (largestComponent == -1) {
+            return new StandardGraph<>(new HashSet<>(), new HashSet<>());
         }
-        return connectedComponents;
-    }
-
-    // Fills the current connected component
-    private static<T> Set<T> fillConnectedComponent(T node, Graph<T> graph) {
-        Set<T> visited = new HashSet<>(Collections.singleton(node));
-        Queue<T> queue = new LinkedList<>(visited);
-        while (!queue.isEmpty()) {
-            var currentNode = queue.remove();
-            var neighbors = graph.getAdjacentNodes(currentNode);
-            for (var neighbor : neighbors) {
-                if (!visited.contains(neighbor)) {
-                    visited.add(neighbor);
-                    queue.add(neighbor);
+        return viewSubGraph(graph, new HashSet<>(labelling.getComponentNodes(largestComponent)));
+    }
+
+    // Counts the nodes of the connected component of the node by a breadth first search over the node indices
+    private static<T> int countConnectedComponent(int node, IndexedGraph<T> indexedGraph) {
+        try (var visited = VisitedMarks.acquire(indexedGraph.getNumNodes()); var queue = IntQueue.acquire()) {
+            visited.mark(node);
+            queue.add(node);
+            var numVisited = 1;
+            while (!queue.isEmpty()) {
+                var currentNode = queue.remove();
+                for (int i = 0; i < indexedGraph.getDegree(currentNode); i++) {
+                    var neighbor = indexedGraph.getNeighbor(currentNode, i);
+                    if (visited.mark(neighbor)) {
+                        queue.add(neighbor);
+                        numVisited++;
+                    }
                 }
             }
+            return numVisited;
         }
-        return visited;
     }
 
     public static<T> boolean isClique(Graph<T> graph) {
@@ -82,12 +92,11 @@ public class GraphUtils {
     }
 
     public static<T> boolean isConnected(Graph<T> graph) {
-        var source = graph.getNodes().stream().findAny();
-        if (source.isEmpty()) {
+        var indexedGraph = new IndexedGraph<>(graph);
+        if (indexedGraph.getNumNodes() == 0) {
             return true;
         }
-        var component = fillConnectedComponent(source.get(), graph);
-        return component.size() == graph.getNodes().size();
+        return countConnectedComponent(0, indexedGraph) == indexedGraph.getNumNodes();
     }
 
     public static<T> boolean isCyclic(Graph<T> graph) {
@@ -122,6 +131,19 @@ public class GraphUtils {
         return new StandardGraph<>(subGraphNodes, extractSubGraphEdges(graph, subGraphNodes));
     }
 
+    // Returns the subgraph induced by the given nodes as a view over the graph without copying any edges. Small
+    // subgraphs are compacted into standard graphs instead, and views of views are flattened to view the
+    // original parent graph directly.
+    public static<T> Graph<T> viewSubGraph(Graph<T> graph, Set<T> subGraphNodes) {
+        if (subGraphNodes.size() <= SubGraphView.COMPACTION_THRESHOLD) {
+            return extractSubGraph(graph, subGraphNodes);
+        }
+        if (graph instanceof SubGraphView) {
+            return new SubGraphView<>(((SubGraphView<T>) graph).getParentGraph(), subGraphNodes);
+        }
+        return new SubGraphView<>(graph, subGraphNodes);
+    }
+
     public static<T> Set<Edge<T>> extractSubGraphEdges(Graph<T> graph, Set<T> subGraphNodes) {
         if (!graph.getNodes().containsAll(subGraphNodes)) {
             throw new IllegalArgumentException(String.format(
@@ -139,57 +161,27 @@ public class GraphUtils {
         return nodesOfSubGraph.contains(edge.getSource()) && nodesOfSubGraph.contains(edge.getTarget());
     }
 
-    // Recursive implementation to find biconnected component(s) of a graph by first finding all articulation points
-    // on which we can split the graph (not implemented yet).
-    // Implementation is based on https://algs4.cs.princeton.edu/41graph/Biconnected.java.html
-    // NOTE that this implementation does not work on larger graphs due to stack overflows but translating
-    // this recursive variant into an iterative version is nontrivial.
-    public static<T> void biconnectedComponent(Graph<T> graph) {
-        HashMap<T, Integer> low = new HashMap<>();
-        HashMap<T, Integer> pre = new HashMap<>();
-        HashMap<T, Boolean> articulation = new HashMap<>();
-        Integer counter = 0;
-        for (var node : graph.getNodes()) {
-            low.put(node, -1);
-            pre.put(node, -1);
-            articulation.put(node, false);
-        }
-        for (var node : graph.getNodes()) {
-            if (pre.get(node) == -1) {
-                findArticulationPoints(graph, low, pre, articulation, node, node, counter);
-            }
-        }
-
-        // TODO return the biconnected component(s) found by splitting across articulation points
+    // Splits the graph along the separator into the connected components of its left and right sides
+    // TODO figure out if we can do this immutable
+    public static<T> MutablePair<Set<Graph<T>>, Set<Graph<T>>> separate(Graph<T> graph, Separator<T> separator) {
+        var start = DissectionMetrics.startTimer();
+        var leftConnectedComponents = labelConnectedComponents(graph, separator.getLeftSeparatedNodes())
+                .extractComponents(graph);
+        var rightConnectedComponents = labelConnectedComponents(graph, separator.getRightSeparatedNodes())
+                .extractComponents(graph);
+        DissectionMetrics.stopTimer(DissectionPhase.COMPONENT_FINDING, start);
+        return MutablePair.of(leftConnectedComponents, rightConnectedComponents);
     }
 
-    private static<T> void findArticulationPoints(Graph<T> graph,
-                                                  HashMap<T, Integer> low,
-                                                  HashMap<T, Integer> pre,
-                                                  HashMap<T, Boolean> articulation,
-                                                  T u,
-                                                  T v,
-                                                  Integer counter) {
-        int children = 0;
-        pre.put(v, counter++);
-        low.put(v, pre.get(v));
-        for (var w : graph.getAdjacentNodes(v)) {
-            if (pre.get(w) == -1) {
-                children++;
-                findArticulationPoints(graph, low, pre, articulation, v, w, counter);
-
-                low.put(v, Math.min(low.get(v), low.get(w)));
-
-                if (low.get(w) >= pre.get(v) && !u.equals(v)) {
-                    articulation.put(v, true);
-                }
-            } else if (!w.equals(u)) {
-                low.put(v, Math.min(low.get(v), pre.get(w)));
-            }
-        }
+    // Decomposes the graph into its biconnected components and articulation points in linear time
+    public static<T> BiconnectedComponents<T> findBiconnectedComponents(Graph<T> graph) {
+        return new BiconnectedComponents<>(graph);
+    }
 
-        if (u.equals(v) && children > 1) {
-            articulation.put(v, true);
-        }
+    // Packs the undirected edge between two dense node indices into a single long, the smaller index in the high
+    // half, so both directions of the edge give the same key. Node ids do not fit in half a long, so edges must be
+    // packed by index, e.g. the index a LongIntHashMap hands out for the id.
+    public static long packEdge(int first, int second) {
+        return ((long) Math.min(first, second) << 32) | (Math.max(first, second) & 0xFFFFFFFFL);
     }
 }
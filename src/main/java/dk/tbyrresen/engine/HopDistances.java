@@ -0,0 +1,143 @@
+package dk.tbyrresen.engine;
+
+import dk.tbyrresen.engine.metrics.DissectionCounter;
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+import dk.tbyrresen.engine.metrics.DissectionPhase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Hop distances from a set of source nodes to every node of an indexed graph. The BFS runs from up to 64 sources
+// at once: every node has a word with one bit per source, and a level of the search ORs the frontier words of the
+// active nodes into their neighbors. Sources close to each other share most of their work this way, and all
+// FlowCutter runs on the same graph read the distances from the resulting arrays.
+public class HopDistances<T> {
+    private static final int SOURCES_PER_PASS = Long.SIZE;
+
+    private final IndexedGraph<T> indexedGraph;
+    private final Map<T, int[]> distancesFromSource = new HashMap<>();
+
+    public HopDistances(IndexedGraph<T> indexedGraph, Set<T> sources) {
+        this.indexedGraph = indexedGraph;
+        List<T> sourceList = List.copyOf(new LinkedHashSet<>(sources));
+        for (int i = 0; i < sourceList.size(); i += SOURCES_PER_PASS) {
+            computeDistances(sourceList.subList(i, Math.min(i + SOURCES_PER_PASS, sourceList.size())));
+        }
+    }
+
+    public IndexedGraph<T> getIndexedGraph() {
+        return indexedGraph;
+    }
+
+    // Distances indexed by node index. Nodes not reachable from the source have the distance getUnreachable().
+    public int[] getDistancesFrom(T source) {
+        var distances = distancesFromSource.get(source);
+        if (distances == null) {
+            throw new IllegalArgumentException(String.format("No hop distances computed from node %s", source));
+        }
+        return distances;
+    }
+
+    // Larger than any real distance yet small enough that differences of distances never overflow
+    public int getUnreachable() {
+        return indexedGraph.getNumNodes();
+    }
+
+    // Distances to the nearest of the given source indices, found by a single BFS started from all of them
+    static int[] computeDistancesFromNearest(IndexedGraph<?> indexedGraph, int[] sources) {
+        var start = DissectionMetrics.startTimer();
+        var numNodes = indexedGraph.getNumNodes();
+        var distances = new int[numNodes];
+        Arrays.fill(distances, numNodes);
+        var numVisited = 0L;
+        try (var queue = IntQueue.acquire()) {
+            for (var source : sources) {
+                if (distances[source] != 0) {
+                    distances[source] = 0;
+                    queue.add(source);
+                }
+            }
+            while (!queue.isEmpty()) {
+                var node = queue.remove();
+                numVisited++;
+                for (int i = 0; i < indexedGraph.getDegree(node); i++) {
+                    var neighbor = indexedGraph.getNeighbor(node, i);
+                    if (distances[neighbor] == numNodes) {
+                        distances[neighbor] = distances[node] + 1;
+                        queue.add(neighbor);
+                    }
+                }
+            }
+        }
+        DissectionMetrics.add(DissectionCounter.BFS_NODES_VISITED, numVisited);
+        DissectionMetrics.stopTimer(DissectionPhase.HOP_DISTANCE_BFS, start);
+        return distances;
+    }
+
+    private void computeDistances(List<T> sources) {
+        var start = DissectionMetrics.startTimer();
+        var numNodes = indexedGraph.getNumNodes();
+        var distances = new int[sources.size()][];
+        var visited = new long[numNodes];
+        var frontier = new long[numNodes];
+        var nextFrontier = new long[numNodes];
+        var active = new int[numNodes];
+        var nextActive = new int[numNodes];
+        var numActive = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            distances[i] = new int[numNodes];
+            Arrays.fill(distances[i], getUnreachable());
+            var source = indexedGraph.getIndex(sources.get(i));
+            distances[i][source] = 0;
+            if (frontier[source] == 0) {
+                active[numActive++] = source;
+            }
+            frontier[source] |= 1L << i;
+            visited[source] |= 1L << i;
+        }
+        var numVisited = 0L;
+        for (int level = 1; numActive > 0; level++) {
+            var numNextActive = 0;
+            for (int i = 0; i < numActive; i++) {
+                var node = active[i];
+                var bits = frontier[node];
+                frontier[node] = 0;
+                numVisited++;
+                for (int j = 0; j < indexedGraph.getDegree(node); j++) {
+                    var neighbor = indexedGraph.getNeighbor(node, j);
+                    var newBits = bits & ~visited[neighbor] & ~nextFrontier[neighbor];
+                    if (newBits != 0) {
+                        if (nextFrontier[neighbor] == 0) {
+                            nextActive[numNextActive++] = neighbor;
+                        }
+                        nextFrontier[neighbor] |= newBits;
+                    }
+                }
+            }
+            for (int i = 0; i < numNextActive; i++) {
+                var node = nextActive[i];
+                var bits = nextFrontier[node];
+                visited[node] |= bits;
+                frontier[node] = bits;
+                nextFrontier[node] = 0;
+                while (bits != 0) {
+                    distances[Long.numberOfTrailingZeros(bits)][node] = level;
+                    bits &= bits - 1;
+                }
+            }
+            var swap = active;
+            active = nextActive;
+            nextActive = swap;
+            numActive = numNextActive;
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            distancesFromSource.put(sources.get(i), distances[i]);
+        }
+        DissectionMetrics.add(DissectionCounter.BFS_NODES_VISITED, numVisited);
+        DissectionMetrics.stopTimer(DissectionPhase.HOP_DISTANCE_BFS, start);
+    }
+}
@@ -0,0 +1,57 @@
+package dk.tbyrresen.engine;
+
+import java.util.function.BooleanSupplier;
+
+// Picks the engine by the size and depth of the subgraph. FlowCutter finds the smallest separators, but most of the
+// time spent building an ND-tree goes to the many small subgraphs near the leaves, where a cheap engine loses
+// little since their separators are small anyway.
+public class HybridSeparatorStrategy<T> implements SeparatorStrategy<T> {
+    private final SeparatorStrategy<T> largeGraphStrategy;
+    private final SeparatorStrategy<T> smallGraphStrategy;
+    private final int maxSmallGraphNodes;
+    private final int minSmallGraphDepth;
+
+    public HybridSeparatorStrategy(SeparatorStrategy<T> largeGraphStrategy, SeparatorStrategy<T> smallGraphStrategy) {
+        this(largeGraphStrategy,
+             smallGraphStrategy,
+             DissectionConstants.HYBRID_CHEAP_SEPARATOR_MAX_NODES,
+             Integer.MAX_VALUE);
+    }
+
+    // The small graph strategy separates the subgraphs of at most maxSmallGraphNodes nodes and every subgraph from
+    // minSmallGraphDepth on
+    public HybridSeparatorStrategy(SeparatorStrategy<T> largeGraphStrategy,
+                                   SeparatorStrategy<T> smallGraphStrategy,
+                                   int maxSmallGraphNodes,
+                                   int minSmallGraphDepth) {
+        if (maxSmallGraphNodes < 0 || minSmallGraphDepth < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Thresholds must be non negative but were %d nodes and depth %d",
+                    maxSmallGraphNodes, minSmallGraphDepth));
+        }
+        this.largeGraphStrategy = largeGraphStrategy;
+        this.smallGraphStrategy = smallGraphStrategy;
+        this.maxSmallGraphNodes = maxSmallGraphNodes;
+        this.minSmallGraphDepth = minSmallGraphDepth;
+    }
+
+    @Override
+    public Separator<T> findSeparator(Graph<T> graph, double epsilon, int maxFlowCutterRuns, int depth) {
+        if (graph.getNodes().size() <= maxSmallGraphNodes || depth >= minSmallGraphDepth) {
+            return smallGraphStrategy.findSeparator(graph, epsilon, maxFlowCutterRuns, depth);
+        }
+        return largeGraphStrategy.findSeparator(graph, epsilon, maxFlowCutterRuns, depth);
+    }
+
+    @Override
+    public Separator<T> findSeparator(Graph<T> graph,
+                                      double epsilon,
+                                      int maxFlowCutterRuns,
+                                      int depth,
+                                      BooleanSupplier shouldStop) {
+        if (graph.getNodes().size() <= maxSmallGraphNodes || depth >= minSmallGraphDepth) {
+            return smallGraphStrategy.findSeparator(graph, epsilon, maxFlowCutterRuns, depth, shouldStop);
+        }
+        return largeGraphStrategy.findSeparator(graph, epsilon, maxFlowCutterRuns, depth, shouldStop);
+    }
+}
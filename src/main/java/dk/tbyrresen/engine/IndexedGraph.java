@@ -0,0 +1,92 @@
+package dk.tbyrresen.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Read only snapshot of a graph (or an induced subgraph of it) where the nodes are numbered 0..n-1 and the
+// adjacency is stored in CSR arrays. Algorithms that touch every node many times use this to work on primitive
+// arrays instead of hashing nodes on every access.
+public class IndexedGraph<T> {
+    private final List<T> nodes;
+    private final Map<T, Integer> indices;
+    private final int[] offsets;
+    private final int[] adjacency;
+
+    public IndexedGraph(Graph<T> graph) {
+        this(graph, graph.getNodes());
+    }
+
+    // Indexes the subgraph induced by subGraphNodes without building it as a graph first
+    public IndexedGraph(Graph<T> graph, Set<T> subGraphNodes) {
+        nodes = new ArrayList<>(subGraphNodes);
+        indices = new HashMap<>(nodes.size() * 2);
+        for (int i = 0; i < nodes.size(); i++) {
+            indices.put(nodes.get(i), i);
+        }
+        offsets = new int[nodes.size() + 1];
+        var neighborIndices = new ArrayList<int[]>(nodes.size());
+        var numAdjacencies = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            var neighbors = graph.getAdjacentNodes(nodes.get(i));
+            var indexedNeighbors = new int[neighbors.size()];
+            var degree = 0;
+            for (var neighbor : neighbors) {
+                var neighborIndex = indices.get(neighbor);
+                if (neighborIndex != null) {
+                    indexedNeighbors[degree++] = neighborIndex;
+                }
+            }
+            neighborIndices.add(indexedNeighbors);
+            numAdjacencies += degree;
+            offsets[i + 1] = numAdjacencies;
+        }
+        adjacency = new int[numAdjacencies];
+        for (int i = 0; i < nodes.size(); i++) {
+            System.arraycopy(neighborIndices.get(i), 0, adjacency, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+    }
+
+    public int getNumNodes() {
+        return nodes.size();
+    }
+
+    public int getNumEdges() {
+        return adjacency.length / 2;
+    }
+
+    public T getNode(int index) {
+        return nodes.get(index);
+    }
+
+    public List<T> getNodes() {
+        return nodes;
+    }
+
+    public int getIndex(T node) {
+        var index = indices.get(node);
+        if (index == null) {
+            throw new IllegalArgumentException(String.format("Indexed graph does not contain node %s", node));
+        }
+        return index;
+    }
+
+    // The index of the node, or -1 if it is not in the graph
+    public int findIndex(T node) {
+        return indices.getOrDefault(node, -1);
+    }
+
+    public boolean containsNode(T node) {
+        return indices.containsKey(node);
+    }
+
+    public int getDegree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    public int getNeighbor(int node, int i) {
+        return adjacency[offsets[node] + i];
+    }
+}
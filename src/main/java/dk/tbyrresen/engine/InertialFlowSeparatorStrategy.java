@@ -0,0 +1,81 @@
+package dk.tbyrresen.engine;
+
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+import dk.tbyrresen.engine.metrics.DissectionPhase;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Inertial flow after Schild and Sommer. The nodes are sorted by their projection onto a direction, the nodes at
+// either end of the order become the sources and the targets, and VertexFlowCutter finds a minimum vertex cut
+// between them. Both terminal sets are a fixed fraction of the graph, so the first cut is usually balanced and one
+// max flow per direction is all it takes. Graphs where some node has no coordinates are separated by the fallback
+// strategy instead.
+public class InertialFlowSeparatorStrategy<T> implements SeparatorStrategy<T> {
+    private final NodeCoordinates<T> coordinates;
+    private final SeparatorStrategy<T> fallbackStrategy;
+
+    public InertialFlowSeparatorStrategy(NodeCoordinates<T> coordinates) {
+        this(coordinates, new BfsLevelSeparatorStrategy<>());
+    }
+
+    public InertialFlowSeparatorStrategy(NodeCoordinates<T> coordinates, SeparatorStrategy<T> fallbackStrategy) {
+        this.coordinates = coordinates;
+        this.fallbackStrategy = fallbackStrategy;
+    }
+
+    // The directions are spread evenly over a half circle, at most one per FlowCutter run
+    @Override
+    public Separator<T> findSeparator(Graph<T> graph, double epsilon, int maxFlowCutterRuns, int depth) {
+        var indexedGraph = new IndexedGraph<>(graph);
+        var numNodes = indexedGraph.getNumNodes();
+        var numTerminals = Math.max(1, (int) (numNodes * DissectionConstants.INERTIAL_FLOW_TERMINAL_FRACTION));
+        if (2 * numTerminals >= numNodes || !indexedGraph.getNodes().stream().allMatch(coordinates::hasCoordinates)) {
+            return fallbackStrategy.findSeparator(graph, epsilon, maxFlowCutterRuns, depth);
+        }
+        var numDirections = Math.max(1, Math.min(maxFlowCutterRuns, DissectionConstants.MAX_INERTIAL_FLOW_DIRECTIONS));
+        var expansionBound = new ExpansionBound();
+        List<VertexCut<T>> cuts = IntStream.range(0, numDirections)
+                .parallel()
+                .mapToObj(i -> computeCuts(
+                        indexedGraph, Math.PI * i / numDirections, numTerminals, epsilon, expansionBound))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        if (cuts.isEmpty()) {
+            return fallbackStrategy.findSeparator(graph, epsilon, maxFlowCutterRuns, depth);
+        }
+        var start = DissectionMetrics.startTimer();
+        var separator = GraphSeparator.findOptimalCut(cuts).toSeparator(graph);
+        DissectionMetrics.stopTimer(DissectionPhase.SEPARATOR_CONVERSION, start);
+        start = DissectionMetrics.startTimer();
+        separator = new SeparatorRefiner<>(graph, DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE).refine(separator);
+        DissectionMetrics.stopTimer(DissectionPhase.SEPARATOR_REFINEMENT, start);
+        return separator;
+    }
+
+    private List<VertexCut<T>> computeCuts(IndexedGraph<T> indexedGraph,
+                                           double direction,
+                                           int numTerminals,
+                                           double epsilon,
+                                           ExpansionBound expansionBound) {
+        var numNodes = indexedGraph.getNumNodes();
+        var dx = Math.cos(direction);
+        var dy = Math.sin(direction);
+        var projections = new double[numNodes];
+        for (int node = 0; node < numNodes; node++) {
+            var graphNode = indexedGraph.getNode(node);
+            projections[node] = dx * coordinates.getX(graphNode) + dy * coordinates.getY(graphNode);
+        }
+        var order = IntStream.range(0, numNodes)
+                .boxed()
+                .sorted(Comparator.comparingDouble(node -> projections[node]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        var sources = Arrays.copyOfRange(order, 0, numTerminals);
+        var targets = Arrays.copyOfRange(order, numNodes - numTerminals, numNodes);
+        return new VertexFlowCutter<>(indexedGraph, sources, targets, epsilon, expansionBound).getCuts();
+    }
+}
@@ -0,0 +1,128 @@
+package dk.tbyrresen.engine;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+// Measures the latency of inserting edges into an ND-tree. Insertions are drawn from a seeded random generator
+// and every insertion is timed on its own, without the cost of generating it. Warmup insertions are applied to
+// the tree first but not recorded. Note that edge insertions pick nodes based on the shape of the ND-tree, so a
+// workload is only reproducible as long as the separators are.
+public class InsertionBenchmark {
+    private final NestedDissectionTree<Node> ndTree;
+    private final long seed;
+    private final SplittableRandom random;
+    private final List<Node> nodes; // all nodes of the graph including inserted ones, for O(1) random picks
+    private long nextNewNodeId;
+
+    public InsertionBenchmark(Graph<Node> graph, NestedDissectionTree<Node> ndTree, long seed) {
+        this.ndTree = ndTree;
+        this.seed = seed;
+        random = new SplittableRandom(seed);
+        nodes = new ArrayList<>(graph.getNodes());
+        nodes.sort(Comparator.comparingLong(Node::getId)); // independent of the iteration order of the node set
+        nextNewNodeId = nodes.isEmpty() ? 0 : nodes.get(nodes.size() - 1).getId() + 1;
+    }
+
+    public InsertionBenchmarkResult run(InsertionWorkload workload,
+                                        int numWarmupInsertions,
+                                        int numInsertions,
+                                        int maxHopDistance) {
+        if (numWarmupInsertions < 0 || numInsertions < 0 || maxHopDistance < 0) {
+            throw new IllegalArgumentException("Number of insertions and max hop distance must be non negative");
+        }
+        if (workload != InsertionWorkload.NODE && nodes.size() < 2) {
+            throw new IllegalStateException("Edge insertions need a graph with at least two nodes");
+        }
+        for (int i = 0; i < numWarmupInsertions; i++) {
+            ndTree.addEdge(nextEdge(workload, maxHopDistance).getRight());
+        }
+        var result = new InsertionBenchmarkResult(workload, seed, numWarmupInsertions, maxHopDistance);
+        for (int i = 0; i < numInsertions; i++) {
+            var insertion = nextEdge(workload, maxHopDistance);
+            var numRecomputations = ndTree.getRecomputations().size();
+            var start = System.nanoTime();
+            var recomputedNode = ndTree.addEdge(insertion.getRight());
+            var latencyNanos = System.nanoTime() - start;
+            var recomputations = ndTree.getRecomputations();
+            if (recomputations.size() > numRecomputations) {
+                var recomputation = recomputations.get(recomputations.size() - 1);
+                result.recordRecomputingInsertion(
+                        insertion.getLeft(), latencyNanos, recomputation.getDepth(), recomputation.getTrigger(),
+                        ndTree.getNumDirtyNodes());
+            } else if (recomputedNode.isPresent()) {
+                throw new IllegalStateException("Recomputation was not recorded by the ND-tree");
+            } else {
+                result.recordInsertion(insertion.getLeft(), latencyNanos);
+            }
+        }
+        return result;
+    }
+
+    private Pair<InsertionWorkload, Edge<Node>> nextEdge(InsertionWorkload workload, int maxHopDistance) {
+        var type = workload;
+        if (workload == InsertionWorkload.MIXED) {
+            type = random.nextBoolean() ? InsertionWorkload.NODE : InsertionWorkload.EDGE;
+        }
+        if (type == InsertionWorkload.NODE) {
+            return ImmutablePair.of(type, newEdgeWithNewNode());
+        }
+        return ImmutablePair.of(type, newEdgeBetweenExistingNodes(maxHopDistance));
+    }
+
+    private Edge<Node> newEdgeWithNewNode() {
+        var existingNode = nodes.get(random.nextInt(nodes.size()));
+        var newNode = new Node(nextNewNodeId++);
+        nodes.add(newNode);
+        return new StandardEdge<>(newNode, existingNode);
+    }
+
+    private Edge<Node> newEdgeBetweenExistingNodes(int maxHopDistance) {
+        while (true) {
+            var first = nodes.get(random.nextInt(nodes.size()));
+            var ndNodeContainingFirst = ndTree.findDissectionNodeByGraphNode(first).orElseThrow(
+                    () -> new IllegalStateException(String.format("Node %s is not in the ND-tree", first)));
+            List<Node> candidates = new ArrayList<>(getNodesAtMaxHopDistanceFrom(ndNodeContainingFirst, maxHopDistance));
+            candidates.remove(first); // avoid creating self loops
+            if (!candidates.isEmpty()) {
+                candidates.sort(Comparator.comparingLong(Node::getId));
+                return new StandardEdge<>(first, candidates.get(random.nextInt(candidates.size())));
+            }
+        }
+    }
+
+    // Breadth first over the ND-tree one level at a time, so no distance has to be stored with the queued nodes
+    private Set<Node> getNodesAtMaxHopDistanceFrom(NestedDissectionTreeNode<Node> ndNode, int hopDistance) {
+        Set<Node> nodesAtMaxDistance = new HashSet<>();
+        Set<NestedDissectionTreeNode<Node>> visited = new HashSet<>(Collections.singleton(ndNode));
+        Queue<NestedDissectionTreeNode<Node>> queue = new ArrayDeque<>(visited);
+        for (int distance = 0; !queue.isEmpty(); distance++) {
+            for (int remaining = queue.size(); remaining > 0; remaining--) {
+                var current = queue.remove();
+                nodesAtMaxDistance.addAll(current.getDissectionNodes());
+                if (distance == hopDistance) {
+                    continue;
+                }
+                for (var child : current.getChildren()) {
+                    if (visited.add(child)) {
+                        queue.add(child);
+                    }
+                }
+                var parent = current.getParent();
+                if (parent != null && visited.add(parent)) {
+                    queue.add(parent);
+                }
+            }
+        }
+        return nodesAtMaxDistance;
+    }
+}
@@ -0,0 +1,170 @@
+package dk.tbyrresen.engine;
+
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Latencies and recomputations of the insertions of an InsertionBenchmark run. The summary is written as JSON
+// and the individual insertions as CSV so results can be compared across versions.
+public class InsertionBenchmarkResult {
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    private final InsertionWorkload workload;
+    private final long seed;
+    private final int numWarmupInsertions;
+    private final int maxHopDistance;
+    private final LatencyHistogram insertionLatencies = new LatencyHistogram();
+    private final LatencyHistogram recomputationLatencies = new LatencyHistogram();
+    private final Map<RecomputationTrigger, Integer> recomputationsByTrigger = new EnumMap<>(RecomputationTrigger.class);
+    private final List<Insertion> insertions = new ArrayList<>();
+    private int highestRecomputedNodeDepth = Integer.MAX_VALUE; // high as is higher up in the tree i.e. lower depth value
+    private int peakNumDirtyNodes = 0;
+
+    InsertionBenchmarkResult(InsertionWorkload workload, long seed, int numWarmupInsertions, int maxHopDistance) {
+        this.workload = workload;
+        this.seed = seed;
+        this.numWarmupInsertions = numWarmupInsertions;
+        this.maxHopDistance = maxHopDistance;
+        for (var trigger : RecomputationTrigger.values()) {
+            recomputationsByTrigger.put(trigger, 0);
+        }
+    }
+
+    void recordInsertion(InsertionWorkload type, long latencyNanos) {
+        insertionLatencies.record(latencyNanos);
+        insertions.add(new Insertion(type, latencyNanos, null, -1));
+    }
+
+    void recordRecomputingInsertion(InsertionWorkload type,
+                                    long latencyNanos,
+                                    int depth,
+                                    RecomputationTrigger trigger,
+                                    int numDirtyNodes) {
+        insertionLatencies.record(latencyNanos);
+        recomputationLatencies.record(latencyNanos);
+        recomputationsByTrigger.merge(trigger, 1, Integer::sum);
+        highestRecomputedNodeDepth = Math.min(highestRecomputedNodeDepth, depth);
+        peakNumDirtyNodes = Math.max(peakNumDirtyNodes, numDirtyNodes);
+        insertions.add(new Insertion(type, latencyNanos, trigger, depth));
+    }
+
+    public LatencyHistogram getInsertionLatencies() {
+        return insertionLatencies;
+    }
+
+    public LatencyHistogram getRecomputationLatencies() {
+        return recomputationLatencies;
+    }
+
+    public int getNumRecomputations() {
+        return (int) recomputationLatencies.getCount();
+    }
+
+    public void print() {
+        System.out.println("Result of " + insertions.size() + " " + workload.name().toLowerCase(Locale.ROOT)
+                           + " insertions after " + numWarmupInsertions + " warmup insertions");
+        System.out.println("Number of recomputations: " + getNumRecomputations() + " " + recomputationsByTrigger);
+        printLatencies("Insertion latency", insertionLatencies);
+        if (getNumRecomputations() > 0) {
+            printLatencies("Recomputation latency", recomputationLatencies);
+            System.out.println("Highest recomputed node depth: " + highestRecomputedNodeDepth);
+        }
+        System.out.println("Peak number of dirty nodes: " + peakNumDirtyNodes);
+    }
+
+    private static void printLatencies(String name, LatencyHistogram histogram) {
+        System.out.printf(Locale.ROOT, "%s (ms): mean %.3f, p50 %.3f, p99 %.3f, p999 %.3f, max %.3f%n",
+                          name,
+                          histogram.getMean() / TimeUnit.MILLISECONDS.toNanos(1),
+                          toMillis(histogram.getValueAtPercentile(50.0)),
+                          toMillis(histogram.getValueAtPercentile(99.0)),
+                          toMillis(histogram.getValueAtPercentile(99.9)),
+                          toMillis(histogram.getMax()));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public void writeJson(Path file) throws IOException {
+        var json = new StringBuilder();
+        json.append("{\n");
+        json.append(String.format(Locale.ROOT, "  \"workload\": \"%s\",%n", workload.name()));
+        json.append(String.format(Locale.ROOT, "  \"seed\": %d,%n", seed));
+        json.append(String.format(Locale.ROOT, "  \"warmupInsertions\": %d,%n", numWarmupInsertions));
+        json.append(String.format(Locale.ROOT, "  \"insertions\": %d,%n", insertions.size()));
+        json.append(String.format(Locale.ROOT, "  \"maxHopDistance\": %d,%n", maxHopDistance));
+        json.append(String.format(Locale.ROOT, "  \"recomputations\": %d,%n", getNumRecomputations()));
+        json.append("  \"recomputationsByTrigger\": {");
+        var first = true;
+        for (var entry : recomputationsByTrigger.entrySet()) {
+            json.append(first ? "" : ", ").append(String.format("\"%s\": %d", entry.getKey().name(), entry.getValue()));
+            first = false;
+        }
+        json.append("},\n");
+        json.append(String.format(Locale.ROOT, "  \"highestRecomputedNodeDepth\": %d,%n",
+                                  getNumRecomputations() > 0 ? highestRecomputedNodeDepth : -1));
+        json.append(String.format(Locale.ROOT, "  \"peakDirtyNodes\": %d,%n", peakNumDirtyNodes));
+        json.append("  \"insertionLatencyNanos\": ").append(toJson(insertionLatencies)).append(",\n");
+        json.append("  \"recomputationLatencyNanos\": ").append(toJson(recomputationLatencies)).append("\n");
+        json.append("}\n");
+        Files.writeString(file, json);
+    }
+
+    private static String toJson(LatencyHistogram histogram) {
+        var json = new StringBuilder();
+        json.append(String.format(Locale.ROOT, "{\"count\": %d, \"min\": %d, \"mean\": %.1f, \"max\": %d",
+                                  histogram.getCount(), histogram.getMin(), histogram.getMean(), histogram.getMax()));
+        for (var percentile : PERCENTILES) {
+            json.append(String.format(Locale.ROOT, ", \"p%s\": %d",
+                                      getPercentileName(percentile), histogram.getValueAtPercentile(percentile)));
+        }
+        return json.append("}").toString();
+    }
+
+    // 99.9 becomes 999 as is customary
+    private static String getPercentileName(double percentile) {
+        return String.valueOf(percentile).replace(".0", "").replace(".", "");
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        try (var writer = Files.newBufferedWriter(file)) {
+            writer.write("insertion,type,latency_nanos,recomputed,depth,trigger\n");
+            for (int i = 0; i < insertions.size(); i++) {
+                var insertion = insertions.get(i);
+                writer.write(String.format(Locale.ROOT, "%d,%s,%d,%b,%d,%s%n",
+                                           i,
+                                           insertion.type.name(),
+                                           insertion.latencyNanos,
+                                           insertion.trigger != null,
+                                           insertion.depth,
+                                           insertion.trigger != null ? insertion.trigger.name() : ""));
+            }
+        }
+    }
+
+    private static class Insertion {
+        private final InsertionWorkload type;
+        private final long latencyNanos;
+        @Nullable private final RecomputationTrigger trigger;
+        private final int depth;
+
+        private Insertion(InsertionWorkload type,
+                          long latencyNanos,
+                          @Nullable RecomputationTrigger trigger,
+                          int depth) {
+            this.type = type;
+            this.latencyNanos = latencyNanos;
+            this.trigger = trigger;
+            this.depth = depth;
+        }
+    }
+}
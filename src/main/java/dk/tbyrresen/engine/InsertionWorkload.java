@@ -0,0 +1,16 @@
+package dk.tbyrresen.engine;
+
+public enum InsertionWorkload {
+    NODE,  // edges from a new node to a random node in the graph
+    EDGE,  // edges between random nodes within a max hop distance in the ND-tree
+    MIXED; // each insertion is a node or edge insertion with equal probability
+
+    public static InsertionWorkload fromName(String name) {
+        for (var workload : values()) {
+            if (workload.name().equalsIgnoreCase(name)) {
+                return workload;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown insertion workload %s", name));
+    }
+}
@@ -0,0 +1,89 @@
+package dk.tbyrresen.engine;
+
+import java.util.ArrayDeque;
+
+// Growable ring buffer of ints used as the queue of every breadth first search. Queues are taken from a pool per
+// thread and given back by close(), so traversals run millions of times reuse the same buffers instead of
+// allocating and boxing a new queue each time. Nested traversals on one thread simply take different queues.
+public final class IntQueue implements AutoCloseable {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final ThreadLocal<ArrayDeque<IntQueue>> POOL = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private int[] elements = new int[INITIAL_CAPACITY]; // capacity is always a power of two
+    private int head = 0;
+    private int size = 0;
+    private boolean isAcquired = false;
+
+    private IntQueue() {
+    }
+
+    // An empty queue of the calling thread, which must be closed when the traversal is done
+    public static IntQueue acquire() {
+        var queue = POOL.get().poll();
+        if (queue == null) {
+            queue = new IntQueue();
+        }
+        queue.clear();
+        queue.isAcquired = true;
+        return queue;
+    }
+
+    public void add(int element) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = element;
+        size++;
+    }
+
+    // Puts the element at the head of the queue, so it is removed next
+    public void addFirst(int element) {
+        if (size == elements.length) {
+            grow();
+        }
+        head = (head - 1) & (elements.length - 1);
+        elements[head] = element;
+        size++;
+    }
+
+    public int remove() {
+        if (size == 0) {
+            throw new IllegalStateException("Queue is empty");
+        }
+        var element = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return element;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        var grown = new int[elements.length * 2];
+        var firstPart = Math.min(size, elements.length - head);
+        System.arraycopy(elements, head, grown, 0, firstPart);
+        System.arraycopy(elements, 0, grown, firstPart, size - firstPart);
+        elements = grown;
+        head = 0;
+    }
+
+    // Gives the queue back to the pool of the calling thread. Closing it again has no effect.
+    @Override
+    public void close() {
+        if (isAcquired) {
+            isAcquired = false;
+            POOL.get().push(this);
+        }
+    }
+}
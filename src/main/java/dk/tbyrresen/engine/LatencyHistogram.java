@@ -0,0 +1,82 @@
+package dk.tbyrresen.engine;
+
+// Histogram of non negative latencies with log-linear buckets in the style of HdrHistogram. Values below
+// 2^SUB_BUCKET_BITS are counted exactly and larger values in buckets whose width doubles every power of two, so
+// every recorded value is represented with a relative error below 2^-(SUB_BUCKET_BITS - 1), about 0.2%, while
+// the whole long range fits in a few hundred kilobytes. Not thread safe.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 10;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+    private final long[] counts = new long[(Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF_COUNT];
+    private long totalCount = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+    private double sum = 0;
+
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(String.format("Can't record negative value %d", value));
+        }
+        counts[getIndex(value)]++;
+        totalCount++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+    }
+
+    // Values below SUB_BUCKET_COUNT map to themselves. Larger values are shifted down into the upper half of the
+    // sub buckets, i.e. [SUB_BUCKET_HALF_COUNT, SUB_BUCKET_COUNT), and every shift starts a new half sized bucket.
+    private static int getIndex(long value) {
+        var shift = Math.max(0, Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+    }
+
+    // Largest value that maps to the same index, which is what percentiles report
+    private static long getHighestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        var shift = index / SUB_BUCKET_HALF_COUNT - 1;
+        var subBucket = index - shift * SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1L) << shift) - 1;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    // Smallest value such that the given percentage of the recorded values are at most that value. The result
+    // is never larger than the largest recorded value.
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException(String.format(
+                    "Percentile %s is not in valid range of [0.0, 100.0]", percentile));
+        }
+        if (totalCount == 0) {
+            return 0;
+        }
+        var countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        var accumulated = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            accumulated += counts[i];
+            if (accumulated >= countAtPercentile) {
+                return Math.min(getHighestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+}
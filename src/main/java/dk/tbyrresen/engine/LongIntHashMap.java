@@ -0,0 +1,149 @@
+package dk.tbyrresen.engine;
+
+import java.util.Arrays;
+
+// Map from long keys to int values with open addressing and linear probing over primitive arrays, so neither keys
+// nor values are boxed and a lookup is a few array reads. Used to give OSM node ids, or edges packed into a long,
+// a dense index. Entries cannot be removed, which keeps probing simple. The key FREE_KEY marks an empty slot and
+// is stored on the side when it is used as an actual key.
+public final class LongIntHashMap {
+    private static final long FREE_KEY = 0;
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+    private boolean hasFreeKey = false;
+    private int freeKeyValue;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        var capacity = Integer.highestOneBit(Math.max(2, (int) Math.ceil(expectedSize / MAX_LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public int get(long key, int defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        }
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            if (keys[slot] == FREE_KEY) {
+                return defaultValue;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            if (keys[slot] == FREE_KEY) {
+                return false;
+            }
+        }
+    }
+
+    public void put(long key, int value) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeKeyValue = value;
+            return;
+        }
+        var slot = findSlot(key);
+        if (keys[slot] == key) {
+            values[slot] = value;
+            return;
+        }
+        insert(slot, key, value);
+    }
+
+    // The value of the key if it is present, otherwise puts and returns the given value. This saves a second
+    // probe when using the map to hand out dense indices.
+    public int putIfAbsent(long key, int value) {
+        if (key == FREE_KEY) {
+            if (hasFreeKey) {
+                return freeKeyValue;
+            }
+            hasFreeKey = true;
+            freeKeyValue = value;
+            size++;
+            return value;
+        }
+        var slot = findSlot(key);
+        if (keys[slot] == key) {
+            return values[slot];
+        }
+        insert(slot, key, value);
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        size = 0;
+        hasFreeKey = false;
+    }
+
+    // The slot holding the key, or the empty slot where it would be inserted
+    private int findSlot(long key) {
+        var slot = slotOf(key);
+        while (keys[slot] != key && keys[slot] != FREE_KEY) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insert(int slot, long key, int value) {
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size > MAX_LOAD_FACTOR * keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        var oldKeys = keys;
+        var oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) {
+                var slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // Spreads the bits of the key with the multiplier of Fibonacci hashing, since packed edges and OSM ids are
+    // far from uniformly distributed in the low bits
+    private int slotOf(long key) {
+        var hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,127 @@
+package dk.tbyrresen.engine;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Approximate minimum degree (AMD) elimination order of a small graph, used to order the leaves of the ND-tree
+// that are too small to be worth separating. Elimination works on the quotient graph: an eliminated node becomes
+// an element whose neighbors form a clique, so fill is never stored explicitly. Every node is adjacent to
+// variables (uneliminated nodes) and elements, and the node of smallest approximate degree is eliminated next.
+// The degree is the bound of Amestoy, Davis and Duff, which is cheap to update since it only needs the sizes of
+// the elements. The graphs are small, so sets of nodes are bit sets and supervariables are not detected.
+public class MinimumDegreeOrdering<T> {
+    private final IndexedGraph<T> indexedGraph;
+    private final List<T> order;
+
+    public MinimumDegreeOrdering(Graph<T> graph) {
+        indexedGraph = new IndexedGraph<>(graph);
+        order = computeOrder();
+    }
+
+    private List<T> computeOrder() {
+        var numNodes = indexedGraph.getNumNodes();
+        var variables = new BitSet[numNodes]; // variables adjacent to each variable
+        var elements = new BitSet[numNodes];  // elements adjacent to each variable
+        var elementVariables = new BitSet[numNodes]; // variables adjacent to each element
+        var degrees = new int[numNodes];
+        var isEliminated = new boolean[numNodes];
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (int node = 0; node < numNodes; node++) {
+            variables[node] = new BitSet(numNodes);
+            elements[node] = new BitSet(numNodes);
+            for (int i = 0; i < indexedGraph.getDegree(node); i++) {
+                var neighbor = indexedGraph.getNeighbor(node, i);
+                if (neighbor != node) {
+                    variables[node].set(neighbor);
+                }
+            }
+            degrees[node] = variables[node].cardinality();
+            queue.add(queueKey(degrees[node], node));
+        }
+        List<T> order = new ArrayList<>(numNodes);
+        var elementWeights = new int[numNodes];
+        while (order.size() < numNodes) {
+            var key = queue.remove();
+            var pivot = (int) (long) key;
+            // the queue holds stale entries of nodes whose degree changed, which are skipped
+            if (isEliminated[pivot] || degrees[pivot] != (int) (key >>> 32)) {
+                continue;
+            }
+            isEliminated[pivot] = true;
+            order.add(indexedGraph.getNode(pivot));
+            // the new element holds the variables adjacent to the pivot and to the elements it absorbs
+            var pivotVariables = variables[pivot];
+            for (var element = elements[pivot].nextSetBit(0); element >= 0;
+                 element = elements[pivot].nextSetBit(element + 1)) {
+                pivotVariables.or(elementVariables[element]);
+                elementVariables[element] = null;
+            }
+            pivotVariables.clear(pivot);
+            elementVariables[pivot] = pivotVariables;
+            variables[pivot] = null;
+            var absorbedElements = elements[pivot];
+            elements[pivot] = null;
+            var numVariablesLeft = numNodes - order.size();
+            var pivotSize = pivotVariables.cardinality();
+            // the edges among the variables of the pivot element are implied by it, and the absorbed elements
+            // are replaced by it
+            for (var node = pivotVariables.nextSetBit(0); node >= 0; node = pivotVariables.nextSetBit(node + 1)) {
+                variables[node].andNot(pivotVariables);
+                variables[node].clear(pivot);
+                elements[node].andNot(absorbedElements);
+                elements[node].set(pivot);
+            }
+            // the number of variables of every other element outside the pivot element. Elements left with none
+            // are contained in the pivot element and absorbed as well.
+            for (var node = pivotVariables.nextSetBit(0); node >= 0; node = pivotVariables.nextSetBit(node + 1)) {
+                for (var element = elements[node].nextSetBit(0); element >= 0;
+                     element = elements[node].nextSetBit(element + 1)) {
+                    if (element != pivot && elementWeights[element] == 0) {
+                        var outside = (BitSet) elementVariables[element].clone();
+                        outside.andNot(pivotVariables);
+                        elementWeights[element] = outside.isEmpty() ? -1 : outside.cardinality();
+                    }
+                }
+            }
+            for (var node = pivotVariables.nextSetBit(0); node >= 0; node = pivotVariables.nextSetBit(node + 1)) {
+                var externalDegree = variables[node].cardinality() + pivotSize - 1;
+                for (var element = elements[node].nextSetBit(0); element >= 0;
+                     element = elements[node].nextSetBit(element + 1)) {
+                    if (element == pivot) {
+                        continue;
+                    }
+                    if (elementWeights[element] == -1) {
+                        elements[node].clear(element);
+                    } else {
+                        externalDegree += elementWeights[element];
+                    }
+                }
+                var degree = Math.min(numVariablesLeft - 1,
+                                      Math.min(degrees[node] + pivotSize - 1, externalDegree));
+                if (degree != degrees[node]) {
+                    degrees[node] = degree;
+                    queue.add(queueKey(degree, node));
+                }
+            }
+            for (var node = pivotVariables.nextSetBit(0); node >= 0; node = pivotVariables.nextSetBit(node + 1)) {
+                for (var element = elements[node].nextSetBit(0); element >= 0;
+                     element = elements[node].nextSetBit(element + 1)) {
+                    elementWeights[element] = 0;
+                }
+            }
+        }
+        return order;
+    }
+
+    // Orders by degree and then by node index, so ties are broken the same way every time
+    private static long queueKey(int degree, int node) {
+        return ((long) degree << 32) | node;
+    }
+
+    // The nodes in the order they are eliminated
+    public List<T> getOrder() {
+        return order;
+    }
+}
@@ -0,0 +1,137 @@
+package dk.tbyrresen.engine;
+
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+import dk.tbyrresen.engine.metrics.DissectionPhase;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+// Multilevel path of GraphSeparator for large graphs, where every FlowCutter run would search the full graph many
+// times. The graph is coarsened by heavy edge matching until it has at most MULTILEVEL_COARSE_NODES nodes, the
+// FlowCutter runs are made on the coarsest graph with node weighted balance, and the separator is projected back
+// one level at a time and refined on every level. A coarse separator node becomes all of the nodes it contains,
+// which the refinement thins out again.
+class MultilevelSeparator<T> {
+    private final Separator<T> separator;
+    private final int numFlowCutterRuns;
+    private final int numLevels;
+
+    MultilevelSeparator(Graph<T> graph,
+                        double epsilon,
+                        int maxFlowCutterRuns,
+                        int depth,
+                        @Nullable NodeCoordinates<T> coordinates,
+                        BooleanSupplier shouldStop) {
+        var start = DissectionMetrics.startTimer();
+        var indexedGraph = new IndexedGraph<>(graph);
+        var levels = coarsen(CoarseGraph.fromIndexedGraph(indexedGraph, coordinates));
+        numLevels = levels.size();
+        var coarsest = levels.get(numLevels - 1);
+        var coarsestGraph = coarsest.toGraph();
+        DissectionMetrics.stopTimer(DissectionPhase.COARSENING, start);
+        var coarseSeparator = new GraphSeparator<>(
+                coarsestGraph,
+                epsilon,
+                maxFlowCutterRuns,
+                depth,
+                coarsest.getCoordinates(),
+                coarsest::getNodeWeight,
+                shouldStop);
+        numFlowCutterRuns = coarseSeparator.getNumFlowCutterRuns();
+        var levelSeparator = coarseSeparator.getSeparator();
+        for (int level = numLevels - 2; level >= 0; level--) {
+            start = DissectionMetrics.startTimer();
+            var fineLevel = levels.get(level);
+            levelSeparator = project(levelSeparator, levels.get(level + 1), fineLevel.getNumNodes());
+            var fineGraph = level > 0 ? fineLevel.toGraph() : null;
+            DissectionMetrics.stopTimer(DissectionPhase.COARSENING, start);
+            if (fineGraph != null) {
+                start = DissectionMetrics.startTimer();
+                levelSeparator = new SeparatorRefiner<>(
+                        fineGraph, DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE, fineLevel::getNodeWeight)
+                        .refine(levelSeparator);
+                DissectionMetrics.stopTimer(DissectionPhase.SEPARATOR_REFINEMENT, start);
+            }
+        }
+        // the finest level is the graph itself, whose nodes are the indexed nodes
+        start = DissectionMetrics.startTimer();
+        var unrefinedSeparator = new Separator<>(toGraphNodes(levelSeparator.getSeparatorNodes(), indexedGraph),
+                                                 toGraphNodes(levelSeparator.getLeftSeparatedNodes(), indexedGraph),
+                                                 toGraphNodes(levelSeparator.getRightSeparatedNodes(), indexedGraph),
+                                                 new HashSet<>());
+        DissectionMetrics.stopTimer(DissectionPhase.COARSENING, start);
+        start = DissectionMetrics.startTimer();
+        separator = new SeparatorRefiner<>(graph, DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE)
+                .refine(unrefinedSeparator);
+        DissectionMetrics.stopTimer(DissectionPhase.SEPARATOR_REFINEMENT, start);
+    }
+
+    // Returns the levels from the finest to the coarsest. Contraction stops early once a level hardly shrinks, as
+    // on stars where a single node is adjacent to most of the others. The node weights are capped so the coarsest
+    // nodes are of similar size.
+    private static List<CoarseGraph> coarsen(CoarseGraph finestLevel) {
+        List<CoarseGraph> levels = new ArrayList<>();
+        levels.add(finestLevel);
+        var maxNodeWeight = (int) Math.ceil(DissectionConstants.MULTILEVEL_MAX_NODE_WEIGHT_FACTOR
+                                            * finestLevel.getNumNodes() / DissectionConstants.MULTILEVEL_COARSE_NODES);
+        var random = new SplittableRandom(DissectionConstants.COARSENING_SEED ^ finestLevel.getNumNodes());
+        var level = finestLevel;
+        while (level.getNumNodes() > DissectionConstants.MULTILEVEL_COARSE_NODES) {
+            var coarserLevel = level.contract(maxNodeWeight, random);
+            if (coarserLevel.getNumNodes()
+                    > DissectionConstants.MULTILEVEL_MAX_CONTRACTION_RATIO * level.getNumNodes()) {
+                break;
+            }
+            levels.add(coarserLevel);
+            level = coarserLevel;
+        }
+        return levels;
+    }
+
+    // Every node of the finer level goes to the set of the coarse node containing it. The separating edges are
+    // left empty since the refinement finds them.
+    private static Separator<Integer> project(Separator<Integer> coarseSeparator,
+                                              CoarseGraph coarseLevel,
+                                              int numFineNodes) {
+        Set<Integer> separatorNodes = new HashSet<>();
+        Set<Integer> leftNodes = new HashSet<>();
+        Set<Integer> rightNodes = new HashSet<>();
+        for (int fineNode = 0; fineNode < numFineNodes; fineNode++) {
+            var coarseNode = coarseLevel.getCoarseNode(fineNode);
+            if (coarseSeparator.getSeparatorNodes().contains(coarseNode)) {
+                separatorNodes.add(fineNode);
+            } else if (coarseSeparator.getLeftSeparatedNodes().contains(coarseNode)) {
+                leftNodes.add(fineNode);
+            } else {
+                rightNodes.add(fineNode);
+            }
+        }
+        return new Separator<>(separatorNodes, leftNodes, rightNodes, new HashSet<>());
+    }
+
+    private static <T> Set<T> toGraphNodes(Set<Integer> nodes, IndexedGraph<T> indexedGraph) {
+        Set<T> graphNodes = new HashSet<>(2 * nodes.size());
+        for (var node : nodes) {
+            graphNodes.add(indexedGraph.getNode(node));
+        }
+        return graphNodes;
+    }
+
+    Separator<T> getSeparator() {
+        return separator;
+    }
+
+    int getNumFlowCutterRuns() {
+        return numFlowCutterRuns;
+    }
+
+    // Including the finest level, so 1 if the graph could not be coarsened
+    int getNumLevels() {
+        return numLevels;
+    }
+}
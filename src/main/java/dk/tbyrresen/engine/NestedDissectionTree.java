@@ -1,13 +1,25 @@
 package dk.tbyrresen.engine;
 
+import dk.tbyrresen.engine.jfr.RecomputationEvent;
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+import dk.tbyrresen.engine.metrics.DissectionPhase;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.lang.Nullable;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class NestedDissectionTree<T> {
     private NestedDissectionTreeNode<T> root;
@@ -15,86 +27,247 @@ public class NestedDissectionTree<T> {
     private final double epsilon;
     private final List<NestedDissectionTreeRecomputation> recomputations = new ArrayList<>(); // used for evaluation
     private final int numFlowCutterRuns;
+    private final SeparatorStrategy<T> separatorStrategy;
+    private final int maxOrderedLeafNodes;
+    private final BooleanSupplier cancellation;
+    private volatile boolean isCancelled = false;
 
+    // Every subgraph is separated until it is a tree or a clique, as before ordered leaves were introduced
     public NestedDissectionTree(Graph<T> graph, double epsilon, int numFlowCutterRuns) {
+        this(graph, epsilon, numFlowCutterRuns, new FlowCutterSeparatorStrategy<>(), 0);
+    }
+
+    // The strategy computes every separator of the tree, also when recomputing subtrees after updates. Subgraphs
+    // of at most maxOrderedLeafNodes nodes are not separated but become leaves ordered by minimum degree.
+    public NestedDissectionTree(Graph<T> graph,
+                                double epsilon,
+                                int numFlowCutterRuns,
+                                SeparatorStrategy<T> separatorStrategy,
+                                int maxOrderedLeafNodes) {
         this.epsilon = epsilon;
         this.numFlowCutterRuns = numFlowCutterRuns;
-        root = buildNestedDissectionTreeRoot(graph);
+        this.separatorStrategy = separatorStrategy;
+        this.maxOrderedLeafNodes = checkMaxOrderedLeafNodes(maxOrderedLeafNodes);
+        cancellation = () -> false;
+        root = buildNestedDissectionTreeRoot(graph, BuildSettings.uncancellable(numFlowCutterRuns));
         orderedDissections = getOrderedDissectionNodes();
     }
 
-    private NestedDissectionTreeNode<T> buildNestedDissectionTreeRoot(Graph<T> graph) {
-        NestedDissectionTreeNode<T> treeRoot;
-        if (GraphUtils.isClique(graph) || GraphUtils.isTree(graph)) {
-            treeRoot = new NestedDissectionTreeNode<>(graph.getNodes(), graph.getEdges(), 0);
-        } else {
-            var graphSeparator = new GraphSeparator<>(graph, epsilon, numFlowCutterRuns);
-            var separator = graphSeparator.getSeparator();
-            var separatorNodes = separator.getSeparatorNodes();
-            var separatorEdges = GraphUtils.extractSubGraphEdges(graph, separatorNodes);
-            var subGraphs = graphSeparator.separate();
-            treeRoot = new NestedDissectionTreeNode<>(
-                    separatorNodes,
-                    separatorEdges,
-                    separator.getSeparatingEdges(),
-                    subGraphs.getLeft().stream().mapToInt(g -> g.getNodes().size()).sum(),
-                    subGraphs.getRight().stream().mapToInt(g -> g.getNodes().size()).sum(),
-                    0
-            );
-            for (var subGraph : subGraphs.left) {
-                buildNestedDissectionTree(treeRoot, subGraph, SeparationSide.LEFT, 1);
-            }
-            for (var subGraph : subGraphs.right) {
-                buildNestedDissectionTree(treeRoot, subGraph, SeparationSide.RIGHT, 1);
-            }
+    // Anytime construction for when the time to build the tree is limited. A usable tree is first built quickly
+    // with only a few FlowCutter runs per separator, and the separators are then improved top down with the full
+    // number of runs until the budget is used, see improveSeparators.
+    public NestedDissectionTree(Graph<T> graph, double epsilon, int numFlowCutterRuns, Duration budget) {
+        this(graph, epsilon, numFlowCutterRuns, budget, () -> false);
+    }
+
+    // The construction stops as soon as possible once the budget is used or the cancellation returns true, which
+    // may happen from any thread. If that happens while the initial tree is built, the subgraphs not separated yet
+    // become leaves, so the tree is always valid but may have large leaves. Those are separated first by later
+    // calls to improveSeparators. The cancellation also stops those calls.
+    public NestedDissectionTree(Graph<T> graph,
+                                double epsilon,
+                                int numFlowCutterRuns,
+                                Duration budget,
+                                BooleanSupplier cancellation) {
+        this(graph, epsilon, numFlowCutterRuns, budget, cancellation, new FlowCutterSeparatorStrategy<>(), 0);
+    }
+
+    public NestedDissectionTree(Graph<T> graph,
+                                double epsilon,
+                                int numFlowCutterRuns,
+                                Duration budget,
+                                BooleanSupplier cancellation,
+                                SeparatorStrategy<T> separatorStrategy,
+                                int maxOrderedLeafNodes) {
+        var deadline = System.nanoTime() + budget.toNanos();
+        this.epsilon = epsilon;
+        this.numFlowCutterRuns = numFlowCutterRuns;
+        this.separatorStrategy = separatorStrategy;
+        this.maxOrderedLeafNodes = checkMaxOrderedLeafNodes(maxOrderedLeafNodes);
+        this.cancellation = cancellation;
+        var initialRuns = Math.min(numFlowCutterRuns, DissectionConstants.ANYTIME_INITIAL_FLOWCUTTER_RUNS);
+        root = buildNestedDissectionTreeRoot(
+                graph, BuildSettings.completedOnAbort(initialRuns, () -> isAborted(deadline)));
+        orderedDissections = getOrderedDissectionNodes();
+        improveSeparators(Duration.ofNanos(deadline - System.nanoTime()));
+    }
+
+    private static int checkMaxOrderedLeafNodes(int maxOrderedLeafNodes) {
+        if (maxOrderedLeafNodes < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Max ordered leaf size must be non negative but was %d", maxOrderedLeafNodes));
         }
-        return treeRoot;
+        return maxOrderedLeafNodes;
+    }
+
+    private NestedDissectionTreeNode<T> buildNestedDissectionTreeRoot(Graph<T> graph, BuildSettings settings) {
+        settings.checkNotAborted();
+        if (settings.isLeafOnAbort() || isLeafGraph(graph)) {
+            // copied since the graph may be a read only view and leaves are updated in place
+            return new NestedDissectionTreeNode<>(new HashSet<>(graph.getNodes()), new HashSet<>(graph.getEdges()), 0);
+        }
+        var separator = separatorStrategy.findSeparator(
+                graph, epsilon, settings.numFlowCutterRuns, 0, settings.shouldAbort);
+        return buildSeparatorNode(null, graph, separator, null, 0, settings);
     }
 
     private void buildNestedDissectionTree(NestedDissectionTreeNode<T> parent,
                                            Graph<T> graph,
                                            SeparationSide separationSide,
-                                           int depth) {
-        if (GraphUtils.isClique(graph) || GraphUtils.isTree(graph)) {
+                                           int depth,
+                                           BuildSettings settings) {
+        settings.checkNotAborted();
+        if (settings.isLeafOnAbort() || isLeafGraph(graph)) {
             var dissectionNode = new NestedDissectionTreeNode<>(
-                    graph.getNodes(),
-                    graph.getEdges(),
+                    new HashSet<>(graph.getNodes()),
+                    new HashSet<>(graph.getEdges()),
                     parent,
                     separationSide,
                     depth
             );
             parent.addChild(dissectionNode);
         } else {
-            var graphSeparator = new GraphSeparator<>(graph, epsilon, numFlowCutterRuns);
-            var separator = graphSeparator.getSeparator();
-            var separatorNodes = separator.getSeparatorNodes();
-            var separatorEdges = GraphUtils.extractSubGraphEdges(graph, separatorNodes);
-            var subGraphs = graphSeparator.separate();
-            var dissectionNode = new NestedDissectionTreeNode<>(
+            var separator = separatorStrategy.findSeparator(
+                    graph, epsilon, settings.numFlowCutterRuns, depth, settings.shouldAbort);
+            parent.addChild(buildSeparatorNode(parent, graph, separator, separationSide, depth, settings));
+        }
+    }
+
+    // Builds the dissection node of the separator together with its subtree. The node is not added as a child of
+    // the parent, which is left to the caller.
+    private NestedDissectionTreeNode<T> buildSeparatorNode(@Nullable NestedDissectionTreeNode<T> parent,
+                                                           Graph<T> graph,
+                                                           Separator<T> separator,
+                                                           @Nullable SeparationSide separationSide,
+                                                           int depth,
+                                                           BuildSettings settings) {
+        var separatorNodes = separator.getSeparatorNodes();
+        var separatorEdges = GraphUtils.extractSubGraphEdges(graph, separatorNodes);
+        var subGraphs = GraphUtils.separate(graph, separator);
+        var leftTreeSize = subGraphs.getLeft().stream().mapToInt(g -> g.getNodes().size()).sum();
+        var rightTreeSize = subGraphs.getRight().stream().mapToInt(g -> g.getNodes().size()).sum();
+        NestedDissectionTreeNode<T> dissectionNode;
+        if (parent == null || separationSide == null) {
+            dissectionNode = new NestedDissectionTreeNode<>(
+                    separatorNodes,
+                    separatorEdges,
+                    separator.getSeparatingEdges(),
+                    leftTreeSize,
+                    rightTreeSize,
+                    depth
+            );
+        } else {
+            dissectionNode = new NestedDissectionTreeNode<>(
                     separatorNodes,
                     separatorEdges,
                     parent,
                     separator.getSeparatingEdges(),
                     separationSide,
-                    subGraphs.getLeft().stream().mapToInt(g -> g.getNodes().size()).sum(),
-                    subGraphs.getRight().stream().mapToInt(g -> g.getNodes().size()).sum(),
+                    leftTreeSize,
+                    rightTreeSize,
                     depth
             );
-            parent.addChild(dissectionNode);
-            for (var subGraph : subGraphs.left) {
-                buildNestedDissectionTree(dissectionNode, subGraph, SeparationSide.LEFT, depth + 1);
+        }
+        buildChildren(dissectionNode, subGraphs, depth + 1, settings);
+        return dissectionNode;
+    }
+
+    // The separated subgraphs (e.g. the blocks on either side of an articulation point) are independent of each
+    // other, so their subtrees are dissected in parallel
+    private void buildChildren(NestedDissectionTreeNode<T> parent,
+                               Pair<Set<Graph<T>>, Set<Graph<T>>> subGraphs,
+                               int depth,
+                               BuildSettings settings) {
+        Stream.concat(subGraphs.getLeft().stream().map(g -> ImmutablePair.of(g, SeparationSide.LEFT)),
+                      subGraphs.getRight().stream().map(g -> ImmutablePair.of(g, SeparationSide.RIGHT)))
+                .collect(Collectors.toList())
+                .parallelStream()
+                .forEach(p -> buildNestedDissectionTree(parent, p.getLeft(), p.getRight(), depth, settings));
+    }
+
+    // Recomputes the separators of the tree top down (breadth first) with the full number of FlowCutter runs and
+    // replaces a separator whenever the new one has a smaller expansion. Leaves left too large by an aborted
+    // initial build are always separated. The subtree below a replaced separator is rebuilt with few runs and
+    // improved further when its turn comes. Replacement subtrees are built detached from the tree and only swapped
+    // in once complete, so the tree is valid whenever this returns, also when the budget runs out or the
+    // construction is cancelled during a rebuild. May be called again to continue improving later.
+    public void improveSeparators(Duration budget) {
+        var deadline = System.nanoTime() + budget.toNanos();
+        var initialRuns = Math.min(numFlowCutterRuns, DissectionConstants.ANYTIME_INITIAL_FLOWCUTTER_RUNS);
+        var settings = BuildSettings.discardedOnAbort(initialRuns, () -> isAborted(deadline));
+        Queue<NestedDissectionTreeNode<T>> queue = new LinkedList<>(Collections.singleton(root));
+        while (!queue.isEmpty() && !settings.shouldAbort.getAsBoolean()) {
+            var node = queue.remove();
+            if (isLeafNode(node) && !violatesLeafConditions(node)) {
+                continue;
+            }
+            try {
+                node = improveSeparator(node, settings);
+            } catch (ConstructionAbortedException e) {
+                break;
             }
-            for (var subGraph : subGraphs.right) {
-                buildNestedDissectionTree(dissectionNode, subGraph, SeparationSide.RIGHT, depth + 1);
+            queue.addAll(node.getChildren());
+        }
+    }
+
+    private boolean isAborted(long deadline) {
+        return isCancelled || cancellation.getAsBoolean() || System.nanoTime() - deadline >= 0;
+    }
+
+    // Returns the node now in the place of the given node, which is a new node if the separator was improved or
+    // the node was a leaf that had to be separated. The separator is computed with the full number of runs, but
+    // stops between FlowCutter waves once the build is aborted. Any separator of such a leaf is better than none,
+    // so its subtree is completed with leaves on abort instead of being discarded.
+    private NestedDissectionTreeNode<T> improveSeparator(NestedDissectionTreeNode<T> node, BuildSettings settings) {
+        settings.checkNotAborted();
+        var isLeaf = isLeafNode(node);
+        var graph = buildGraphFromDissectionNode(node);
+        var separator = separatorStrategy.findSeparator(
+                graph, epsilon, numFlowCutterRuns, node.getDepth(), settings.shouldAbort);
+        if (!isLeaf) {
+            settings.checkNotAborted();
+            if (separator.getExpansion() >= getExpansion(node)
+                    || (separator.getImbalance() > DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE
+                        && node.isBalanced())) {
+                return node;
             }
         }
+        var subtreeSettings = isLeaf
+                ? BuildSettings.completedOnAbort(settings.numFlowCutterRuns, settings.shouldAbort)
+                : settings;
+        var parent = node.getParent();
+        var improvedNode = buildSeparatorNode(
+                parent, graph, separator, node.getSeparationSide(), node.getDepth(), subtreeSettings);
+        if (parent == null) {
+            root = improvedNode;
+        } else {
+            parent.removeChild(node);
+            parent.addChild(improvedNode);
+        }
+        orderedDissections = getOrderedDissectionNodes();
+        return improvedNode;
+    }
+
+    // Same as Separator.getExpansion but using the current sizes of the subtrees
+    private static double getExpansion(NestedDissectionTreeNode<?> node) {
+        var smallestSide = Math.min(node.getLeftTreeSize(), node.getRightTreeSize());
+        return (double) node.getDissectionNodes().size() / Math.max(1, smallestSide);
+    }
+
+    // Stops an ongoing or later call to improveSeparators as soon as possible, keeping the current tree. May be
+    // called from any thread, but only once the tree is constructed, so use the cancellation of the constructor to
+    // stop the construction itself.
+    public void cancel() {
+        isCancelled = true;
     }
 
     // TODO make this able to compute from specific node instead of traversing entire tree each time
     // Collects all dissections in correct order by doing a post order traversal from the root node
     private List<NestedDissectionTreeNode<T>> getOrderedDissectionNodes() {
+        var start = DissectionMetrics.startTimer();
         List<NestedDissectionTreeNode<T>> orderedDissectionNodes = new ArrayList<>();
         collectOrderedDissectionNodes(root, orderedDissectionNodes);
+        DissectionMetrics.stopTimer(DissectionPhase.TREE_BOOKKEEPING, start);
         return orderedDissectionNodes;
     }
 
@@ -118,10 +291,10 @@ public class NestedDissectionTree<T> {
             incrementTreeSize(source.getParent(), source.getSeparationSide());
             var highestImbalancedNode = findHighestImbalancedAncestor(source);
             if (highestImbalancedNode.isPresent()) {
-                recomputeTreeFromDissectionNode(highestImbalancedNode.get());
+                recomputeTreeFromDissectionNode(highestImbalancedNode.get(), RecomputationTrigger.IMBALANCE);
                 return Optional.of(highestImbalancedNode.get());
             } else if (isLeafNode(source) && violatesLeafConditions(source)) {
-                recomputeTreeFromDissectionNode(source);
+                recomputeTreeFromDissectionNode(source, RecomputationTrigger.LEAF_VIOLATION);
                 return Optional.of(source);
             }
         } else if (sourceDissectionNode.isEmpty()) {
@@ -129,10 +302,10 @@ public class NestedDissectionTree<T> {
             incrementTreeSize(target.getParent(), target.getSeparationSide());
             var highestImbalancedNode = findHighestImbalancedAncestor(target);
             if (highestImbalancedNode.isPresent()) {
-                recomputeTreeFromDissectionNode(highestImbalancedNode.get());
+                recomputeTreeFromDissectionNode(highestImbalancedNode.get(), RecomputationTrigger.IMBALANCE);
                 return Optional.of(highestImbalancedNode.get());
             } else if (isLeafNode(target) && violatesLeafConditions(target)) {
-                recomputeTreeFromDissectionNode(target);
+                recomputeTreeFromDissectionNode(target, RecomputationTrigger.LEAF_VIOLATION);
                 return Optional.of(target);
             }
         } else { // need to find the lowest common ancestor when both are present
@@ -142,7 +315,7 @@ public class NestedDissectionTree<T> {
             if (lowestCommonAncestor.equals(source)) {  // source == target
                 source.addDissectionEdge(edge);
                 if (isLeafNode(source) && violatesLeafConditions(source)) {
-                    recomputeTreeFromDissectionNode(source);
+                    recomputeTreeFromDissectionNode(source, RecomputationTrigger.LEAF_VIOLATION);
                     return Optional.of(source);
                 }
             } else { // determine if the edge crosses a separator or if we simply need to add an edge to child
@@ -162,16 +335,21 @@ public class NestedDissectionTree<T> {
     }
 
     public Optional<NestedDissectionTreeNode<T>> findDissectionNodeByGraphNode(T graphNode) {
+        var start = DissectionMetrics.startTimer();
+        Optional<NestedDissectionTreeNode<T>> found = Optional.empty();
         for (var dissectionNode : orderedDissections) {
             if (dissectionNode.getDissectionNodes().contains(graphNode)) {
-                return Optional.of(dissectionNode);
+                found = Optional.of(dissectionNode);
+                break;
             }
         }
-        return Optional.empty();
+        DissectionMetrics.stopTimer(DissectionPhase.TREE_BOOKKEEPING, start);
+        return found;
     }
 
     // This method is necessary when we add a new dissectionNode since we use the dissectionNodes to compute hash values.
     private NestedDissectionTreeNode<T> getUpdateDissectionNode(NestedDissectionTreeNode<T> nodeToUpdate, T dissectionNode, Edge<T> edge) {
+        var start = DissectionMetrics.startTimer();
         var updatedNode = new NestedDissectionTreeNode<>(nodeToUpdate); // copy the nodeToUpdate
         updatedNode.addDissectionNode(dissectionNode);
         updatedNode.addDissectionEdge(edge);
@@ -199,6 +377,7 @@ public class NestedDissectionTree<T> {
             }
             counter++;
         }
+        DissectionMetrics.stopTimer(DissectionPhase.TREE_BOOKKEEPING, start);
         return updatedNode;
     }
 
@@ -246,10 +425,24 @@ public class NestedDissectionTree<T> {
         return node.getChildren().isEmpty();
     }
 
-    // Assumes node is a leaf node
+    // Small graphs become ordered leaves whatever their structure, which saves separating them and checking
+    // whether they are trees or cliques. The order is computed by the leaf when it is needed.
+    private boolean isLeafGraph(Graph<T> graph) {
+        return graph.getNodes().size() <= maxOrderedLeafNodes
+               || GraphUtils.isClique(graph)
+               || GraphUtils.isTree(graph);
+    }
+
+    // Assumes node is a leaf node. Ordered leaves only violate the conditions once they outgrow the size limit.
     private boolean violatesLeafConditions(NestedDissectionTreeNode<T> node) {
+        if (node.getDissectionNodes().size() <= maxOrderedLeafNodes) {
+            return false;
+        }
+        var start = DissectionMetrics.startTimer();
         var leafGraph = new StandardGraph<>(node.getDissectionNodes(), node.getDissectionEdges());
-        return (!(GraphUtils.isTree(leafGraph) || GraphUtils.isClique(leafGraph)));
+        var violates = !isLeafGraph(leafGraph);
+        DissectionMetrics.stopTimer(DissectionPhase.TREE_BOOKKEEPING, start);
+        return violates;
     }
 
     // Returns true if a separator needs to be crossed to traverse from source to target or vice versa
@@ -263,35 +456,34 @@ public class NestedDissectionTree<T> {
                && (targetParent == null || !targetParent.equals(source));
     }
 
-    private void recomputeTreeFromDissectionNode(NestedDissectionTreeNode<T> node) {
+    private void recomputeTreeFromDissectionNode(NestedDissectionTreeNode<T> node, RecomputationTrigger trigger) {
+        var event = new RecomputationEvent();
+        event.begin();
         long start = System.currentTimeMillis();
         var graph = buildGraphFromDissectionNode(node);
-        if (root.equals(node)) {
-            root = buildNestedDissectionTreeRoot(graph);
-        } else {
-            var parentNode = node.getParent();
-            if (parentNode == null || node.getSeparationSide() == null) {
-                throw new IllegalStateException(String.format(
-                        "No parent or separation side available for node %s", node));
-            }
-            parentNode.removeChild(node);
-            buildNestedDissectionTree(parentNode, graph, node.getSeparationSide(), node.getDepth());
-        }
+        rebuildFromDissectionNode(node, graph);
         long end = System.currentTimeMillis();
-        recomputations.add(new NestedDissectionTreeRecomputation(node.getDepth(), end - start));
-        orderedDissections = getOrderedDissectionNodes();
+        recordRecomputation(event, node, graph, trigger, end - start);
     }
 
-    // TODO fix duplicated code
     // We use this in the case where an edge crosses a separator and we need to recompute. If the
     // edge crosses a separator we have no nested dissection node to which we can add the edge
     // and we can't add it as a children edge either, so we pass it this way.
     private void recomputeTreeFromDissectionNode(NestedDissectionTreeNode<T> node, Edge<T> edge) {
+        var event = new RecomputationEvent();
+        event.begin();
         long start = System.currentTimeMillis();
         var graph = buildGraphFromDissectionNode(node);
         graph.addEdge(edge);
+        rebuildFromDissectionNode(node, graph);
+        long end = System.currentTimeMillis();
+        recordRecomputation(event, node, graph, RecomputationTrigger.SEPARATOR_CROSSING, end - start);
+    }
+
+    // Replaces the subtree of the given node by a nested dissection tree of the graph
+    private void rebuildFromDissectionNode(NestedDissectionTreeNode<T> node, Graph<T> graph) {
         if (root.equals(node)) {
-            root = buildNestedDissectionTreeRoot(graph);
+            root = buildNestedDissectionTreeRoot(graph, BuildSettings.uncancellable(numFlowCutterRuns));
         } else {
             var parentNode = node.getParent();
             if (parentNode == null || node.getSeparationSide() == null) {
@@ -299,49 +491,71 @@ public class NestedDissectionTree<T> {
                         "No parent or separation side available for node %s", node));
             }
             parentNode.removeChild(node);
-            buildNestedDissectionTree(parentNode, graph, node.getSeparationSide(), node.getDepth());
+            buildNestedDissectionTree(parentNode, graph, node.getSeparationSide(), node.getDepth(),
+                                      BuildSettings.uncancellable(numFlowCutterRuns));
         }
-        long end = System.currentTimeMillis();
-        recomputations.add(new NestedDissectionTreeRecomputation(node.getDepth(), end - start));
         orderedDissections = getOrderedDissectionNodes();
     }
 
-    public Graph<T> buildGraphFromDissectionNode(NestedDissectionTreeNode<T> node) {
-        var collectedNodes = new HashSet<>(node.getDissectionNodes());
-        var collectedEdges = new HashSet<>(node.getDissectionEdges());
-        collectedEdges.addAll(node.getEdgesToChildren());
-        for (var child : node.getChildren()) {
-            collectedNodes.addAll(collectNodesFromDissectionNode(child));
-            collectedEdges.addAll(collectEdgesFromDissectionNode(child));
+    private void recordRecomputation(RecomputationEvent event,
+                                     NestedDissectionTreeNode<T> node,
+                                     Graph<T> graph,
+                                     RecomputationTrigger trigger,
+                                     long recomputationTimeMs) {
+        recomputations.add(new NestedDissectionTreeRecomputation(node.getDepth(), recomputationTimeMs, trigger));
+        event.end();
+        if (event.shouldCommit()) {
+            event.depth = node.getDepth();
+            event.subtreeNodes = graph.getNodes().size();
+            event.trigger = trigger.name();
+            event.commit();
         }
-        return new StandardGraph<>(collectedNodes, collectedEdges);
     }
 
-    public NestedDissectionTreeNode<T> getRoot() {
-        return root;
+    public Graph<T> buildGraphFromDissectionNode(NestedDissectionTreeNode<T> node) {
+        var start = DissectionMetrics.startTimer();
+        Set<T> collectedNodes = new HashSet<>();
+        Set<Edge<T>> collectedEdges = new HashSet<>();
+        collectFromDissectionNode(node, collectedNodes, collectedEdges);
+        var graph = new StandardGraph<>(collectedNodes, collectedEdges);
+        DissectionMetrics.stopTimer(DissectionPhase.TREE_BOOKKEEPING, start);
+        return graph;
     }
 
-    private Set<T> collectNodesFromDissectionNode(NestedDissectionTreeNode<T> node) {
-        var collectedNodes = new HashSet<>(node.getDissectionNodes());
-        for (var child : node.getChildren()) {
-            collectedNodes.addAll(collectNodesFromDissectionNode(child));
-        }
-        return collectedNodes;
+    public NestedDissectionTreeNode<T> getRoot() {
+        return root;
     }
 
-    private Set<Edge<T>> collectEdgesFromDissectionNode(NestedDissectionTreeNode<T> node) {
-        var collectedEdges = new HashSet<>(node.getDissectionEdges());
+    // Collects directly into the given sets so every node and edge of the subtree is copied exactly once
+    private void collectFromDissectionNode(NestedDissectionTreeNode<T> node,
+                                           Set<T> collectedNodes,
+                                           Set<Edge<T>> collectedEdges) {
+        collectedNodes.addAll(node.getDissectionNodes());
+        collectedEdges.addAll(node.getDissectionEdges());
         collectedEdges.addAll(node.getEdgesToChildren());
         for (var child : node.getChildren()) {
-            collectedEdges.addAll(collectEdgesFromDissectionNode(child));
+            collectFromDissectionNode(child, collectedNodes, collectedEdges);
         }
-        return collectedEdges;
     }
 
     public List<NestedDissectionTreeNode<T>> getOrderedDissections() {
         return orderedDissections;
     }
 
+    // Elimination order of all nodes of the graph: the dissections in order, where the nodes of every leaf are in
+    // their minimum degree order
+    public List<T> getEliminationOrder() {
+        List<T> eliminationOrder = new ArrayList<>();
+        for (var dissectionNode : orderedDissections) {
+            if (isLeafNode(dissectionNode)) {
+                eliminationOrder.addAll(dissectionNode.getEliminationOrder());
+            } else {
+                eliminationOrder.addAll(dissectionNode.getDissectionNodes());
+            }
+        }
+        return eliminationOrder;
+    }
+
     // TODO this is straightforward but could be more efficient
     public int getNumDirtyNodes() {
         return orderedDissections
@@ -365,4 +579,49 @@ public class NestedDissectionTree<T> {
     public List<NestedDissectionTreeRecomputation> getRecomputations() {
         return recomputations;
     }
+
+    // How (sub)trees are built: the number of FlowCutter runs per separator and when to give up. An aborted build
+    // either throws a ConstructionAbortedException, which discards the detached subtree being built, or completes
+    // the tree by turning every subgraph not separated yet into a leaf, which is how the initial tree is built.
+    private static class BuildSettings {
+        private final int numFlowCutterRuns;
+        private final BooleanSupplier shouldAbort;
+        private final boolean isCompletedOnAbort;
+
+        private BuildSettings(int numFlowCutterRuns, BooleanSupplier shouldAbort, boolean isCompletedOnAbort) {
+            this.numFlowCutterRuns = numFlowCutterRuns;
+            this.shouldAbort = shouldAbort;
+            this.isCompletedOnAbort = isCompletedOnAbort;
+        }
+
+        private static BuildSettings uncancellable(int numFlowCutterRuns) {
+            return new BuildSettings(numFlowCutterRuns, () -> false, false);
+        }
+
+        private static BuildSettings completedOnAbort(int numFlowCutterRuns, BooleanSupplier shouldAbort) {
+            return new BuildSettings(numFlowCutterRuns, shouldAbort, true);
+        }
+
+        private static BuildSettings discardedOnAbort(int numFlowCutterRuns, BooleanSupplier shouldAbort) {
+            return new BuildSettings(numFlowCutterRuns, shouldAbort, false);
+        }
+
+        private void checkNotAborted() {
+            if (!isCompletedOnAbort && shouldAbort.getAsBoolean()) {
+                throw new ConstructionAbortedException();
+            }
+        }
+
+        private boolean isLeafOnAbort() {
+            return isCompletedOnAbort && shouldAbort.getAsBoolean();
+        }
+    }
+
+    private static class ConstructionAbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private ConstructionAbortedException() {
+            super("Construction of the ND-tree was aborted", null, false, false);
+        }
+    }
 }
@@ -3,12 +3,13 @@ package dk.tbyrresen.engine;
 import org.springframework.lang.Nullable;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
 // We are always building from lower nodes to higher nodes in the tree
 public class NestedDissectionTreeNode<T> {
-    private final Set<T> dissectionNodes;   // Separator nodes if non leaf, otherwise a tree or clique
+    private final Set<T> dissectionNodes;   // Separator nodes if non leaf, otherwise a small graph, tree or clique
     private final Set<Edge<T>> dissectionEdges;
     @Nullable private NestedDissectionTreeNode<T> parent;
     @Nullable private SeparationSide separationSide;
@@ -18,6 +19,9 @@ public class NestedDissectionTreeNode<T> {
     private int rightTreeSize = 0;
     private int numDirtyNodes = 0;
     private final int depth;
+    @Nullable private List<T> eliminationOrder; // of a leaf, computed when first needed
+    private int hash; // of the dissection nodes, computed when first needed
+    private boolean isHashComputed;
 
     public NestedDissectionTreeNode(Set<T> dissectionNodes,
                                     Set<Edge<T>> dissectionEdges,
@@ -85,7 +89,8 @@ public class NestedDissectionTreeNode<T> {
         this.parent = parent;
     }
 
-    public void addChild(NestedDissectionTreeNode<T> node) {
+    // Synchronized since subtrees of a node are built in parallel
+    public synchronized void addChild(NestedDissectionTreeNode<T> node) {
         children.add(node);
     }
 
@@ -99,11 +104,27 @@ public class NestedDissectionTreeNode<T> {
 
     public void addDissectionNode(T node) {
         dissectionNodes.add(node);
+        eliminationOrder = null;
+        isHashComputed = false;
         numDirtyNodes++;
     }
 
     public void addDissectionEdge(Edge<T> edge) {
         dissectionEdges.add(edge);
+        eliminationOrder = null;
+    }
+
+    // The order in which the nodes of a leaf are eliminated. Leaves are small graphs, trees or cliques, and their
+    // nodes are ordered by approximate minimum degree, which is recomputed after the leaf has been updated.
+    public List<T> getEliminationOrder() {
+        if (!children.isEmpty()) {
+            throw new IllegalStateException("Only the nodes of leaves are ordered");
+        }
+        if (eliminationOrder == null) {
+            eliminationOrder = new MinimumDegreeOrdering<>(new StandardGraph<>(dissectionNodes, dissectionEdges))
+                    .getOrder();
+        }
+        return eliminationOrder;
     }
 
     public Set<Edge<T>> getDissectionEdges() {
@@ -133,6 +154,14 @@ public class NestedDissectionTreeNode<T> {
                DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE;
     }
 
+    public int getLeftTreeSize() {
+        return leftTreeSize;
+    }
+
+    public int getRightTreeSize() {
+        return rightTreeSize;
+    }
+
     public void removeChild(NestedDissectionTreeNode<T> child) {
         children.remove(child);
     }
@@ -162,11 +191,15 @@ public class NestedDissectionTreeNode<T> {
             return false;
         }
         NestedDissectionTreeNode<?> that = (NestedDissectionTreeNode<?>) o;
-        return dissectionNodes.equals(that.dissectionNodes);
+        return hashCode() == that.hashCode() && dissectionNodes.equals(that.dissectionNodes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(dissectionNodes);
+        if (!isHashComputed) {
+            hash = Objects.hash(dissectionNodes);
+            isHashComputed = true;
+        }
+        return hash;
     }
 }
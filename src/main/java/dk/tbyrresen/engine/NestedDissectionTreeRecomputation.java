@@ -4,10 +4,12 @@ package dk.tbyrresen.engine;
 public class NestedDissectionTreeRecomputation {
     private final int depth;
     private final long recomputationTimeMs;
+    private final RecomputationTrigger trigger;
 
-    public NestedDissectionTreeRecomputation(int depth, long recomputationTimeMs) {
+    public NestedDissectionTreeRecomputation(int depth, long recomputationTimeMs, RecomputationTrigger trigger) {
         this.depth = depth;
         this.recomputationTimeMs = recomputationTimeMs;
+        this.trigger = trigger;
     }
 
     public int getDepth() {
@@ -17,4 +19,8 @@ public class NestedDissectionTreeRecomputation {
     public long getRecomputationTimeMs() {
         return recomputationTimeMs;
     }
+
+    public RecomputationTrigger getTrigger() {
+        return trigger;
+    }
 }
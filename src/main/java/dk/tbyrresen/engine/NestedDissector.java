@@ -15,6 +15,13 @@ public class NestedDissector {
     }
 
     public static<T> List<Set<T>> dissect(Graph<T> graph, double epsilon, int numFlowCutterRuns) {
+        return dissect(graph, epsilon, numFlowCutterRuns, new FlowCutterSeparatorStrategy<>());
+    }
+
+    public static<T> List<Set<T>> dissect(Graph<T> graph,
+                                          double epsilon,
+                                          int numFlowCutterRuns,
+                                          SeparatorStrategy<T> separatorStrategy) {
         Deque<Set<T>> dissections = new ArrayDeque<>();
         Queue<Graph<T>> queue = new LinkedList<>(Collections.singletonList(graph));
         while (!queue.isEmpty()) {
@@ -22,10 +29,9 @@ public class NestedDissector {
             if (GraphUtils.isClique(currentGraph) || GraphUtils.isTree(currentGraph)) {
                 dissections.addFirst(currentGraph.getNodes());
             } else {
-                var graphSeparator = new GraphSeparator<>(currentGraph, epsilon, numFlowCutterRuns);
-                var separator = graphSeparator.getSeparator();
+                var separator = separatorStrategy.findSeparator(currentGraph, epsilon, numFlowCutterRuns, 0);
                 dissections.addFirst(separator.getSeparatorNodes());
-                var subgraphs = graphSeparator.separate();
+                var subgraphs = GraphUtils.separate(currentGraph, separator);
                 queue.addAll(subgraphs.left);
                 queue.addAll(subgraphs.right);
             }
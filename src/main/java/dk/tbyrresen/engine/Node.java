@@ -1,7 +1,5 @@
 package dk.tbyrresen.engine;
 
-import java.util.Objects;
-
 public class Node {
     private final long id;   // Used for testing
 
@@ -27,7 +25,7 @@ public class Node {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Long.hashCode(id);
     }
 
     @Override
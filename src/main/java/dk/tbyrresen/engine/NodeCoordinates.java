@@ -0,0 +1,9 @@
+package dk.tbyrresen.engine;
+
+// Planar positions of the nodes of a graph, e.g. projected longitudes and latitudes of OSM nodes. Only used as
+// a hint to spread the FlowCutter sources and targets over the extent of the graph.
+public interface NodeCoordinates<T> {
+    boolean hasCoordinates(T node);
+    double getX(T node);
+    double getY(T node);
+}
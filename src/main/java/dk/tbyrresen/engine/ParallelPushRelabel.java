@@ -0,0 +1,346 @@
+package dk.tbyrresen.engine;
+
+import dk.tbyrresen.engine.metrics.DissectionCounter;
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+// Lock free parallel push-relabel (Hong's algorithm) for the maximum flow of VertexFlowCutter on large graphs,
+// where augmenting one shortest path at a time is inherently sequential. It works on the same expansion with states
+// 2v = v_in and 2v + 1 = v_out, but gives the edge arcs capacity one as well. That allows the same flows, since at
+// most one unit enters a non terminal node, so the network has unit capacities and the flow of every arc is 0 or 1.
+//
+// The active states are discharged in rounds by all threads. A state pushes a unit to its lowest residual neighbor
+// if that one is lower than itself and is relabelled otherwise. Only the thread discharging a state changes its
+// label and takes from its excess, while the flows and excesses are changed by CAS and atomic adds, so no locks
+// are needed. A global relabel sets the labels to the exact residual distances to the targets at the start and
+// whenever enough work has been done, and drops the states that can't reach a target. Once no state is active the
+// flow into the targets is maximum, the excess left at dropped states is discarded, and the flow is decomposed back
+// into the flow predecessors of VertexFlowCutter by tracing it back from the targets to the sources.
+public class ParallelPushRelabel {
+    private static final int NO_NODE = -1;
+    // A global relabel is done whenever the pushes and relabels since the last one exceed this times the states
+    private static final double GLOBAL_RELABEL_FREQUENCY = 1.0;
+    // Rounds with fewer active states than this are discharged by the calling thread alone
+    private static final int MIN_PARALLEL_ROUND_SIZE = 256;
+
+    private final IndexedGraph<?> indexedGraph;
+    private final int numNodes;
+    private final int numStates;
+    private final boolean[] isSource;
+    private final boolean[] isTarget;
+    private final int[] arcOffsets; // of the adjacency of every node, the edge arcs u_out -> v_in are numbered alike
+    private final int[] reverseArcs; // position of the arc v -> u in the adjacency of u for the arc u -> v
+    private final AtomicIntegerArray nodeFlows; // flow of the arc v_in -> v_out
+    private final AtomicIntegerArray edgeFlows; // flow of the arc u_out -> v_in, by the position of v next to u
+    private final AtomicIntegerArray excesses;
+    private final AtomicIntegerArray labels;
+    private final AtomicIntegerArray queuedRounds; // last round each state was queued for
+    private final AtomicLong work = new AtomicLong();
+    private final int[] flowPredecessors; // the maximum flow as VertexFlowCutter stores it
+    private int[] activeStates;
+    private int[] nextActiveStates; // swapped with the active states after every round
+    private int numActiveStates = 0;
+    private int flow = 0;
+
+    // Computes a maximum flow from the sources to the targets, starting from the empty flow
+    public ParallelPushRelabel(IndexedGraph<?> indexedGraph, boolean[] isSource, boolean[] isTarget) {
+        this.indexedGraph = indexedGraph;
+        this.isSource = isSource;
+        this.isTarget = isTarget;
+        numNodes = indexedGraph.getNumNodes();
+        numStates = 2 * numNodes;
+        arcOffsets = new int[numNodes + 1];
+        for (int node = 0; node < numNodes; node++) {
+            arcOffsets[node + 1] = arcOffsets[node] + indexedGraph.getDegree(node);
+        }
+        reverseArcs = computeReverseArcs();
+        nodeFlows = new AtomicIntegerArray(numNodes);
+        edgeFlows = new AtomicIntegerArray(reverseArcs.length);
+        excesses = new AtomicIntegerArray(numStates);
+        labels = new AtomicIntegerArray(numStates);
+        queuedRounds = new AtomicIntegerArray(numStates);
+        activeStates = new int[numStates];
+        nextActiveStates = new int[numStates];
+        flowPredecessors = new int[numNodes];
+        saturateSourceArcs();
+        computeMaxPreflow();
+        decomposeFlow();
+    }
+
+    // The adjacency of every node is sorted by neighbor, and since the tails are visited in increasing order every
+    // node sees the arcs into it in the same order as its own arcs
+    private int[] computeReverseArcs() {
+        var sortedArcs = new int[arcOffsets[numNodes]];
+        for (int node = 0; node < numNodes; node++) {
+            var degree = indexedGraph.getDegree(node);
+            var keys = new long[degree];
+            for (int i = 0; i < degree; i++) {
+                keys[i] = ((long) indexedGraph.getNeighbor(node, i) << 32) | i;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < degree; i++) {
+                sortedArcs[arcOffsets[node] + i] = arcOffsets[node] + (int) keys[i];
+            }
+        }
+        var cursors = Arrays.copyOf(arcOffsets, numNodes);
+        var reverse = new int[arcOffsets[numNodes]];
+        for (int node = 0; node < numNodes; node++) {
+            for (int arc = arcOffsets[node]; arc < arcOffsets[node + 1]; arc++) {
+                var neighbor = indexedGraph.getNeighbor(node, arc - arcOffsets[node]);
+                reverse[arc] = sortedArcs[cursors[neighbor]++];
+            }
+        }
+        return reverse;
+    }
+
+    // Every arc from a source to a non source node carries a unit, which becomes excess of its head
+    private void saturateSourceArcs() {
+        for (int node = 0; node < numNodes; node++) {
+            if (!isSource[node]) {
+                continue;
+            }
+            labels.set(inState(node), numStates);
+            labels.set(outState(node), numStates);
+            for (int arc = arcOffsets[node]; arc < arcOffsets[node + 1]; arc++) {
+                var neighbor = indexedGraph.getNeighbor(node, arc - arcOffsets[node]);
+                if (!isSource[neighbor]) {
+                    edgeFlows.set(arc, 1);
+                    excesses.incrementAndGet(inState(neighbor));
+                }
+            }
+        }
+    }
+
+    private void computeMaxPreflow() {
+        var round = 0;
+        globalRelabel(round);
+        while (numActiveStates > 0) {
+            round++;
+            var numNextActiveStates = new AtomicInteger();
+            var nextRound = round;
+            var states = IntStream.range(0, numActiveStates);
+            if (numActiveStates >= MIN_PARALLEL_ROUND_SIZE) {
+                states = states.parallel();
+            }
+            var currentActiveStates = activeStates;
+            var currentNextActiveStates = nextActiveStates;
+            states.forEach(i -> discharge(
+                    currentActiveStates[i], currentNextActiveStates, numNextActiveStates, nextRound));
+            nextActiveStates = activeStates;
+            activeStates = currentNextActiveStates;
+            numActiveStates = numNextActiveStates.get();
+            if (work.get() > GLOBAL_RELABEL_FREQUENCY * numStates) {
+                globalRelabel(round);
+            }
+        }
+    }
+
+    // Pushes the excess of the state until it is gone or the state is relabelled, and queues the states that got
+    // excess for the next round, including the state itself if excess is left
+    private void discharge(int state, int[] nextActiveStates, AtomicInteger numNextActiveStates, int nextRound) {
+        var numOperations = 0;
+        while (excesses.get(state) > 0 && labels.get(state) < numStates) {
+            numOperations++;
+            var label = labels.get(state);
+            var lowestNeighbor = NO_NODE;
+            var lowestArc = NO_NODE;
+            var lowestLabel = Integer.MAX_VALUE;
+            // residual arcs are given by their head and the arc whose flow changes, negative if it decreases
+            var node = state >> 1;
+            if (isInState(state)) {
+                if (nodeFlows.get(node) == 0) {
+                    lowestNeighbor = outState(node);
+                    lowestArc = nodeArc(node);
+                    lowestLabel = labels.get(lowestNeighbor);
+                }
+                for (int arc = arcOffsets[node]; arc < arcOffsets[node + 1]; arc++) {
+                    var neighbor = indexedGraph.getNeighbor(node, arc - arcOffsets[node]);
+                    var neighborLabel = labels.get(outState(neighbor));
+                    if (neighborLabel < lowestLabel && edgeFlows.get(reverseArcs[arc]) == 1) {
+                        lowestNeighbor = outState(neighbor);
+                        lowestArc = -edgeArc(reverseArcs[arc]) - 1;
+                        lowestLabel = neighborLabel;
+                    }
+                }
+            } else {
+                for (int arc = arcOffsets[node]; arc < arcOffsets[node + 1]; arc++) {
+                    var neighbor = indexedGraph.getNeighbor(node, arc - arcOffsets[node]);
+                    var neighborLabel = labels.get(inState(neighbor));
+                    if (neighborLabel < lowestLabel && edgeFlows.get(arc) == 0) {
+                        lowestNeighbor = inState(neighbor);
+                        lowestArc = edgeArc(arc);
+                        lowestLabel = neighborLabel;
+                    }
+                }
+                if (nodeFlows.get(node) == 1 && labels.get(inState(node)) < lowestLabel) {
+                    lowestNeighbor = inState(node);
+                    lowestArc = -nodeArc(node) - 1;
+                    lowestLabel = labels.get(lowestNeighbor);
+                }
+            }
+            if (lowestNeighbor == NO_NODE || lowestLabel >= label) {
+                labels.set(state, lowestNeighbor == NO_NODE ? numStates : Math.min(numStates, lowestLabel + 1));
+                break;
+            }
+            if (!push(lowestArc)) {
+                continue; // the residual arc was used by the other end meanwhile
+            }
+            excesses.decrementAndGet(state);
+            if (excesses.getAndIncrement(lowestNeighbor) == 0 && !isTerminal(lowestNeighbor >> 1)) {
+                enqueue(lowestNeighbor, nextActiveStates, numNextActiveStates, nextRound);
+            }
+        }
+        work.addAndGet(numOperations);
+        if (excesses.get(state) > 0 && labels.get(state) < numStates) {
+            enqueue(state, nextActiveStates, numNextActiveStates, nextRound);
+        }
+    }
+
+    private void enqueue(int state, int[] nextActiveStates, AtomicInteger numNextActiveStates, int nextRound) {
+        var queuedRound = queuedRounds.get(state);
+        if (queuedRound != nextRound && queuedRounds.compareAndSet(state, queuedRound, nextRound)) {
+            nextActiveStates[numNextActiveStates.getAndIncrement()] = state;
+        }
+    }
+
+    // Arcs are numbered with the node arcs after the edge arcs. Non negative arcs gain a unit of flow and the
+    // others, encoded as -arc - 1, lose one.
+    private boolean push(int encodedArc) {
+        var isIncrease = encodedArc >= 0;
+        var arc = isIncrease ? encodedArc : -encodedArc - 1;
+        var flows = arc < edgeFlows.length() ? edgeFlows : nodeFlows;
+        var index = arc < edgeFlows.length() ? arc : arc - edgeFlows.length();
+        return isIncrease ? flows.compareAndSet(index, 0, 1) : flows.compareAndSet(index, 1, 0);
+    }
+
+    private static int edgeArc(int arc) {
+        return arc;
+    }
+
+    private int nodeArc(int node) {
+        return edgeFlows.length() + node;
+    }
+
+    // Sets the labels to the residual distances to the targets by a breadth first search backwards from them, done
+    // by the calling thread while no state is discharged. States that can't reach a target get the label numStates
+    // and are never active again. Also collects the active states.
+    private void globalRelabel(int round) {
+        DissectionMetrics.increment(DissectionCounter.GLOBAL_RELABELS);
+        work.set(0);
+        try (var queue = IntQueue.acquire()) {
+            for (int state = 0; state < numStates; state++) {
+                if (isTarget[state >> 1]) {
+                    labels.set(state, 0);
+                    queue.add(state);
+                } else {
+                    labels.set(state, numStates);
+                }
+            }
+            while (!queue.isEmpty()) {
+                var state = queue.remove();
+                var node = state >> 1;
+                var nextLabel = labels.get(state) + 1;
+                // the states with a residual arc into the state
+                if (isInState(state)) {
+                    if (nodeFlows.get(node) == 1) {
+                        discoverBackward(outState(node), nextLabel, queue);
+                    }
+                    for (int arc = arcOffsets[node]; arc < arcOffsets[node + 1]; arc++) {
+                        if (edgeFlows.get(reverseArcs[arc]) == 0) {
+                            var neighbor = indexedGraph.getNeighbor(node, arc - arcOffsets[node]);
+                            discoverBackward(outState(neighbor), nextLabel, queue);
+                        }
+                    }
+                } else {
+                    if (nodeFlows.get(node) == 0) {
+                        discoverBackward(inState(node), nextLabel, queue);
+                    }
+                    for (int arc = arcOffsets[node]; arc < arcOffsets[node + 1]; arc++) {
+                        if (edgeFlows.get(arc) == 1) {
+                            var neighbor = indexedGraph.getNeighbor(node, arc - arcOffsets[node]);
+                            discoverBackward(inState(neighbor), nextLabel, queue);
+                        }
+                    }
+                }
+            }
+        }
+        numActiveStates = 0;
+        for (int state = 0; state < numStates; state++) {
+            if (excesses.get(state) > 0 && labels.get(state) < numStates && !isTerminal(state >> 1)) {
+                activeStates[numActiveStates++] = state;
+                queuedRounds.set(state, round);
+            }
+        }
+    }
+
+    private void discoverBackward(int state, int label, IntQueue queue) {
+        if (labels.get(state) == numStates && !isTerminal(state >> 1)) {
+            labels.set(state, label);
+            queue.add(state);
+        }
+    }
+
+    // Every out state sends at most one unit and no state sends more than it receives, so tracing back a unit
+    // entering a target ends at a source and never meets another traced unit
+    private void decomposeFlow() {
+        Arrays.fill(flowPredecessors, NO_NODE);
+        flow = 0;
+        for (int target = 0; target < numNodes; target++) {
+            if (!isTarget[target]) {
+                continue;
+            }
+            for (int arc = arcOffsets[target]; arc < arcOffsets[target + 1]; arc++) {
+                var node = indexedGraph.getNeighbor(target, arc - arcOffsets[target]);
+                if (isTarget[node] || edgeFlows.get(reverseArcs[arc]) == 0) {
+                    continue;
+                }
+                flow++;
+                while (!isSource[node]) {
+                    var predecessor = findFlowPredecessor(node);
+                    flowPredecessors[node] = predecessor;
+                    node = predecessor;
+                }
+            }
+        }
+    }
+
+    private int findFlowPredecessor(int node) {
+        for (int arc = arcOffsets[node]; arc < arcOffsets[node + 1]; arc++) {
+            if (edgeFlows.get(reverseArcs[arc]) == 1) {
+                return indexedGraph.getNeighbor(node, arc - arcOffsets[node]);
+            }
+        }
+        throw new IllegalStateException(String.format("No flow enters node %d", node));
+    }
+
+    private boolean isTerminal(int node) {
+        return isSource[node] || isTarget[node];
+    }
+
+    // The value of the maximum flow
+    public int getFlow() {
+        return flow;
+    }
+
+    // The node the unit of flow through each node comes from, or -1 if no flow passes the node
+    public int[] getFlowPredecessors() {
+        return flowPredecessors;
+    }
+
+    private static int inState(int node) {
+        return 2 * node;
+    }
+
+    private static int outState(int node) {
+        return 2 * node + 1;
+    }
+
+    private static boolean isInState(int state) {
+        return (state & 1) == 0;
+    }
+}
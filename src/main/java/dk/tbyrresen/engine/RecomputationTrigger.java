@@ -0,0 +1,8 @@
+package dk.tbyrresen.engine;
+
+// The reason a subtree of an ND-tree had to be recomputed after an insertion
+public enum RecomputationTrigger {
+    IMBALANCE,         // an ancestor of the updated node is no longer balanced
+    LEAF_VIOLATION,    // a leaf is no longer a tree or a clique
+    SEPARATOR_CROSSING // the new edge connects two sides of a separator
+}
@@ -1,35 +1,75 @@
 package dk.tbyrresen.engine;
 
+import dk.tbyrresen.engine.generator.GeneratedGraphs;
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+import dk.tbyrresen.engine.metrics.PrintingMetricsExporter;
+import dk.tbyrresen.engine.osm.NodeCoordinateStore;
 import dk.tbyrresen.engine.osm.OSMGraph;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionGroup;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.springframework.lang.Nullable;
 
-import java.util.Comparator;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 public class Runner {
+    // Identifies the preprocessing done by buildPreProcessedGraph in graph snapshot cache keys. Must be changed
+    // whenever that preprocessing changes so stale snapshots are not reused.
+    private static final String PREPROCESSING_OPTIONS = "lcc;degree-two-contraction";
+    private static final long DEFAULT_SEED = 42;
+
     public static void main(String[] args) {
         Options options = new Options();
         Option roadNetwork = new Option("r", "roadnetwork", true, "name of road network to use");
-        roadNetwork.setRequired(true);
+        Option generatedGraph = new Option("g", "generate", true, "generated graph to use instead of a road network, e.g. 'roadlike:100000[:seed]'");
+        var graphSource = new OptionGroup();
+        graphSource.addOption(roadNetwork);
+        graphSource.addOption(generatedGraph);
+        graphSource.setRequired(true);
         Option flowCutter = new Option("f", "flowcutter", true, "number of flowcutter runs (integer)");
         flowCutter.setRequired(true);
-        Option nodesOrEdges = new Option("i", "inserttype", true, "test insertion using 'node' or 'edge'");
+        Option nodesOrEdges = new Option("i", "inserttype", true, "test insertion using 'node', 'edge' or 'mixed'");
         nodesOrEdges.setRequired(true);
         Option numberOfInsertions = new Option("n", "numinsertions", true, "number of insertions to use during testing (integer)");
         numberOfInsertions.setRequired(true);
-        Option maxHopDistance = new Option("m", "maxhopdistance", true, "max hop distance if using edge insertion (integer)");
+        Option maxHopDistance = new Option("m", "maxhopdistance", true, "max hop distance if using edge or mixed insertion (integer)");
         maxHopDistance.setRequired(false);
-        options.addOption(roadNetwork);
+        Option cacheDirectory = new Option("c", "cachedir", true, "directory for caching preprocessed graphs");
+        cacheDirectory.setRequired(false);
+        Option seed = new Option("s", "seed", true, "seed of the random insertions (integer, default " + DEFAULT_SEED + ")");
+        seed.setRequired(false);
+        Option numberOfWarmupInsertions = new Option("w", "warmup", true, "number of warmup insertions not included in the results (integer)");
+        numberOfWarmupInsertions.setRequired(false);
+        Option output = new Option("o", "output", true, "write results to <output>.json and per insertion latencies to <output>.csv");
+        output.setRequired(false);
+        Option budget = new Option("b", "budget", true, "time budget in seconds for building the ND tree, which then starts with few flowcutter runs and improves the separators while time is left (integer)");
+        budget.setRequired(false);
+        Option engine = new Option("e", "engine", true, "separator engine: 'flowcutter' (default), 'bfs' for BFS level bisection, 'inertial' for inertial flow (needs coordinates) or 'hybrid' for flowcutter on large and a cheap engine on small subgraphs");
+        engine.setRequired(false);
+        Option coordinates = new Option("x", "coordinates", false, "read the node coordinates of the road network, used to choose flowcutter sources and targets and by inertial flow");
+        coordinates.setRequired(false);
+        Option leafSize = new Option("l", "leafsize", true, "subgraphs of at most this many nodes become ND tree leaves ordered by minimum degree instead of being separated (integer, default " + DissectionConstants.ORDERED_LEAF_MAX_NODES + ")");
+        leafSize.setRequired(false);
+        options.addOptionGroup(graphSource);
         options.addOption(flowCutter);
         options.addOption(nodesOrEdges);
         options.addOption(numberOfInsertions);
         options.addOption(maxHopDistance);
+        options.addOption(cacheDirectory);
+        options.addOption(seed);
+        options.addOption(numberOfWarmupInsertions);
+        options.addOption(output);
+        options.addOption(budget);
+        options.addOption(engine);
+        options.addOption(coordinates);
+        options.addOption(leafSize);
 
         CommandLineParser parser = new DefaultParser();
         HelpFormatter formatter = new HelpFormatter();
@@ -42,36 +82,79 @@ public class Runner {
             String insertTypeInput = cmd.getOptionValue("inserttype");
             int numInsertionsInput = Integer.parseInt(cmd.getOptionValue("numinsertions"));
             int maxHopDistanceInput = 2;
-            if (!insertTypeInput.equals("node") && !insertTypeInput.equals("edge")) {
-                System.out.print("Insertion type must be either 'node' or 'edge'");
+            long seedInput = Long.parseLong(cmd.getOptionValue("seed", String.valueOf(DEFAULT_SEED)));
+            int numWarmupInsertionsInput = Integer.parseInt(cmd.getOptionValue("warmup", "0"));
+            int leafSizeInput = Integer.parseInt(cmd.getOptionValue(
+                    "leafsize", String.valueOf(DissectionConstants.ORDERED_LEAF_MAX_NODES)));
+            if (!insertTypeInput.equals("node") && !insertTypeInput.equals("edge") && !insertTypeInput.equals("mixed")) {
+                System.out.print("Insertion type must be either 'node', 'edge' or 'mixed'");
+                System.exit(1);
+            }
+            var engineInput = cmd.getOptionValue("engine", "flowcutter");
+            if (!engineInput.equals("flowcutter") && !engineInput.equals("bfs") && !engineInput.equals("inertial")
+                    && !engineInput.equals("hybrid")) {
+                System.out.print("Separator engine must be either 'flowcutter', 'bfs', 'inertial' or 'hybrid'");
+                System.exit(1);
+            }
+            if (cmd.hasOption("coordinates") && roadNetworkInput == null) {
+                System.out.print("Coordinates can only be read for road networks");
+                System.exit(1);
+            }
+            if (engineInput.equals("inertial") && !cmd.hasOption("coordinates")) {
+                System.out.print("The inertial engine needs the coordinates of the road network");
                 System.exit(1);
             }
-            if (insertTypeInput.equals("edge")) {
+            var workload = InsertionWorkload.fromName(insertTypeInput);
+            if (workload != InsertionWorkload.NODE) {
                 maxHopDistanceInput = Integer.parseInt(cmd.getOptionValue("maxhopdistance"));
             }
 
-            var osmGraph = new OSMGraph(roadNetworkInput);
-            var roadNetworkGraph = new StandardGraph<>(osmGraph);
-            var cc = GraphUtils.findConnectedComponents(roadNetworkGraph);
-            var largestCC = cc.stream().max(Comparator.comparingInt(c -> c.getNodes().size()));
-            System.out.println("LCC nodes: " + largestCC.get().getNodes().size());
-            System.out.println("LCC edges: " + largestCC.get().getEdges().size());
-            var preProcessedGraph = GraphPreprocessor.getPreProcessedGraph(largestCC.get());
+            if (DissectionMetrics.ENABLED) {
+                DissectionMetrics.registerMBean();
+                DissectionMetrics.addExporter(new PrintingMetricsExporter());
+            }
+            Graph<Node> preProcessedGraph;
+            if (cmd.hasOption("generate")) {
+                var generator = GeneratedGraphs.fromSpecification(cmd.getOptionValue("generate"));
+                preProcessedGraph = buildPreProcessedGraph(GeneratedGraphs.toGraph(generator));
+            } else if (cmd.hasOption("cachedir")) {
+                var cache = new GraphSnapshotCache(Path.of(cmd.getOptionValue("cachedir")));
+                preProcessedGraph = cache.getOrCompute(Path.of(roadNetworkInput), PREPROCESSING_OPTIONS,
+                                                       () -> buildPreProcessedGraph(roadNetworkInput));
+            } else {
+                preProcessedGraph = buildPreProcessedGraph(roadNetworkInput);
+            }
             System.out.println("Preprocessed nodes: " + preProcessedGraph.getNodes().size());
             System.out.println("Preprocessed edges: " + preProcessedGraph.getEdges().size());
+            NodeCoordinateStore nodeCoordinates = null;
+            if (cmd.hasOption("coordinates")) {
+                // only the nodes left after preprocessing are kept, which also works for cached graphs
+                nodeCoordinates = NodeCoordinateStore.read(roadNetworkInput, preProcessedGraph.getNodes());
+            }
+            var separatorStrategy = buildSeparatorStrategy(engineInput, nodeCoordinates);
             var startTime = System.currentTimeMillis();
-            NestedDissectionTree<Node> ndTree = new NestedDissectionTree<>(preProcessedGraph, 0.6, flowCutterInput);
+            NestedDissectionTree<Node> ndTree;
+            if (cmd.hasOption("budget")) {
+                var budgetInput = Duration.ofSeconds(Long.parseLong(cmd.getOptionValue("budget")));
+                ndTree = new NestedDissectionTree<>(preProcessedGraph, 0.6, flowCutterInput, budgetInput, () -> false, separatorStrategy, leafSizeInput);
+            } else {
+                ndTree = new NestedDissectionTree<>(preProcessedGraph, 0.6, flowCutterInput, separatorStrategy, leafSizeInput);
+            }
             var endTime = System.currentTimeMillis();
             System.out.println("Root computation time (seconds): " + TimeUnit.MILLISECONDS.toSeconds(endTime - startTime));
             System.out.println("Num ND tree nodes: " + ndTree.getNumNestedDissectionNodes());
             System.out.println("ND tree height: " + ndTree.getHeight());
-            var tester = new NestedDissectionTreeTester(preProcessedGraph, ndTree);
-            if (insertTypeInput.equals("node")) {
-                tester.insertNewNodesAndPrintStatistics(numInsertionsInput);
-            } else {
-                tester.insertNewEdgesAndPrintStatistics(numInsertionsInput, maxHopDistanceInput);
-
+            DissectionMetrics.export();
+            DissectionMetrics.reset(); // so the metrics printed after testing only cover the insertions
+            var benchmark = new InsertionBenchmark(preProcessedGraph, ndTree, seedInput);
+            var result = benchmark.run(workload, numWarmupInsertionsInput, numInsertionsInput, maxHopDistanceInput);
+            result.print();
+            if (cmd.hasOption("output")) {
+                var outputInput = cmd.getOptionValue("output");
+                result.writeJson(Path.of(outputInput + ".json"));
+                result.writeCsv(Path.of(outputInput + ".csv"));
             }
+            DissectionMetrics.export();
         } catch (ParseException e) {
             formatter.printHelp("args for running ND-tree testing", options);
         } catch (NumberFormatException e) {
@@ -80,4 +163,36 @@ public class Runner {
             System.out.println("error thrown: " + e.getMessage());
         }
     }
+
+    // Without coordinates the hybrid engine uses BFS level bisection on the small subgraphs instead of inertial flow
+    private static SeparatorStrategy<Node> buildSeparatorStrategy(String engineInput,
+                                                                  @Nullable NodeCoordinateStore nodeCoordinates) {
+        if (engineInput.equals("bfs")) {
+            return new BfsLevelSeparatorStrategy<>();
+        } else if (engineInput.equals("inertial") && nodeCoordinates != null) {
+            return new InertialFlowSeparatorStrategy<>(nodeCoordinates);
+        } else if (engineInput.equals("hybrid")) {
+            return new HybridSeparatorStrategy<>(
+                    new FlowCutterSeparatorStrategy<>(nodeCoordinates),
+                    nodeCoordinates != null
+                            ? new InertialFlowSeparatorStrategy<>(nodeCoordinates)
+                            : new BfsLevelSeparatorStrategy<>());
+        }
+        return new FlowCutterSeparatorStrategy<>(nodeCoordinates);
+    }
+
+    // The OSM graph tracks its components while it is parsed, so its LCC is extracted without labelling it again
+    private static Graph<Node> buildPreProcessedGraph(String roadNetworkInput) {
+        return preProcessLargestConnectedComponent(new OSMGraph(roadNetworkInput).getLargestConnectedComponent());
+    }
+
+    private static Graph<Node> buildPreProcessedGraph(Graph<Node> graph) {
+        return preProcessLargestConnectedComponent(GraphUtils.findLargestConnectedComponent(graph));
+    }
+
+    private static Graph<Node> preProcessLargestConnectedComponent(Graph<Node> largestCC) {
+        System.out.println("LCC nodes: " + largestCC.getNodes().size());
+        System.out.println("LCC edges: " + largestCC.getEdges().size());
+        return GraphPreprocessor.getPreProcessedGraph(largestCC);
+    }
 }
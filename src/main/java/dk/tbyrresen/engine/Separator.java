@@ -48,4 +48,10 @@ public class Separator<T> {
     public double getImbalance() {
         return imbalance;
     }
+
+    // Number of separator nodes per node on the smaller side, lower is better
+    public double getExpansion() {
+        var smallestSide = Math.min(leftSeparatedNodes.size(), rightSeparatedNodes.size());
+        return (double) separatorNodes.size() / Math.max(1, smallestSide);
+    }
 }
@@ -0,0 +1,327 @@
+package dk.tbyrresen.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+// Post processing of node separators. Edge cuts are turned into separators by a minimum vertex cover of the cut
+// edges, and separators are improved by a Fiduccia-Mattheyses style local search that moves separator nodes to
+// one of the sides. Only the separator nodes and their neighbors are ever looked at, so refining is cheap
+// compared to finding the separator in the first place. On coarsened graphs the nodes are weighted by the number of
+// nodes they contain, and the sizes of the separator and the sides are then the sums of their weights.
+public class SeparatorRefiner<T> {
+    // A pass ends after this many moves without finding a smaller separator
+    private static final int MAX_NON_IMPROVING_MOVES = 64;
+    private static final int MAX_PASSES = 8;
+
+    private enum Side {
+        LEFT,
+        RIGHT
+    }
+
+    private final Graph<T> graph;
+    private final double maxImbalance;
+    private final ToIntFunction<T> nodeWeights;
+    private final boolean hasUnitWeights;
+    // weights of the sets, computed once per refinement and then updated by every move and undo
+    private int separatorWeight;
+    private int leftWeight;
+    private int rightWeight;
+
+    public SeparatorRefiner(Graph<T> graph, double maxImbalance) {
+        this(graph, maxImbalance, node -> 1, true);
+    }
+
+    public SeparatorRefiner(Graph<T> graph, double maxImbalance, ToIntFunction<T> nodeWeights) {
+        this(graph, maxImbalance, nodeWeights, false);
+    }
+
+    private SeparatorRefiner(Graph<T> graph,
+                             double maxImbalance,
+                             ToIntFunction<T> nodeWeights,
+                             boolean hasUnitWeights) {
+        this.graph = graph;
+        this.maxImbalance = maxImbalance;
+        this.nodeWeights = nodeWeights;
+        this.hasUnitWeights = hasUnitWeights;
+    }
+
+    // The cut edges form a bipartite graph between the nodes in the cut and the nodes outside it. By Koenig's
+    // theorem a minimum vertex cover of it is as large as a maximum matching, and the cover is found from the
+    // matching: the unmatched nodes in the cut and everything reachable from them along alternating paths are
+    // left out on the cut side, while the reachable nodes outside the cut are taken.
+    public static <T> Set<T> findMinimumCutCover(EdgeCut<T> edgeCut) {
+        var nodesInCut = edgeCut.getNodesInCut();
+        Map<T, Integer> leftIndices = new HashMap<>();
+        Map<T, Integer> rightIndices = new HashMap<>();
+        List<T> leftNodes = new ArrayList<>();
+        List<T> rightNodes = new ArrayList<>();
+        List<List<Integer>> adjacency = new ArrayList<>();
+        for (var edge : edgeCut.getCutEdges()) {
+            var isSourceInCut = nodesInCut.contains(edge.getSource());
+            var leftNode = isSourceInCut ? edge.getSource() : edge.getTarget();
+            var rightNode = isSourceInCut ? edge.getTarget() : edge.getSource();
+            var left = leftIndices.computeIfAbsent(leftNode, n -> {
+                leftNodes.add(n);
+                adjacency.add(new ArrayList<>());
+                return leftNodes.size() - 1;
+            });
+            var right = rightIndices.computeIfAbsent(rightNode, n -> {
+                rightNodes.add(n);
+                return rightNodes.size() - 1;
+            });
+            adjacency.get(left).add(right);
+        }
+        var matchOfLeft = new int[leftNodes.size()];
+        var matchOfRight = new int[rightNodes.size()];
+        Arrays.fill(matchOfLeft, -1);
+        Arrays.fill(matchOfRight, -1);
+        Set<T> cover = new HashSet<>();
+        try (var queue = IntQueue.acquire();
+             var leftReached = VisitedMarks.acquire(leftNodes.size());
+             var rightReached = VisitedMarks.acquire(rightNodes.size())) {
+            for (int left = 0; left < leftNodes.size(); left++) {
+                rightReached.clear();
+                augmentMatching(left, adjacency, matchOfLeft, matchOfRight, queue, rightReached);
+            }
+            // alternating search from the unmatched left nodes along free edges to the right and matched edges back
+            rightReached.clear();
+            queue.clear();
+            for (int left = 0; left < leftNodes.size(); left++) {
+                if (matchOfLeft[left] == -1) {
+                    leftReached.mark(left);
+                    queue.add(left);
+                }
+            }
+            while (!queue.isEmpty()) {
+                var left = queue.remove();
+                for (var right : adjacency.get(left)) {
+                    if (matchOfLeft[left] != right && rightReached.mark(right)) {
+                        var matchedLeft = matchOfRight[right];
+                        if (matchedLeft != -1 && leftReached.mark(matchedLeft)) {
+                            queue.add(matchedLeft);
+                        }
+                    }
+                }
+            }
+            for (int left = 0; left < leftNodes.size(); left++) {
+                if (!leftReached.isMarked(left)) {
+                    cover.add(leftNodes.get(left));
+                }
+            }
+            for (int right = 0; right < rightNodes.size(); right++) {
+                if (rightReached.isMarked(right)) {
+                    cover.add(rightNodes.get(right));
+                }
+            }
+        }
+        return cover;
+    }
+
+    // Breadth first search for an augmenting path from an unmatched left node, flipping it if found. The reached
+    // right nodes are marked with the left node they were reached from.
+    private static void augmentMatching(int start,
+                                        List<List<Integer>> adjacency,
+                                        int[] matchOfLeft,
+                                        int[] matchOfRight,
+                                        IntQueue queue,
+                                        VisitedMarks parentOfRight) {
+        queue.clear();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            var left = queue.remove();
+            for (var right : adjacency.get(left)) {
+                if (!parentOfRight.mark(right, left)) {
+                    continue;
+                }
+                if (matchOfRight[right] == -1) {
+                    var current = right;
+                    while (current != -1) {
+                        var parent = parentOfRight.getValue(current);
+                        var previous = matchOfLeft[parent];
+                        matchOfLeft[parent] = current;
+                        matchOfRight[current] = parent;
+                        current = previous;
+                    }
+                    return;
+                }
+                queue.add(matchOfRight[right]);
+            }
+        }
+    }
+
+    // Moves nodes between the sets of the given separator, which must not be used afterwards. The weights of the
+    // sides are only summed here, once, and only when the nodes are weighted.
+    public Separator<T> refine(Separator<T> separator) {
+        var separatorNodes = separator.getSeparatorNodes();
+        var leftNodes = separator.getLeftSeparatedNodes();
+        var rightNodes = separator.getRightSeparatedNodes();
+        separatorWeight = computeWeight(separatorNodes);
+        leftWeight = computeWeight(leftNodes);
+        rightWeight = computeWeight(rightNodes);
+        for (int pass = 0; pass < MAX_PASSES && !separatorNodes.isEmpty(); pass++) {
+            if (!improve(separatorNodes, leftNodes, rightNodes)) {
+                break;
+            }
+        }
+        return new Separator<>(separatorNodes, leftNodes, rightNodes, findSeparatingEdges(separatorNodes));
+    }
+
+    private static class Move<T> {
+        private final T node;
+        private final Side side;
+        private final int gain;
+        private final List<T> pulledNodes = new ArrayList<>();
+
+        private Move(T node, Side side, int gain) {
+            this.node = node;
+            this.side = side;
+            this.gain = gain;
+        }
+    }
+
+    // One pass of the local search. Moving a separator node to a side pulls its neighbors on the other side into
+    // the separator, so its gain is its weight minus the weight of those neighbors. The best moves are made greedily,
+    // also when they grow the separator, every node moves at most once, and afterwards the moves are undone back
+    // to the smallest separator seen. Returns true if the separator got smaller.
+    private boolean improve(Set<T> separatorNodes, Set<T> leftNodes, Set<T> rightNodes) {
+        var queue = new PriorityQueue<Move<T>>(Comparator.comparingInt((Move<T> m) -> m.gain).reversed());
+        for (var node : separatorNodes) {
+            queue.add(new Move<>(node, Side.LEFT, computeGain(node, rightNodes)));
+            queue.add(new Move<>(node, Side.RIGHT, computeGain(node, leftNodes)));
+        }
+        Set<T> movedNodes = new HashSet<>();
+        List<Move<T>> moves = new ArrayList<>();
+        var initialSize = separatorWeight;
+        var bestSize = initialSize;
+        var bestImbalance = computeImbalance(separatorWeight, leftWeight, rightWeight);
+        var bestNumMoves = 0;
+        var numNonImprovingMoves = 0;
+        while (!queue.isEmpty() && numNonImprovingMoves < MAX_NON_IMPROVING_MOVES) {
+            var candidate = queue.remove();
+            if (movedNodes.contains(candidate.node) || !separatorNodes.contains(candidate.node)) {
+                continue;
+            }
+            var toSide = candidate.side == Side.LEFT ? leftNodes : rightNodes;
+            var fromSide = candidate.side == Side.LEFT ? rightNodes : leftNodes;
+            var gain = computeGain(candidate.node, fromSide);
+            if (gain < candidate.gain) {
+                queue.add(new Move<>(candidate.node, candidate.side, gain)); // stale, retry with the current gain
+                continue;
+            }
+            // a separator that is already too imbalanced may only get more balanced
+            var nodeWeight = nodeWeights.applyAsInt(candidate.node);
+            var pulledWeight = nodeWeight - gain;
+            var toSideWeight = candidate.side == Side.LEFT ? leftWeight : rightWeight;
+            var fromSideWeight = candidate.side == Side.LEFT ? rightWeight : leftWeight;
+            var newImbalance = computeImbalance(
+                    separatorWeight - gain, toSideWeight + nodeWeight, fromSideWeight - pulledWeight);
+            if (newImbalance > Math.max(maxImbalance, computeImbalance(separatorWeight, leftWeight, rightWeight))) {
+                continue;
+            }
+            var move = new Move<>(candidate.node, candidate.side, gain);
+            separatorNodes.remove(candidate.node);
+            toSide.add(candidate.node);
+            movedNodes.add(candidate.node);
+            for (var neighbor : graph.getAdjacentNodes(candidate.node)) {
+                if (fromSide.remove(neighbor)) {
+                    separatorNodes.add(neighbor);
+                    move.pulledNodes.add(neighbor);
+                }
+            }
+            moves.add(move);
+            addSideWeights(candidate.side, nodeWeight, pulledWeight);
+            // the pulled nodes are new candidates, and separator nodes next to them lost a neighbor on their side
+            for (var pulledNode : move.pulledNodes) {
+                queue.add(new Move<>(pulledNode, candidate.side, computeGain(pulledNode, fromSide)));
+                for (var neighbor : graph.getAdjacentNodes(pulledNode)) {
+                    if (separatorNodes.contains(neighbor) && !movedNodes.contains(neighbor)) {
+                        queue.add(new Move<>(neighbor, candidate.side, computeGain(neighbor, fromSide)));
+                    }
+                }
+            }
+            var imbalance = computeImbalance(separatorWeight, leftWeight, rightWeight);
+            if (separatorWeight < bestSize || (separatorWeight == bestSize && imbalance < bestImbalance)) {
+                bestSize = separatorWeight;
+                bestImbalance = imbalance;
+                bestNumMoves = moves.size();
+                numNonImprovingMoves = 0;
+            } else {
+                numNonImprovingMoves++;
+            }
+        }
+        for (int i = moves.size() - 1; i >= bestNumMoves; i--) {
+            var move = moves.get(i);
+            var toSide = move.side == Side.LEFT ? leftNodes : rightNodes;
+            var fromSide = move.side == Side.LEFT ? rightNodes : leftNodes;
+            for (var pulledNode : move.pulledNodes) {
+                separatorNodes.remove(pulledNode);
+                fromSide.add(pulledNode);
+            }
+            toSide.remove(move.node);
+            separatorNodes.add(move.node);
+            var nodeWeight = nodeWeights.applyAsInt(move.node);
+            addSideWeights(move.side, -nodeWeight, -(nodeWeight - move.gain));
+        }
+        return bestSize < initialSize;
+    }
+
+    private int computeGain(T node, Set<T> fromSide) {
+        var pulledWeight = 0;
+        for (var neighbor : graph.getAdjacentNodes(node)) {
+            if (fromSide.contains(neighbor)) {
+                pulledWeight += nodeWeights.applyAsInt(neighbor);
+            }
+        }
+        return nodeWeights.applyAsInt(node) - pulledWeight;
+    }
+
+    // Accounts for moving a node of the given weight to the side and pulling the given weight from the other side
+    private void addSideWeights(Side side, int movedWeight, int pulledWeight) {
+        separatorWeight += pulledWeight - movedWeight;
+        if (side == Side.LEFT) {
+            leftWeight += movedWeight;
+            rightWeight -= pulledWeight;
+        } else {
+            rightWeight += movedWeight;
+            leftWeight -= pulledWeight;
+        }
+    }
+
+    private int computeWeight(Set<T> nodes) {
+        if (hasUnitWeights) {
+            return nodes.size();
+        }
+        var weight = 0;
+        for (var node : nodes) {
+            weight += nodeWeights.applyAsInt(node);
+        }
+        return weight;
+    }
+
+    // Same definition as Separator
+    private static double computeImbalance(int separatorSize, int leftSize, int rightSize) {
+        var totalSize = separatorSize + leftSize + rightSize;
+        return (((double) Math.max(leftSize, rightSize) * 2) / totalSize) - 1;
+    }
+
+    private Set<Edge<T>> findSeparatingEdges(Collection<T> separatorNodes) {
+        Set<Edge<T>> separatingEdges = new HashSet<>();
+        for (var node : separatorNodes) {
+            for (var edge : graph.getAdjacentEdges(node)) {
+                if (!separatorNodes.contains(edge.getOppositeOf(node))) {
+                    separatingEdges.add(edge);
+                }
+            }
+        }
+        return separatingEdges;
+    }
+}
@@ -0,0 +1,21 @@
+package dk.tbyrresen.engine;
+
+import java.util.function.BooleanSupplier;
+
+// Engine computing the separators of the nested dissection. The max number of FlowCutter runs is the effort to
+// spend on a separator, which is lowered while building the initial tree in anytime construction, and engines not
+// based on FlowCutter scale their own effort by it or ignore it. The separators are computed for independent
+// subgraphs in parallel, so implementations must be thread safe.
+public interface SeparatorStrategy<T> {
+    Separator<T> findSeparator(Graph<T> graph, double epsilon, int maxFlowCutterRuns, int depth);
+
+    // Used when the construction of the tree can be aborted. Engines that spend their effort in rounds, like the
+    // FlowCutter waves, start no new round once shouldStop returns true and return the best separator found so far.
+    default Separator<T> findSeparator(Graph<T> graph,
+                                       double epsilon,
+                                       int maxFlowCutterRuns,
+                                       int depth,
+                                       BooleanSupplier shouldStop) {
+        return findSeparator(graph, epsilon, maxFlowCutterRuns, depth);
+    }
+}
@@ -0,0 +1,126 @@
+package dk.tbyrresen.engine;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+// Chooses source and target pairs for the FlowCutter runs on a graph. Uniformly random pairs are often close to
+// each other and give poor cuts, so we rather pick pairs far apart:
+// - With coordinates, the nodes with the smallest and largest projection onto a direction. Every pair uses a new
+//   direction, rotated by the golden angle from the previous one so the directions stay spread out.
+// - Otherwise, a random start node and the node farthest from it found by a BFS sweep. A second sweep from the
+//   far node would give a more peripheral pair, but on road networks the double sweeps from almost all start
+//   nodes end in the same two corners of the graph, and cuts between corners are long diagonals. The sweeps of
+//   all pairs run together as bit-parallel BFS passes.
+// A pair that was already chosen is replaced by a uniformly random pair.
+class SourceTargetSelector<T> {
+    private static final double GOLDEN_ANGLE = Math.PI * (3 - Math.sqrt(5));
+
+    private final IndexedGraph<T> indexedGraph;
+    @Nullable private final NodeCoordinates<T> coordinates;
+    private final SplittableRandom random;
+    private final Set<ImmutablePair<T, T>> selectedPairs = new HashSet<>();
+    private double nextDirection;
+
+    SourceTargetSelector(IndexedGraph<T> indexedGraph, @Nullable NodeCoordinates<T> coordinates, long seed) {
+        if (indexedGraph.getNumNodes() < 2) {
+            throw new IllegalArgumentException("Graph must have at least two nodes to select sources and targets");
+        }
+        this.indexedGraph = indexedGraph;
+        this.coordinates = hasAllCoordinates(indexedGraph, coordinates) ? coordinates : null;
+        random = new SplittableRandom(seed);
+        nextDirection = random.nextDouble(Math.PI);
+    }
+
+    private static <T> boolean hasAllCoordinates(IndexedGraph<T> indexedGraph,
+                                                 @Nullable NodeCoordinates<T> coordinates) {
+        return coordinates != null && indexedGraph.getNodes().stream().allMatch(coordinates::hasCoordinates);
+    }
+
+    List<ImmutablePair<T, T>> selectPairs(int numPairs) {
+        var candidates = coordinates != null ? selectProjectionPairs(coordinates, numPairs) : selectSweepPairs(numPairs);
+        List<ImmutablePair<T, T>> pairs = new ArrayList<>(numPairs);
+        for (var candidate : candidates) {
+            var pair = candidate;
+            var numOrderedPairs = (long) indexedGraph.getNumNodes() * (indexedGraph.getNumNodes() - 1);
+            while (!selectedPairs.add(pair) && selectedPairs.size() < numOrderedPairs) {
+                pair = selectRandomPair();
+            }
+            pairs.add(pair);
+        }
+        return pairs;
+    }
+
+    private List<ImmutablePair<T, T>> selectProjectionPairs(NodeCoordinates<T> coordinates, int numPairs) {
+        List<ImmutablePair<T, T>> pairs = new ArrayList<>(numPairs);
+        for (int i = 0; i < numPairs; i++) {
+            var dx = Math.cos(nextDirection);
+            var dy = Math.sin(nextDirection);
+            nextDirection = (nextDirection + GOLDEN_ANGLE) % Math.PI;
+            var min = 0;
+            var max = 0;
+            var minProjection = Double.POSITIVE_INFINITY;
+            var maxProjection = Double.NEGATIVE_INFINITY;
+            for (int node = 0; node < indexedGraph.getNumNodes(); node++) {
+                var graphNode = indexedGraph.getNode(node);
+                var projection = dx * coordinates.getX(graphNode) + dy * coordinates.getY(graphNode);
+                if (projection < minProjection) {
+                    minProjection = projection;
+                    min = node;
+                }
+                if (projection > maxProjection) {
+                    maxProjection = projection;
+                    max = node;
+                }
+            }
+            pairs.add(min != max ? toPair(min, max) : selectRandomPair());
+        }
+        return pairs;
+    }
+
+    private List<ImmutablePair<T, T>> selectSweepPairs(int numPairs) {
+        List<T> starts = new ArrayList<>(numPairs);
+        for (int i = 0; i < numPairs; i++) {
+            starts.add(indexedGraph.getNode(random.nextInt(indexedGraph.getNumNodes())));
+        }
+        var startDistances = new HopDistances<>(indexedGraph, new LinkedHashSet<>(starts));
+        List<ImmutablePair<T, T>> pairs = new ArrayList<>(numPairs);
+        for (var start : starts) {
+            var source = indexedGraph.getIndex(start);
+            var target = findFarthestNode(startDistances, start);
+            pairs.add(target != source ? toPair(source, target) : selectRandomPair());
+        }
+        return pairs;
+    }
+
+    private int findFarthestNode(HopDistances<T> hopDistances, T node) {
+        var distances = hopDistances.getDistancesFrom(node);
+        var farthest = indexedGraph.getIndex(node);
+        for (int i = 0; i < distances.length; i++) {
+            if (distances[i] != hopDistances.getUnreachable() && distances[i] > distances[farthest]) {
+                farthest = i;
+            }
+        }
+        return farthest;
+    }
+
+    private ImmutablePair<T, T> selectRandomPair() {
+        var numNodes = indexedGraph.getNumNodes();
+        var source = random.nextInt(numNodes);
+        var target = random.nextInt(numNodes - 1);
+        if (target >= source) {
+            target++; // Ensure distinct source and target nodes
+        }
+        return toPair(source, target);
+    }
+
+    private ImmutablePair<T, T> toPair(int source, int target) {
+        return new ImmutablePair<>(indexedGraph.getNode(source), indexedGraph.getNode(target));
+    }
+}
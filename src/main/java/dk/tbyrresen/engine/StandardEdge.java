@@ -4,10 +4,12 @@ package dk.tbyrresen.engine;
 public class StandardEdge<T> implements Edge<T> {
     private final T source;
     private final T target;
+    private final int hash; // symmetric in the end points, computed once since edges are hashed in every graph set
 
     public StandardEdge(T source, T target) {
         this.source = source;
         this.target = target;
+        hash = source.hashCode() + target.hashCode();
     }
 
     @Override
@@ -46,12 +48,15 @@ public class StandardEdge<T> implements Edge<T> {
             return false;
         }
         StandardEdge<?> that = (StandardEdge<?>) o;
+        if (hash != that.hash) {
+            return false;
+        }
         return (source.equals(that.source) && target.equals(that.target))
             || (source.equals(that.target) && target.equals(that.source));
     }
 
     @Override
     public int hashCode() {
-        return source.hashCode() + target.hashCode();
+        return hash;
     }
 }
@@ -45,8 +45,8 @@ public class StandardGraph<T> implements Graph<T> {
     }
 
     protected Pair<Map<T, Set<T>>, Map<T, Set<Edge<T>>>> findAdjacents(Set<T> nodes, Set<Edge<T>> edges) {
-        Map<T, Set<T>> adjacentNodesMap = new HashMap<>();
-        Map<T, Set<Edge<T>>> adjacentEdgesMap = new HashMap<>();
+        Map<T, Set<T>> adjacentNodesMap = new HashMap<>(nodes.size() * 2);
+        Map<T, Set<Edge<T>>> adjacentEdgesMap = new HashMap<>(nodes.size() * 2);
         nodes.forEach(n -> {
             adjacentNodesMap.put(n, new HashSet<>());
             adjacentEdgesMap.put(n, new HashSet<>());
@@ -98,6 +98,8 @@ public class StandardGraph<T> implements Graph<T> {
         } else {
             adjacentNodes.put(edge.getTarget(), new HashSet<>(List.of(edge.getSource())));
         }
+        adjacentEdges.computeIfAbsent(edge.getSource(), n -> new HashSet<>()).add(edge);
+        adjacentEdges.computeIfAbsent(edge.getTarget(), n -> new HashSet<>()).add(edge);
     }
 
     @Override
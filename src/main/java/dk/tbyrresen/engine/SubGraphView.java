@@ -0,0 +1,206 @@
+package dk.tbyrresen.engine;
+
+import org.springframework.lang.Nullable;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Read only view of the subgraph of a parent graph induced by a set of member nodes. Nothing is copied: adjacent
+// nodes and edges are filtered on the fly by membership, so splitting a graph into views during the nested
+// dissection recursion costs only the member sets. Use GraphUtils.viewSubGraph to create views, which compacts
+// small subgraphs into standard graphs and never nests views inside views.
+// Equality is identity based since comparing the full node and edge sets of large views would be very expensive.
+public class SubGraphView<T> implements Graph<T> {
+    // Views with at most this many nodes are materialized as standard graphs instead, since the per access
+    // filtering is not worth it once the subgraph is small enough to copy cheaply
+    public static final int COMPACTION_THRESHOLD = 1 << 12;
+
+    private final Graph<T> parentGraph;
+    private final Set<T> nodes;
+    private final Set<Edge<T>> edges = new EdgeSet();
+    private volatile int numEdges = -1;
+
+    SubGraphView(Graph<T> parentGraph, Set<T> nodes) {
+        this.parentGraph = parentGraph;
+        this.nodes = nodes;
+    }
+
+    public Graph<T> getParentGraph() {
+        return parentGraph;
+    }
+
+    @Override
+    public Set<T> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public Set<T> getAdjacentNodes(T node) {
+        requireContainsNode(node);
+        return new FilteredSet<>(parentGraph.getAdjacentNodes(node), nodes::contains);
+    }
+
+    @Override
+    public Set<Edge<T>> getAdjacentEdges(T node) {
+        requireContainsNode(node);
+        return new FilteredSet<>(parentGraph.getAdjacentEdges(node), e -> nodes.contains(e.getOppositeOf(node)));
+    }
+
+    @Override
+    public void addEdge(Edge<T> edge) {
+        throw new UnsupportedOperationException("Subgraph views are read only");
+    }
+
+    @Override
+    public Set<Edge<T>> getEdges() {
+        return edges;
+    }
+
+    @Override
+    public boolean allowsSelfLoops() {
+        return parentGraph.allowsSelfLoops();
+    }
+
+    @Override
+    public boolean allowsParallelEdges() {
+        return parentGraph.allowsParallelEdges();
+    }
+
+    private void requireContainsNode(T node) {
+        if (!nodes.contains(node)) {
+            throw new IllegalArgumentException(String.format("Graph does not contain node %s", node));
+        }
+    }
+
+    // Set of the elements of a backing set accepted by a filter. The size is counted on every call.
+    private static class FilteredSet<E> extends AbstractSet<E> {
+        private final Set<E> backingSet;
+        private final Predicate<E> filter;
+
+        private FilteredSet(Set<E> backingSet, Predicate<E> filter) {
+            this.backingSet = backingSet;
+            this.filter = filter;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return backingSet.contains(o) && filter.test((E) o);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new FilteringIterator<>(backingSet.iterator(), filter);
+        }
+
+        @Override
+        public int size() {
+            var size = 0;
+            for (var element : backingSet) {
+                if (filter.test(element)) {
+                    size++;
+                }
+            }
+            return size;
+        }
+    }
+
+    private static class FilteringIterator<E> implements Iterator<E> {
+        private final Iterator<E> backingIterator;
+        private final Predicate<E> filter;
+        @Nullable private E next;
+        private boolean hasNext;
+
+        private FilteringIterator(Iterator<E> backingIterator, Predicate<E> filter) {
+            this.backingIterator = backingIterator;
+            this.filter = filter;
+            advance();
+        }
+
+        private void advance() {
+            hasNext = false;
+            while (backingIterator.hasNext()) {
+                var candidate = backingIterator.next();
+                if (filter.test(candidate)) {
+                    next = candidate;
+                    hasNext = true;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            var current = next;
+            advance();
+            return current;
+        }
+    }
+
+    // The edges of the view, found by walking the adjacent edges of the member nodes. Every edge is reported only
+    // from its source so it is seen once. The number of edges is counted once and then remembered.
+    private class EdgeSet extends AbstractSet<Edge<T>> {
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            if (!(o instanceof Edge)) {
+                return false;
+            }
+            var edge = (Edge<T>) o;
+            return nodes.contains(edge.getSource())
+                   && nodes.contains(edge.getTarget())
+                   && parentGraph.getAdjacentEdges(edge.getSource()).contains(edge);
+        }
+
+        @Override
+        public Iterator<Edge<T>> iterator() {
+            var nodeIterator = nodes.iterator();
+            return new Iterator<>() {
+                private Iterator<Edge<T>> edgeIterator = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!edgeIterator.hasNext() && nodeIterator.hasNext()) {
+                        var node = nodeIterator.next();
+                        edgeIterator = new FilteringIterator<>(
+                                parentGraph.getAdjacentEdges(node).iterator(),
+                                e -> e.getSource().equals(node) && nodes.contains(e.getTarget()));
+                    }
+                    return edgeIterator.hasNext();
+                }
+
+                @Override
+                public Edge<T> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return edgeIterator.next();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            if (numEdges == -1) {
+                var count = 0;
+                for (var ignored : this) {
+                    count++;
+                }
+                numEdges = count; // benign race since every thread computes the same count
+            }
+            return numEdges;
+        }
+    }
+}
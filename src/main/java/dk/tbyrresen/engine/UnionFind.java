@@ -0,0 +1,87 @@
+package dk.tbyrresen.engine;
+
+import java.util.Arrays;
+
+// Growable disjoint set forest over the elements 0..n-1 using union by size and path halving. Elements can be
+// added while unions are being performed, which allows components to be tracked over a stream of edges.
+public class UnionFind {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] parent;
+    private int[] size;
+    private int numElements = 0;
+
+    public UnionFind() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public UnionFind(int initialCapacity) {
+        parent = new int[Math.max(initialCapacity, 1)];
+        size = new int[parent.length];
+    }
+
+    // Adds a new singleton set and returns its element
+    public int add() {
+        if (numElements == parent.length) {
+            parent = Arrays.copyOf(parent, parent.length * 2);
+            size = Arrays.copyOf(size, size.length * 2);
+        }
+        parent[numElements] = numElements;
+        size[numElements] = 1;
+        return numElements++;
+    }
+
+    public int find(int element) {
+        requireElement(element);
+        var current = element;
+        while (parent[current] != current) {
+            parent[current] = parent[parent[current]];
+            current = parent[current];
+        }
+        return current;
+    }
+
+    // Returns the root of the merged set
+    public int union(int first, int second) {
+        var firstRoot = find(first);
+        var secondRoot = find(second);
+        if (firstRoot == secondRoot) {
+            return firstRoot;
+        }
+        if (size[firstRoot] < size[secondRoot]) {
+            var tmp = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = tmp;
+        }
+        parent[secondRoot] = firstRoot;
+        size[firstRoot] += size[secondRoot];
+        return firstRoot;
+    }
+
+    // Size of the set containing the given element
+    public int getSize(int element) {
+        return size[find(element)];
+    }
+
+    public int getNumElements() {
+        return numElements;
+    }
+
+    // Returns the root of the largest set or -1 if there are no elements
+    public int findLargestRoot() {
+        var largestRoot = -1;
+        for (int i = 0; i < numElements; i++) {
+            if (parent[i] == i && (largestRoot == -1 || size[i] > size[largestRoot])) {
+                largestRoot = i;
+            }
+        }
+        return largestRoot;
+    }
+
+    private void requireElement(int element) {
+        if (element < 0 || element >= numElements) {
+            throw new IllegalArgumentException(String.format(
+                    "Element %d is not in union find of %d elements", element, numElements));
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package dk.tbyrresen.engine;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -12,31 +12,65 @@ public class UnitFlowNetwork<T> implements Graph<T> {
     private final T originalTarget;
     private Set<T> sourceNodes = new HashSet<>();
     private Set<T> targetNodes = new HashSet<>();
-    private final Map<T, Set<MultiFlowEdge<T>>> outEdges = new HashMap<>();  // Used semi undirected since we need to look from both directed in edmonds karp?
+    private final Set<T> nodes;
+    private final IndexedGraph<T> indexedGraph;
+    private final boolean[] isSource; // by node index, kept in sync with the source nodes
+    private final boolean[] isTarget;
+    // The out edges of node v are the positions [outEdgeOffsets[v], outEdgeOffsets[v + 1]) in CSR order. Every
+    // multi flow edge is stored once for each of its end points, and the reverse of an out edge is its position
+    // in the out edges of the opposite node.
+    private final List<MultiFlowEdge<T>> outEdges;  // Used semi undirected since we need to look from both directed in edmonds karp?
+    private final int[] outEdgeOffsets;
+    private final int[] outEdgeTargets;
+    private final int[] reverseOutEdges;
 
     // TODO Should we allow/disallow selfloops and/or paralleledges?
     public UnitFlowNetwork(Graph<T> graph, T source, T target) {
+        this(graph, new IndexedGraph<>(graph), source, target);
+    }
+
+    // The indexed graph must be of the same graph and numbers the nodes of the network
+    public UnitFlowNetwork(Graph<T> graph, IndexedGraph<T> indexedGraph, T source, T target) {
         if (source.equals(target)) {
             throw new IllegalArgumentException("Source and target must be distinct");
         }
         originalSource = source;
         originalTarget = target;
-        sourceNodes.add(source);
-        targetNodes.add(target);
-        addNodes(graph.getNodes());
-        addEdgesAsUnitFlowEdges(graph.getEdges());
-    }
-
-    private void addNodes(Set<T> nodes) {
-        nodes.forEach(n -> outEdges.put(n, new HashSet<>()));
-    }
-
-    private void addEdgesAsUnitFlowEdges(Set<Edge<T>> edges) {
+        nodes = graph.getNodes();
+        this.indexedGraph = indexedGraph;
+        var numNodes = indexedGraph.getNumNodes();
+        isSource = new boolean[numNodes];
+        isTarget = new boolean[numNodes];
+        var edges = graph.getEdges();
+        outEdgeOffsets = new int[numNodes + 1];
+        for (var edge : edges) {
+            outEdgeOffsets[indexedGraph.getIndex(edge.getSource()) + 1]++;
+            outEdgeOffsets[indexedGraph.getIndex(edge.getTarget()) + 1]++;
+        }
+        for (int v = 0; v < numNodes; v++) {
+            outEdgeOffsets[v + 1] += outEdgeOffsets[v];
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        var multiFlowEdges = (MultiFlowEdge<T>[]) new MultiFlowEdge[outEdgeOffsets[numNodes]];
+        outEdgeTargets = new int[multiFlowEdges.length];
+        reverseOutEdges = new int[multiFlowEdges.length];
+        var nextOutEdge = Arrays.copyOf(outEdgeOffsets, numNodes);
         for (var edge : edges) {
             var multiFlowEdge = new MultiFlowEdge<>(edge.getSource(), edge.getTarget());
-            outEdges.get(edge.getSource()).add(multiFlowEdge);
-            outEdges.get(edge.getTarget()).add(multiFlowEdge);
+            var first = indexedGraph.getIndex(edge.getSource());
+            var second = indexedGraph.getIndex(edge.getTarget());
+            var firstOutEdge = nextOutEdge[first]++;
+            var secondOutEdge = nextOutEdge[second]++;
+            multiFlowEdges[firstOutEdge] = multiFlowEdge;
+            multiFlowEdges[secondOutEdge] = multiFlowEdge;
+            outEdgeTargets[firstOutEdge] = second;
+            outEdgeTargets[secondOutEdge] = first;
+            reverseOutEdges[firstOutEdge] = secondOutEdge;
+            reverseOutEdges[secondOutEdge] = firstOutEdge;
         }
+        outEdges = List.of(multiFlowEdges);
+        addToSource(source);
+        addToTarget(target);
     }
 
     public T getOriginalSource() {
@@ -49,19 +83,68 @@ public class UnitFlowNetwork<T> implements Graph<T> {
 
     // This seems a bit odd, but we only need to return the first (or second) edge due
     // to how the later steps are implemented.
-    public Set<MultiFlowEdge<T>> getOutEdges(T node) {
-        requireContainsNode(node);
-        return outEdges.get(node);
+    public List<MultiFlowEdge<T>> getOutEdges(T node) {
+        var index = getIndex(node);
+        return outEdges.subList(outEdgeOffsets[index], outEdgeOffsets[index + 1]);
+    }
+
+    public int getNumNodes() {
+        return indexedGraph.getNumNodes();
+    }
+
+    public int getIndex(T node) {
+        var index = indexedGraph.findIndex(node);
+        if (index == -1) {
+            throw new IllegalArgumentException(String.format("Flow network does not contain node %s", node));
+        }
+        return index;
+    }
+
+    // The index of the node, or -1 if it is not in the network
+    public int findIndex(T node) {
+        return indexedGraph.findIndex(node);
+    }
+
+    public T getNode(int index) {
+        return indexedGraph.getNode(index);
+    }
+
+    public int getOutEdgesStart(int node) {
+        return outEdgeOffsets[node];
+    }
+
+    public int getOutEdgesEnd(int node) {
+        return outEdgeOffsets[node + 1];
+    }
+
+    public MultiFlowEdge<T> getOutEdge(int outEdge) {
+        return outEdges.get(outEdge);
+    }
+
+    // The index of the node the out edge leads to
+    public int getOutEdgeTarget(int outEdge) {
+        return outEdgeTargets[outEdge];
+    }
+
+    // The position of the same multi flow edge among the out edges of its target
+    public int getReverseOutEdge(int outEdge) {
+        return reverseOutEdges[outEdge];
     }
 
     public boolean isSourceNode(T node) {
-        requireContainsNode(node);
-        return sourceNodes.contains(node);
+        return isSource[getIndex(node)];
+    }
+
+    public boolean isSourceNode(int node) {
+        return isSource[node];
     }
 
     public boolean isTargetNode(T node) {
-        requireContainsNode(node);
-        return targetNodes.contains(node);
+        return isTarget[getIndex(node)];
+    }
+
+    public boolean isTargetNode(int node) {
+        return isTarget[node];
     }
 
     public Set<T> getSourceNodes() {
@@ -70,6 +153,8 @@ public class UnitFlowNetwork<T> implements Graph<T> {
 
     public void setSourceNodes(Set<T> sourceNodes) {
         requireContainsNodes(sourceNodes);
+        this.sourceNodes.forEach(n -> isSource[indexedGraph.getIndex(n)] = false);
+        sourceNodes.forEach(n -> isSource[indexedGraph.getIndex(n)] = true);
         this.sourceNodes = sourceNodes;
     }
 
@@ -79,29 +164,30 @@ public class UnitFlowNetwork<T> implements Graph<T> {
 
     public void setTargetNodes(Set<T> targetNodes) {
         requireContainsNodes(targetNodes);
+        this.targetNodes.forEach(n -> isTarget[indexedGraph.getIndex(n)] = false);
+        targetNodes.forEach(n -> isTarget[indexedGraph.getIndex(n)] = true);
         this.targetNodes = targetNodes;
     }
 
     public void addToSource(T node) {
-        requireContainsNode(node);
+        isSource[getIndex(node)] = true;
         sourceNodes.add(node);
     }
 
     public void addToTarget(T node) {
-        requireContainsNode(node);
+        isTarget[getIndex(node)] = true;
         targetNodes.add(node);
     }
 
     @Override
     public Set<T> getNodes() {
-        return outEdges.keySet();
+        return nodes;
     }
 
     // must consider both the source and target of edges and filter out the node corresponding to the argument
     @Override
     public Set<T> getAdjacentNodes(T node) {
-        requireContainsNode(node);
-        return outEdges.get(node)
+        return getOutEdges(node)
                 .stream()
                 .map(MultiFlowEdge::getFirst)
                 .flatMap(e -> Stream.of(e.getSource(), e.getTarget()))
@@ -121,9 +207,8 @@ public class UnitFlowNetwork<T> implements Graph<T> {
 
     @Override
     public Set<Edge<T>> getEdges() {
-        return outEdges.values()
+        return outEdges
                 .stream()
-                .flatMap(Set::stream)
                 .flatMap(e -> Stream.of(e.getFirst(), e.getSecond()))
                 .collect(Collectors.toSet());
     }
@@ -138,14 +223,8 @@ public class UnitFlowNetwork<T> implements Graph<T> {
         return false;
     }
 
-    private void requireContainsNode(T node) {
-        if (!outEdges.containsKey(node)) {
-            throw new IllegalArgumentException(String.format("Flow network does not contain node %s", node));
-        }
-    }
-
     private void requireContainsNodes(Set<T> nodes) {
-        if (!outEdges.keySet().containsAll(nodes)) {
+        if (!nodes.stream().allMatch(indexedGraph::containsNode)) {
             throw new IllegalArgumentException(String.format("Flow network does not contain all nodes in %s", nodes));
         }
     }
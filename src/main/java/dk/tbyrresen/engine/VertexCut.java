@@ -0,0 +1,100 @@
+package dk.tbyrresen.engine;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+// A vertex separator of an indexed graph given by the separator nodes and the nodes on one side of it, where the
+// other side is every remaining node. Only the indices are kept until the cut is turned into a Separator, since
+// a FlowCutter run finds many cuts and most of them are discarded.
+public class VertexCut<T> implements Cut {
+    private final IndexedGraph<T> indexedGraph;
+    private final int[] separatorNodes;
+    private final int[] sideNodes;
+    private final int separatorWeight;
+    private final double imbalance;
+    private final double expansionSize;
+
+    public VertexCut(IndexedGraph<T> indexedGraph, int[] separatorNodes, int[] sideNodes) {
+        this(indexedGraph, separatorNodes, sideNodes, null);
+    }
+
+    // Node weights, indexed by node index, replace the number of nodes by their total weight in the imbalance and
+    // expansion, as needed for coarsened graphs. The size is still the number of separator nodes.
+    public VertexCut(IndexedGraph<T> indexedGraph, int[] separatorNodes, int[] sideNodes, @Nullable int[] nodeWeights) {
+        this.indexedGraph = indexedGraph;
+        this.separatorNodes = separatorNodes;
+        this.sideNodes = sideNodes;
+        var totalWeight = nodeWeights == null ? indexedGraph.getNumNodes() : Arrays.stream(nodeWeights).sum();
+        separatorWeight = sumWeights(nodeWeights, separatorNodes);
+        var sideWeight = sumWeights(nodeWeights, sideNodes);
+        var otherSideWeight = totalWeight - separatorWeight - sideWeight;
+        // Same definitions as Separator, where the separator nodes count towards the size of the graph
+        imbalance = (((double) Math.max(sideWeight, otherSideWeight) * 2) / totalWeight) - 1;
+        expansionSize = (double) separatorWeight / Math.max(1, Math.min(sideWeight, otherSideWeight));
+    }
+
+    private static int sumWeights(@Nullable int[] nodeWeights, int[] nodes) {
+        if (nodeWeights == null) {
+            return nodes.length;
+        }
+        var weight = 0;
+        for (var node : nodes) {
+            weight += nodeWeights[node];
+        }
+        return weight;
+    }
+
+    public int getSize() {
+        return separatorNodes.length;
+    }
+
+    // Same as the size unless the nodes are weighted
+    public int getSeparatorWeight() {
+        return separatorWeight;
+    }
+
+    @Override
+    public double getImbalance() {
+        return imbalance;
+    }
+
+    @Override
+    public double getExpansionSize() {
+        return expansionSize;
+    }
+
+    public Separator<T> toSeparator(Graph<T> graph) {
+        var numNodes = indexedGraph.getNumNodes();
+        var isSeparatorNode = new boolean[numNodes];
+        var isSideNode = new boolean[numNodes];
+        Set<T> separator = new HashSet<>();
+        for (var node : separatorNodes) {
+            isSeparatorNode[node] = true;
+            separator.add(indexedGraph.getNode(node));
+        }
+        for (var node : sideNodes) {
+            isSideNode[node] = true;
+        }
+        Set<T> left = new HashSet<>();
+        Set<T> right = new HashSet<>();
+        for (int node = 0; node < numNodes; node++) {
+            if (isSideNode[node]) {
+                left.add(indexedGraph.getNode(node));
+            } else if (!isSeparatorNode[node]) {
+                right.add(indexedGraph.getNode(node));
+            }
+        }
+        Set<Edge<T>> separatingEdges = new HashSet<>();
+        for (var node : separator) {
+            for (var edge : graph.getAdjacentEdges(node)) {
+                if (!separator.contains(edge.getOppositeOf(node))) {
+                    separatingEdges.add(edge);
+                }
+            }
+        }
+        return new Separator<>(separator, left, right, separatingEdges);
+    }
+}
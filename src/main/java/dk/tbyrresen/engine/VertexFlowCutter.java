@@ -0,0 +1,518 @@
+package dk.tbyrresen.engine;
+
+import dk.tbyrresen.engine.jfr.FlowCutterRunEvent;
+import dk.tbyrresen.engine.metrics.DissectionCounter;
+import dk.tbyrresen.engine.metrics.DissectionMetrics;
+import dk.tbyrresen.engine.metrics.DissectionPhase;
+
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+// FlowCutter on node capacities, which finds vertex separators directly instead of edge cuts that must be turned
+// into separators afterwards. It works on the standard expansion where every node v is split into an in state and
+// an out state joined by an arc of capacity one, and every edge {u, v} becomes the arcs u_out -> v_in and
+// v_out -> u_in of unbounded capacity. The expansion is never built: state 2v is v_in and 2v + 1 is v_out, and
+// since the node capacities are one the flow is a set of node disjoint paths, so all we store is the node each
+// unit of flow through a node came from. The residual arcs of a state are then:
+// - v_in: to v_out if no flow passes v, otherwise back to the out state of the node the flow came from
+// - v_out: to the in state of every neighbor, and back to v_in if flow passes v
+// A node whose in state is source reachable but whose out state is not is a saturated separator node.
+// No vertex separator splits two adjacent nodes, so a run where a source is adjacent to a target finds no cuts, and
+// nodes next to the other side are never pierced.
+public class VertexFlowCutter<T> {
+    private enum CutSide {
+        SOURCE,
+        TARGET
+    }
+
+    private static final int NO_NODE = -1;
+
+    private final IndexedGraph<T> indexedGraph;
+    private final int numNodes;
+    @Nullable private final int[] nodeWeights; // by node index, null if every node has weight one
+    private final int totalWeight;
+    private final double epsilon;
+    private final ExpansionBound expansionBound;
+    private final int[] hopDistancesToSource;
+    private final int[] hopDistancesToTarget;
+    private final boolean[] isSource;
+    private final boolean[] isTarget;
+    private final int[] flowPredecessor; // node the unit of flow through a node comes from, or NO_NODE
+    // reachable states, cleared in O(1) between searches. The source reachable states carry their parent state.
+    private final VisitedMarks sourceReachable;
+    private final VisitedMarks targetReachable;
+    private final IntQueue queue;
+    private final List<VertexCut<T>> cuts = new ArrayList<>();
+    private int numPiercingSteps = 0;
+    private int maxFlow = 0;
+    private boolean isAbandoned = false;
+    private long numVisitedStates = 0;
+
+    public VertexFlowCutter(Graph<T> graph, T source, T target, double epsilon) {
+        this(source, target, epsilon, new ExpansionBound(),
+             new HopDistances<>(new IndexedGraph<>(graph), Set.of(source, target)));
+    }
+
+    // The graph is the indexed graph of the hop distances, which must include the source and target
+    public VertexFlowCutter(T source,
+                            T target,
+                            double epsilon,
+                            ExpansionBound expansionBound,
+                            HopDistances<T> hopDistances) {
+        this(source, target, epsilon, expansionBound, hopDistances, null);
+    }
+
+    // Node weights, indexed by node index, make the balance of the cuts depend on the total weight of the sides
+    // instead of their number of nodes, as needed on coarsened graphs. Every node still has capacity one.
+    public VertexFlowCutter(T source,
+                            T target,
+                            double epsilon,
+                            ExpansionBound expansionBound,
+                            HopDistances<T> hopDistances,
+                            @Nullable int[] nodeWeights) {
+        this(hopDistances.getIndexedGraph(),
+             new int[] {hopDistances.getIndexedGraph().getIndex(source)},
+             new int[] {hopDistances.getIndexedGraph().getIndex(target)},
+             epsilon,
+             expansionBound,
+             hopDistances.getDistancesFrom(source),
+             hopDistances.getDistancesFrom(target),
+             nodeWeights);
+    }
+
+    // Starts from sets of sources and targets, given by their indices, instead of single nodes as inertial flow
+    // does. The hop distances used for piercing are to the nearest terminal of each set.
+    public VertexFlowCutter(IndexedGraph<T> indexedGraph,
+                            int[] sources,
+                            int[] targets,
+                            double epsilon,
+                            ExpansionBound expansionBound) {
+        this(indexedGraph, sources, targets, epsilon, expansionBound,
+             HopDistances.computeDistancesFromNearest(indexedGraph, sources),
+             HopDistances.computeDistancesFromNearest(indexedGraph, targets),
+             null);
+    }
+
+    private VertexFlowCutter(IndexedGraph<T> indexedGraph,
+                             int[] sources,
+                             int[] targets,
+                             double epsilon,
+                             ExpansionBound expansionBound,
+                             int[] hopDistancesToSource,
+                             int[] hopDistancesToTarget,
+                             @Nullable int[] nodeWeights) {
+        if (epsilon < 0.0 || epsilon > 1.0) {
+            throw new IllegalArgumentException(String.format(
+                    "Epsilon of %s is not in valid range of [0.0, 1.0]", epsilon));
+        }
+        this.indexedGraph = indexedGraph;
+        this.epsilon = epsilon;
+        this.expansionBound = expansionBound;
+        this.hopDistancesToSource = hopDistancesToSource;
+        this.hopDistancesToTarget = hopDistancesToTarget;
+        numNodes = indexedGraph.getNumNodes();
+        this.nodeWeights = nodeWeights;
+        totalWeight = nodeWeights == null ? numNodes : Arrays.stream(nodeWeights).sum();
+        isSource = new boolean[numNodes];
+        isTarget = new boolean[numNodes];
+        for (var source : sources) {
+            isSource[source] = true;
+        }
+        for (var target : targets) {
+            if (isSource[target]) {
+                throw new IllegalArgumentException("Sources and targets must be distinct");
+            }
+            isTarget[target] = true;
+        }
+        flowPredecessor = new int[numNodes];
+        Arrays.fill(flowPredecessor, NO_NODE);
+        sourceReachable = VisitedMarks.acquire(2 * numNodes);
+        targetReachable = VisitedMarks.acquire(2 * numNodes);
+        queue = IntQueue.acquire();
+        var event = new FlowCutterRunEvent();
+        event.begin();
+        try {
+            if (Arrays.stream(sources).noneMatch(this::isAdjacentToTarget)) {
+                computeCuts();
+            }
+        } finally {
+            sourceReachable.close();
+            targetReachable.close();
+            queue.close();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.numNodes = numNodes;
+            event.numPiercingSteps = numPiercingSteps;
+            event.maxFlow = maxFlow;
+            event.numCuts = cuts.size();
+            event.isAbandoned = isAbandoned;
+            event.commit();
+        }
+        DissectionMetrics.add(DissectionCounter.BFS_NODES_VISITED, numVisitedStates);
+    }
+
+    private void computeCuts() {
+        var start = DissectionMetrics.startTimer();
+        computeInitialFlow();
+        augmentFlow();
+        searchBackwardFromTargets();
+        DissectionMetrics.stopTimer(DissectionPhase.AUGMENTING_PATH, start);
+        while (true) {
+            if (isHopeless()) {
+                isAbandoned = true;
+                DissectionMetrics.increment(DissectionCounter.ABANDONED_FLOWCUTTER_RUNS);
+                break;
+            }
+            start = DissectionMetrics.startTimer();
+            var sourceSideWeight = getSideWeight(sourceReachable, CutSide.SOURCE);
+            var targetSideWeight = getSideWeight(targetReachable, CutSide.TARGET);
+            var cutSide = sourceSideWeight <= targetSideWeight ? CutSide.SOURCE : CutSide.TARGET;
+            var cut = extractCut(cutSide);
+            addCut(cut);
+            var sideWeight = Math.min(sourceSideWeight, targetSideWeight);
+            var piercingNode = isEpsilonBalanced(sideWeight, cut.getSeparatorWeight())
+                    ? NO_NODE
+                    : findPiercingNode(cutSide);
+            DissectionMetrics.stopTimer(DissectionPhase.CUT_EXTRACTION, start);
+            if (piercingNode == NO_NODE) {
+                break;
+            }
+            numPiercingSteps++;
+            DissectionMetrics.increment(DissectionCounter.PIERCING_STEPS);
+            start = DissectionMetrics.startTimer();
+            pierce(piercingNode, cutSide);
+            DissectionMetrics.stopTimer(DissectionPhase.AUGMENTING_PATH, start);
+        }
+        start = DissectionMetrics.startTimer();
+        cuts.removeIf(this::isDominatedCut); // Remove dominated cuts to ensure pareto optimal cuts
+        DissectionMetrics.stopTimer(DissectionPhase.CUT_EXTRACTION, start);
+    }
+
+    // On large graphs the first flow, which is most of the flow of a run, is computed by parallel push-relabel.
+    // Piercing only adds a unit or two of flow at a time, so everything after that is left to augmentFlow.
+    private void computeInitialFlow() {
+        if (numNodes >= DissectionConstants.PUSH_RELABEL_MIN_NODES) {
+            var pushRelabel = new ParallelPushRelabel(indexedGraph, isSource, isTarget);
+            System.arraycopy(pushRelabel.getFlowPredecessors(), 0, flowPredecessor, 0, numNodes);
+            DissectionMetrics.add(DissectionCounter.AUGMENTING_PATHS, pushRelabel.getFlow());
+            maxFlow = pushRelabel.getFlow();
+        }
+    }
+
+    // Augments along shortest paths until no path is left. This also completes a flow from push-relabel, so a
+    // flow that is not maximum can never produce wrong cuts. The last search marks the source reachable states.
+    private void augmentFlow() {
+        var reachedTarget = searchForwardFromSources();
+        while (reachedTarget != NO_NODE) {
+            augment(reachedTarget);
+            maxFlow++; // Every augmenting path saturates exactly one more node
+            DissectionMetrics.increment(DissectionCounter.AUGMENTING_PATHS);
+            reachedTarget = searchForwardFromSources();
+        }
+    }
+
+    private int searchForwardFromSources() {
+        sourceReachable.clear();
+        queue.clear();
+        for (int node = 0; node < numNodes; node++) {
+            if (isSource[node]) {
+                markSourceTerminal(node);
+            }
+        }
+        return searchForward();
+    }
+
+    private void markSourceTerminal(int node) {
+        for (var state : new int[] {inState(node), outState(node)}) {
+            sourceReachable.mark(state, NO_NODE);
+            queue.add(state);
+        }
+    }
+
+    // Breadth first search of the residual network from the queued states. Returns the first state of a target
+    // node reached, or NO_NODE if none can be reached.
+    private int searchForward() {
+        while (!queue.isEmpty()) {
+            var state = queue.remove();
+            var node = state >> 1;
+            numVisitedStates++;
+            if (isInState(state)) {
+                var next = flowPredecessor[node] == NO_NODE ? outState(node) : outState(flowPredecessor[node]);
+                if (discoverForward(next, state)) {
+                    return next;
+                }
+                continue;
+            }
+            if (flowPredecessor[node] != NO_NODE && discoverForward(inState(node), state)) {
+                return inState(node);
+            }
+            for (int i = 0; i < indexedGraph.getDegree(node); i++) {
+                var next = inState(indexedGraph.getNeighbor(node, i));
+                if (discoverForward(next, state)) {
+                    return next;
+                }
+            }
+        }
+        return NO_NODE;
+    }
+
+    // Returns true if the state belongs to a target node
+    private boolean discoverForward(int state, int parentState) {
+        if (!sourceReachable.mark(state, parentState)) {
+            return false;
+        }
+        if (isTarget[state >> 1]) {
+            return true;
+        }
+        queue.add(state);
+        return false;
+    }
+
+    // Walks the path back from the target. Only the arcs entering or leaving a node change what we store: an edge
+    // arc into a node makes its tail the new predecessor, and the back arc from an out state to its in state
+    // removes the flow through the node. Arcs cancelling the flow into a node are always preceded by an edge arc
+    // into it, except at a source where the flow simply ends.
+    private void augment(int targetState) {
+        var state = targetState;
+        while (sourceReachable.getValue(state) != NO_NODE) {
+            var parentState = sourceReachable.getValue(state);
+            var node = state >> 1;
+            var parentNode = parentState >> 1;
+            if (node != parentNode) {
+                if (!isInState(parentState) && isInState(state) && !isTarget[node]) {
+                    flowPredecessor[node] = parentNode;
+                } else if (isInState(parentState) && isSource[parentNode]) {
+                    flowPredecessor[parentNode] = NO_NODE;
+                }
+            } else if (!isInState(parentState)) {
+                flowPredecessor[node] = NO_NODE;
+            }
+            state = parentState;
+        }
+    }
+
+    // Marks every state from which a target can be reached in the residual network by following the arcs backwards
+    private void searchBackwardFromTargets() {
+        targetReachable.clear();
+        queue.clear();
+        for (int node = 0; node < numNodes; node++) {
+            if (isTarget[node]) {
+                markTargetTerminal(node);
+            }
+        }
+        searchBackward();
+    }
+
+    private void markTargetTerminal(int node) {
+        for (var state : new int[] {inState(node), outState(node)}) {
+            targetReachable.mark(state);
+            queue.add(state);
+        }
+    }
+
+    private void searchBackward() {
+        while (!queue.isEmpty()) {
+            var state = queue.remove();
+            var node = state >> 1;
+            numVisitedStates++;
+            if (isInState(state)) {
+                if (flowPredecessor[node] != NO_NODE) {
+                    discoverBackward(outState(node));
+                }
+                for (int i = 0; i < indexedGraph.getDegree(node); i++) {
+                    discoverBackward(outState(indexedGraph.getNeighbor(node, i)));
+                }
+            } else {
+                if (flowPredecessor[node] == NO_NODE) {
+                    discoverBackward(inState(node));
+                }
+                for (int i = 0; i < indexedGraph.getDegree(node); i++) {
+                    var neighbor = indexedGraph.getNeighbor(node, i);
+                    if (flowPredecessor[neighbor] == node) {
+                        discoverBackward(inState(neighbor));
+                    }
+                }
+            }
+        }
+    }
+
+    private void discoverBackward(int state) {
+        if (targetReachable.mark(state)) {
+            queue.add(state);
+        }
+    }
+
+    // Piercing a node that can't reach the other side leaves the flow unchanged, so the reachable states only grow
+    // from it. Otherwise the flow is augmented and the other side is searched again.
+    private void pierce(int node, CutSide cutSide) {
+        if (cutSide == CutSide.SOURCE) {
+            var isAugmenting = isReachable(targetReachable, node);
+            isSource[node] = true;
+            if (isAugmenting) {
+                DissectionMetrics.increment(DissectionCounter.AUGMENTING_PIERCINGS);
+                augmentFlow();
+                searchBackwardFromTargets();
+            } else {
+                DissectionMetrics.increment(DissectionCounter.NON_AUGMENTING_PIERCINGS);
+                queue.clear();
+                markSourceTerminal(node);
+                searchForward();
+            }
+        } else {
+            var isAugmenting = isReachable(sourceReachable, node);
+            isTarget[node] = true;
+            if (isAugmenting) {
+                DissectionMetrics.increment(DissectionCounter.AUGMENTING_PIERCINGS);
+                augmentFlow();
+                searchBackwardFromTargets();
+            } else {
+                DissectionMetrics.increment(DissectionCounter.NON_AUGMENTING_PIERCINGS);
+                queue.clear();
+                markTargetTerminal(node);
+                searchBackward();
+            }
+        }
+    }
+
+    private static boolean isReachable(VisitedMarks reachable, int node) {
+        return reachable.isMarked(inState(node)) || reachable.isMarked(outState(node));
+    }
+
+    // The source side holds the nodes with a source reachable out state, the target side those with an in state
+    // from which a target is reachable. All nodes on the chosen side become sources or targets.
+    private int getSideWeight(VisitedMarks reachable, CutSide cutSide) {
+        var weight = 0;
+        for (int node = 0; node < numNodes; node++) {
+            if (reachable.isMarked(sideState(node, cutSide))) {
+                weight += nodeWeights == null ? 1 : nodeWeights[node];
+            }
+        }
+        return weight;
+    }
+
+    private VertexCut<T> extractCut(CutSide cutSide) {
+        var reachable = cutSide == CutSide.SOURCE ? sourceReachable : targetReachable;
+        var terminals = cutSide == CutSide.SOURCE ? isSource : isTarget;
+        var separatorNodes = new int[numNodes];
+        var sideNodes = new int[numNodes];
+        var numSeparatorNodes = 0;
+        var numSideNodes = 0;
+        for (int node = 0; node < numNodes; node++) {
+            if (reachable.isMarked(sideState(node, cutSide))) {
+                sideNodes[numSideNodes++] = node;
+                terminals[node] = true;
+            } else if (reachable.isMarked(inState(node) + outState(node) - sideState(node, cutSide))) {
+                separatorNodes[numSeparatorNodes++] = node;
+            }
+        }
+        return new VertexCut<>(indexedGraph,
+                               Arrays.copyOf(separatorNodes, numSeparatorNodes),
+                               Arrays.copyOf(sideNodes, numSideNodes),
+                               nodeWeights);
+    }
+
+    // Separator nodes that can't reach the other side are preferred since piercing them keeps the flow. Among the
+    // candidates we pick the one farthest from the other side relative to its own side. Returns NO_NODE if every
+    // separator node is adjacent to the other side.
+    private int findPiercingNode(CutSide cutSide) {
+        var reachable = cutSide == CutSide.SOURCE ? sourceReachable : targetReachable;
+        var oppositeReachable = cutSide == CutSide.SOURCE ? targetReachable : sourceReachable;
+        var ownDistances = cutSide == CutSide.SOURCE ? hopDistancesToSource : hopDistancesToTarget;
+        var otherDistances = cutSide == CutSide.SOURCE ? hopDistancesToTarget : hopDistancesToSource;
+        var bestNode = NO_NODE;
+        var isBestAugmenting = true;
+        for (int node = 0; node < numNodes; node++) {
+            if (reachable.isMarked(sideState(node, cutSide))
+                    || !reachable.isMarked(inState(node) + outState(node) - sideState(node, cutSide))) {
+                continue;
+            }
+            if (cutSide == CutSide.SOURCE ? isAdjacentToTarget(node) : isAdjacentToSource(node)) {
+                continue;
+            }
+            var isAugmenting = isReachable(oppositeReachable, node);
+            if (bestNode == NO_NODE
+                    || (isBestAugmenting && !isAugmenting)
+                    || (isBestAugmenting == isAugmenting
+                        && otherDistances[node] - ownDistances[node]
+                           > otherDistances[bestNode] - ownDistances[bestNode])) {
+                bestNode = node;
+                isBestAugmenting = isAugmenting;
+            }
+        }
+        return bestNode;
+    }
+
+    private boolean isAdjacentToTarget(int node) {
+        for (int i = 0; i < indexedGraph.getDegree(node); i++) {
+            if (isTarget[indexedGraph.getNeighbor(node, i)]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAdjacentToSource(int node) {
+        for (int i = 0; i < indexedGraph.getDegree(node); i++) {
+            if (isSource[indexedGraph.getNeighbor(node, i)]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isEpsilonBalanced(int sideWeight, int separatorWeight) {
+        var otherSideWeight = totalWeight - separatorWeight - sideWeight;
+        return Math.max(sideWeight, otherSideWeight) <= Math.ceil(((1 + epsilon) * totalWeight) / 2.0);
+    }
+
+    // Every later separator has at least maxFlow nodes, each of weight at least one, and its smaller side at most
+    // half of the total weight
+    private boolean isHopeless() {
+        return maxFlow / (double) (totalWeight / 2) >= expansionBound.get();
+    }
+
+    private void addCut(VertexCut<T> cut) {
+        cuts.add(cut);
+        if (cut.getImbalance() <= DissectionConstants.OPTIMAL_CUT_MAX_IMBALANCE) {
+            expansionBound.offer(cut.getExpansionSize());
+        }
+    }
+
+    private boolean isDominatedCut(VertexCut<T> candidateCut) {
+        for (var otherCut : cuts) {
+            int imbalanceCompare = Double.compare(candidateCut.getImbalance(), otherCut.getImbalance());
+            if ((otherCut.getSize() < candidateCut.getSize() && imbalanceCompare >= 0)
+                    || (otherCut.getSize() <= candidateCut.getSize() && imbalanceCompare > 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // returns pareto optimal cuts
+    public List<VertexCut<T>> getCuts() {
+        return cuts;
+    }
+
+    private static int inState(int node) {
+        return 2 * node;
+    }
+
+    private static int outState(int node) {
+        return 2 * node + 1;
+    }
+
+    private static boolean isInState(int state) {
+        return (state & 1) == 0;
+    }
+
+    // The state deciding whether a node is on the given side, the other state of a separator node is reachable
+    private static int sideState(int node, CutSide cutSide) {
+        return cutSide == CutSide.SOURCE ? outState(node) : inState(node);
+    }
+}
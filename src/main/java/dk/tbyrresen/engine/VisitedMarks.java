@@ -0,0 +1,95 @@
+package dk.tbyrresen.engine;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+// Visited set over the indices 0..n-1 of a traversal, where an index is marked if its stamp equals the current
+// epoch. Clearing bumps the epoch, which takes O(1) instead of filling the array, and only when the epoch wraps
+// around are the stamps reset. A mark can carry an int, such as the parent of a node in a search tree, which is
+// only meaningful while the index is marked. Marks are pooled per thread like IntQueue.
+public final class VisitedMarks implements AutoCloseable {
+    private static final ThreadLocal<ArrayDeque<VisitedMarks>> POOL = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private int[] stamps = new int[0];
+    private int[] values = new int[0];
+    private int epoch = 0;
+    private boolean isAcquired = false;
+
+    private VisitedMarks() {
+    }
+
+    // Marks of the calling thread covering at least the given number of indices, none of them marked. They must
+    // be closed when the traversal is done.
+    public static VisitedMarks acquire(int capacity) {
+        var marks = POOL.get().poll();
+        if (marks == null) {
+            marks = new VisitedMarks();
+        }
+        marks.ensureCapacity(capacity);
+        marks.clear();
+        marks.isAcquired = true;
+        return marks;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (stamps.length < capacity) {
+            stamps = new int[Math.max(capacity, stamps.length * 2)];
+            values = new int[stamps.length];
+            epoch = 0;
+        }
+    }
+
+    // Unmarks every index
+    public void clear() {
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            epoch = 0;
+        }
+        epoch++;
+    }
+
+    public boolean isMarked(int index) {
+        return stamps[index] == epoch;
+    }
+
+    // Returns true if the index was not marked before
+    public boolean mark(int index) {
+        if (stamps[index] == epoch) {
+            return false;
+        }
+        stamps[index] = epoch;
+        return true;
+    }
+
+    // Marks the index if it was not marked before and sets its value, returns true if it was not marked before
+    public boolean mark(int index, int value) {
+        if (!mark(index)) {
+            return false;
+        }
+        values[index] = value;
+        return true;
+    }
+
+    // Unmarks a single index. Stamps are never zero while marked, since the epoch is at least one.
+    public void unmark(int index) {
+        stamps[index] = 0;
+    }
+
+    // Sets the value of a marked index
+    public void setValue(int index, int value) {
+        values[index] = value;
+    }
+
+    public int getValue(int index) {
+        return values[index];
+    }
+
+    // Gives the marks back to the pool of the calling thread. Closing them again has no effect.
+    @Override
+    public void close() {
+        if (isAcquired) {
+            isAcquired = false;
+            POOL.get().push(this);
+        }
+    }
+}
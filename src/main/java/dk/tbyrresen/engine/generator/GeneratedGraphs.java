@@ -0,0 +1,82 @@
+package dk.tbyrresen.engine.generator;
+
+import dk.tbyrresen.engine.CompactGraphWriter;
+import dk.tbyrresen.engine.Edge;
+import dk.tbyrresen.engine.Graph;
+import dk.tbyrresen.engine.Node;
+import dk.tbyrresen.engine.StandardEdge;
+import dk.tbyrresen.engine.StandardGraph;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+// Creates generators from textual specifications of the form <type>:<numNodes>[:<seed>] where type is one of
+//   grid        grid with 10% of the edges deleted
+//   geometric   Gabriel graph of random points with about 6 points within the connection radius
+//   roadlike    lattice of roads made of chains of 3 nodes, highways every 8th row and column and 30% of the
+//               local roads cut
+// and turns generated graphs into compact graph files or graphs. Node i gets id i in both.
+public final class GeneratedGraphs {
+    public static final long DEFAULT_SEED = 42;
+    private static final double GRID_DELETION_PROBABILITY = 0.1;
+    private static final double GEOMETRIC_EXPECTED_POINTS_IN_RADIUS = 6.0;
+    private static final int ROAD_CHAIN_LENGTH = 3;
+    private static final int ROAD_HIGHWAY_SPACING = 8;
+    private static final double ROAD_DELETION_PROBABILITY = 0.3;
+
+    private GeneratedGraphs() {
+    }
+
+    public static GraphGenerator fromSpecification(String specification) {
+        var parts = specification.split(":");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException(String.format("Invalid graph specification %s", specification));
+        }
+        var numNodes = Long.parseLong(parts[1]);
+        var seed = parts.length == 3 ? Long.parseLong(parts[2]) : DEFAULT_SEED;
+        switch (parts[0]) {
+            case "grid":
+                return GridGraphGenerator.withNumNodes(numNodes, GRID_DELETION_PROBABILITY, seed);
+            case "geometric":
+                return new GeometricGraphGenerator(numNodes, GEOMETRIC_EXPECTED_POINTS_IN_RADIUS, seed);
+            case "roadlike":
+                return RoadLikeGraphGenerator.withNumNodes(
+                        numNodes, ROAD_CHAIN_LENGTH, ROAD_HIGHWAY_SPACING, ROAD_DELETION_PROBABILITY, seed);
+            default:
+                throw new IllegalArgumentException(String.format("Unknown graph type %s", parts[0]));
+        }
+    }
+
+    // Streams the graph node by node into a compact graph file, so the graph never has to fit in memory
+    public static void writeCompact(GraphGenerator generator, Path file) throws IOException {
+        var neighbors = new int[generator.getMaxDegree()];
+        try (var writer = new CompactGraphWriter(file, generator.getNumNodes())) {
+            for (int node = 0; node < generator.getNumNodes(); node++) {
+                writer.writeNode(node, neighbors, generator.getNeighbors(node, neighbors));
+            }
+        }
+    }
+
+    public static Graph<Node> toGraph(GraphGenerator generator) {
+        var numNodes = generator.getNumNodes();
+        var nodeArray = new Node[numNodes];
+        Set<Node> nodes = new HashSet<>(numNodes * 2);
+        for (int i = 0; i < numNodes; i++) {
+            nodeArray[i] = new Node(i);
+            nodes.add(nodeArray[i]);
+        }
+        Set<Edge<Node>> edges = new HashSet<>();
+        var neighbors = new int[generator.getMaxDegree()];
+        for (int i = 0; i < numNodes; i++) {
+            var degree = generator.getNeighbors(i, neighbors);
+            for (int j = 0; j < degree; j++) {
+                if (i < neighbors[j]) {
+                    edges.add(new StandardEdge<>(nodeArray[i], nodeArray[neighbors[j]]));
+                }
+            }
+        }
+        return new StandardGraph<>(nodes, edges);
+    }
+}
@@ -0,0 +1,26 @@
+package dk.tbyrresen.engine.generator;
+
+// Stateless seeded randomness for generators. Values are derived by hashing the seed with a key (e.g. an edge or
+// a node), so any part of a generated graph can be recomputed independently of the rest.
+final class GeneratorRandom {
+    private GeneratorRandom() {
+    }
+
+    // SplitMix64 finalizer
+    static long hash(long seed, long key) {
+        var z = seed + key * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Uniform double in [0, 1)
+    static double uniform(long seed, long key) {
+        return (hash(seed, key) >>> 11) * 0x1.0p-53;
+    }
+
+    // Key of the undirected edge between two nodes, independent of the order of the nodes
+    static long edgeKey(int first, int second) {
+        return ((long) Math.min(first, second) << 32) | Math.max(first, second);
+    }
+}
@@ -0,0 +1,119 @@
+package dk.tbyrresen.engine.generator;
+
+import java.util.Arrays;
+
+// Random planar geometric graph: points are placed uniformly in the unit square and connected by the edges of
+// their Gabriel graph restricted to a connection radius. The Gabriel graph is a planar subgraph of the Delaunay
+// triangulation, so the result resembles a road network with low, fairly uniform degrees.
+// The square is divided into cells of side at least the radius holding the same number of points each, so node
+// i is point i % pointsPerCell of cell i / pointsPerCell and only the 3 x 3 surrounding cells need to be searched.
+public class GeometricGraphGenerator implements GraphGenerator {
+    private static final int MAX_DEGREE = 64;
+
+    private final int cellsPerSide;
+    private final int pointsPerCell;
+    private final double radius;
+    private final long seed;
+
+    // The radius is chosen such that a node has the given expected number of points within it. The Gabriel
+    // condition then removes roughly half of those connections.
+    public GeometricGraphGenerator(long numNodes, double expectedPointsInRadius, long seed) {
+        if (numNodes <= 0 || numNodes > Integer.MAX_VALUE || expectedPointsInRadius <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid geometric graph with %d nodes and %s expected points in radius",
+                    numNodes, expectedPointsInRadius));
+        }
+        radius = Math.min(1.0, Math.sqrt(expectedPointsInRadius / (Math.PI * numNodes)));
+        cellsPerSide = (int) Math.max(1, Math.floor(1.0 / radius));
+        pointsPerCell = (int) Math.max(1, Math.round((double) numNodes / ((long) cellsPerSide * cellsPerSide)));
+        if ((long) cellsPerSide * cellsPerSide * pointsPerCell > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Geometric graph with %d nodes is too large", numNodes));
+        }
+        this.seed = seed;
+    }
+
+    @Override
+    public int getNumNodes() {
+        return cellsPerSide * cellsPerSide * pointsPerCell;
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return MAX_DEGREE;
+    }
+
+    public double getX(int node) {
+        var cell = node / pointsPerCell;
+        return ((cell % cellsPerSide) + GeneratorRandom.uniform(seed, 2L * node)) / cellsPerSide;
+    }
+
+    public double getY(int node) {
+        var cell = node / pointsPerCell;
+        return ((cell / cellsPerSide) + GeneratorRandom.uniform(seed, 2L * node + 1)) / cellsPerSide;
+    }
+
+    @Override
+    public int getNeighbors(int node, int[] neighbors) {
+        var candidates = findPointsWithinRadius(node);
+        var x = getX(node);
+        var y = getY(node);
+        var degree = 0;
+        for (var candidate : candidates) {
+            if (isGabrielEdge(x, y, candidate, candidates)) {
+                if (degree == MAX_DEGREE) {
+                    // truncating would make the graph asymmetric, and never happens for Gabriel graphs in practice
+                    throw new IllegalStateException(String.format("Node %d exceeds the max degree %d", node, MAX_DEGREE));
+                }
+                neighbors[degree++] = candidate;
+            }
+        }
+        return degree;
+    }
+
+    private int[] findPointsWithinRadius(int node) {
+        var cell = node / pointsPerCell;
+        var cellX = cell % cellsPerSide;
+        var cellY = cell / cellsPerSide;
+        var x = getX(node);
+        var y = getY(node);
+        var found = new int[9 * pointsPerCell];
+        var numFound = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                var otherX = cellX + dx;
+                var otherY = cellY + dy;
+                if (otherX < 0 || otherY < 0 || otherX >= cellsPerSide || otherY >= cellsPerSide) {
+                    continue;
+                }
+                var firstPoint = (otherY * cellsPerSide + otherX) * pointsPerCell;
+                for (int other = firstPoint; other < firstPoint + pointsPerCell; other++) {
+                    if (other != node && squaredDistance(x, y, getX(other), getY(other)) <= radius * radius) {
+                        found[numFound++] = other;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(found, numFound);
+    }
+
+    // The edge is in the Gabriel graph iff no other point lies in the circle with the edge as its diameter. Any
+    // such witness is within the radius of the node, so it is among the candidates.
+    private boolean isGabrielEdge(double x, double y, int neighbor, int[] candidates) {
+        var neighborX = getX(neighbor);
+        var neighborY = getY(neighbor);
+        var middleX = (x + neighborX) / 2;
+        var middleY = (y + neighborY) / 2;
+        var squaredHalfLength = squaredDistance(x, y, neighborX, neighborY) / 4;
+        for (var witness : candidates) {
+            if (witness != neighbor
+                    && squaredDistance(middleX, middleY, getX(witness), getY(witness)) < squaredHalfLength) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double squaredDistance(double x1, double y1, double x2, double y2) {
+        return (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+    }
+}
@@ -0,0 +1,14 @@
+package dk.tbyrresen.engine.generator;
+
+// Seeded generator of an undirected graph on the nodes 0..n-1. The neighbors of every node can be computed on
+// their own, deterministically and symmetrically, which lets us stream graphs far larger than what fits in memory
+// as objects straight into the compact graph format one node at a time.
+public interface GraphGenerator {
+    int getNumNodes();
+
+    // Upper bound on the degree of any node, used to size neighbor buffers
+    int getMaxDegree();
+
+    // Writes the neighbors of the node into the buffer and returns how many were written
+    int getNeighbors(int node, int[] neighbors);
+}
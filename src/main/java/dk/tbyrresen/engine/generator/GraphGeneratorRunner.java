@@ -0,0 +1,45 @@
+package dk.tbyrresen.engine.generator;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Writes generated graphs to compact graph files, e.g. for producing benchmark inputs of increasing size offline
+public class GraphGeneratorRunner {
+    public static void main(String[] args) {
+        Options options = new Options();
+        Option specification = new Option("s", "spec", true, "graph to generate, e.g. 'roadlike:1000000[:seed]'");
+        specification.setRequired(true);
+        Option output = new Option("o", "output", true, "compact graph file to write");
+        output.setRequired(true);
+        options.addOption(specification);
+        options.addOption(output);
+
+        CommandLineParser parser = new DefaultParser();
+        HelpFormatter formatter = new HelpFormatter();
+        CommandLine cmd;
+
+        try {
+            cmd = parser.parse(options, args);
+            var generator = GeneratedGraphs.fromSpecification(cmd.getOptionValue("spec"));
+            var startTime = System.currentTimeMillis();
+            GeneratedGraphs.writeCompact(generator, Path.of(cmd.getOptionValue("output")));
+            var endTime = System.currentTimeMillis();
+            System.out.println("Generated nodes: " + generator.getNumNodes());
+            System.out.println("Generation time (seconds): " + TimeUnit.MILLISECONDS.toSeconds(endTime - startTime));
+        } catch (ParseException e) {
+            formatter.printHelp("args for generating graphs", options);
+        } catch (NumberFormatException e) {
+            System.out.println("please provide integer values when required");
+        } catch (Exception e) {
+            System.out.println("error thrown: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package dk.tbyrresen.engine.generator;
+
+// Grid graph where every edge is independently deleted with a given probability. Node (row, column) has index
+// row * width + column.
+public class GridGraphGenerator implements GraphGenerator {
+    private final int width;
+    private final int height;
+    private final double deletionProbability;
+    private final long seed;
+
+    public GridGraphGenerator(int width, int height, double deletionProbability, long seed) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Invalid grid dimensions %d x %d", width, height));
+        }
+        if (deletionProbability < 0.0 || deletionProbability >= 1.0) {
+            throw new IllegalArgumentException(String.format(
+                    "Deletion probability %s is not in valid range of [0.0, 1.0)", deletionProbability));
+        }
+        this.width = width;
+        this.height = height;
+        this.deletionProbability = deletionProbability;
+        this.seed = seed;
+    }
+
+    // Square grid with approximately the given number of nodes
+    public static GridGraphGenerator withNumNodes(long numNodes, double deletionProbability, long seed) {
+        var width = (int) Math.max(1, Math.round(Math.sqrt(numNodes)));
+        return new GridGraphGenerator(width, width, deletionProbability, seed);
+    }
+
+    @Override
+    public int getNumNodes() {
+        return width * height;
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return 4;
+    }
+
+    @Override
+    public int getNeighbors(int node, int[] neighbors) {
+        var row = node / width;
+        var column = node % width;
+        var degree = 0;
+        if (column > 0) {
+            degree = addIfKept(node, node - 1, neighbors, degree);
+        }
+        if (column + 1 < width) {
+            degree = addIfKept(node, node + 1, neighbors, degree);
+        }
+        if (row > 0) {
+            degree = addIfKept(node, node - width, neighbors, degree);
+        }
+        if (row + 1 < height) {
+            degree = addIfKept(node, node + width, neighbors, degree);
+        }
+        return degree;
+    }
+
+    private int addIfKept(int node, int neighbor, int[] neighbors, int degree) {
+        if (GeneratorRandom.uniform(seed, GeneratorRandom.edgeKey(node, neighbor)) >= deletionProbability) {
+            neighbors[degree++] = neighbor;
+        }
+        return degree;
+    }
+}
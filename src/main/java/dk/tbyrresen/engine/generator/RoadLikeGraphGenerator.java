@@ -0,0 +1,157 @@
+package dk.tbyrresen.engine.generator;
+
+// Hierarchical road-like graph. Intersections lie on a width x height lattice and every lattice edge is a road
+// made of a chain of degree two nodes. Every highwaySpacing-th row and column is a highway whose roads are always
+// kept, while local roads are cut with the given probability. A cut road is kept as two dead ends attached to
+// its intersections, like the cul-de-sacs of real networks, so no node is ever isolated.
+// Intersection (row, column) has index row * width + column. The chain nodes of horizontal roads follow, then
+// those of vertical roads, each road using chainLength consecutive indices ordered from its first intersection.
+public class RoadLikeGraphGenerator implements GraphGenerator {
+    private final int width;
+    private final int height;
+    private final int chainLength;
+    private final int highwaySpacing;
+    private final double deletionProbability;
+    private final long seed;
+    private final int numIntersections;
+    private final int numHorizontalRoads;
+
+    public RoadLikeGraphGenerator(int width,
+                                  int height,
+                                  int chainLength,
+                                  int highwaySpacing,
+                                  double deletionProbability,
+                                  long seed) {
+        if (width <= 1 || height <= 1 || chainLength < 0 || highwaySpacing <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid road-like graph of %d x %d intersections, chain length %d and highway spacing %d",
+                    width, height, chainLength, highwaySpacing));
+        }
+        if (deletionProbability < 0.0 || deletionProbability >= 1.0) {
+            throw new IllegalArgumentException(String.format(
+                    "Deletion probability %s is not in valid range of [0.0, 1.0)", deletionProbability));
+        }
+        var numRoads = (long) height * (width - 1) + (long) width * (height - 1);
+        if ((long) width * height + numRoads * chainLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Road-like graph is too large");
+        }
+        this.width = width;
+        this.height = height;
+        this.chainLength = chainLength;
+        this.highwaySpacing = highwaySpacing;
+        this.deletionProbability = deletionProbability;
+        this.seed = seed;
+        numIntersections = width * height;
+        numHorizontalRoads = height * (width - 1);
+    }
+
+    // Square lattice sized such that the graph has approximately the given number of nodes
+    public static RoadLikeGraphGenerator withNumNodes(long numNodes,
+                                                      int chainLength,
+                                                      int highwaySpacing,
+                                                      double deletionProbability,
+                                                      long seed) {
+        var width = (int) Math.max(2, Math.round(Math.sqrt(numNodes / (1.0 + 2.0 * chainLength))));
+        return new RoadLikeGraphGenerator(width, width, chainLength, highwaySpacing, deletionProbability, seed);
+    }
+
+    @Override
+    public int getNumNodes() {
+        return numIntersections + (numHorizontalRoads + width * (height - 1)) * chainLength;
+    }
+
+    @Override
+    public int getMaxDegree() {
+        return 4;
+    }
+
+    @Override
+    public int getNeighbors(int node, int[] neighbors) {
+        if (node < numIntersections) {
+            return getIntersectionNeighbors(node, neighbors);
+        }
+        var road = (node - numIntersections) / chainLength;
+        var position = (node - numIntersections) % chainLength;
+        var degree = 0;
+        var cutPosition = getCutPosition(road);
+        if (position != cutPosition) {
+            neighbors[degree++] = position == 0 ? getFirstIntersection(road) : node - 1;
+        }
+        if (position + 1 != cutPosition) {
+            neighbors[degree++] = position == chainLength - 1 ? getSecondIntersection(road) : node + 1;
+        }
+        return degree;
+    }
+
+    private int getIntersectionNeighbors(int intersection, int[] neighbors) {
+        var row = intersection / width;
+        var column = intersection % width;
+        var degree = 0;
+        if (column > 0) {
+            degree = addRoadEnd(getHorizontalRoad(row, column - 1), false, neighbors, degree);
+        }
+        if (column + 1 < width) {
+            degree = addRoadEnd(getHorizontalRoad(row, column), true, neighbors, degree);
+        }
+        if (row > 0) {
+            degree = addRoadEnd(getVerticalRoad(row - 1, column), false, neighbors, degree);
+        }
+        if (row + 1 < height) {
+            degree = addRoadEnd(getVerticalRoad(row, column), true, neighbors, degree);
+        }
+        return degree;
+    }
+
+    // Adds the node next to the intersection on the road if the road reaches the intersection at that end
+    private int addRoadEnd(int road, boolean isFirstIntersection, int[] neighbors, int degree) {
+        var cutPosition = getCutPosition(road);
+        if (chainLength == 0) {
+            if (cutPosition == -1) {
+                neighbors[degree++] = isFirstIntersection ? getSecondIntersection(road) : getFirstIntersection(road);
+            }
+        } else if (isFirstIntersection && cutPosition != 0) {
+            neighbors[degree++] = numIntersections + road * chainLength;
+        } else if (!isFirstIntersection && cutPosition != chainLength) {
+            neighbors[degree++] = numIntersections + road * chainLength + chainLength - 1;
+        }
+        return degree;
+    }
+
+    // Position in the chain where a cut road is broken, i.e. the link between chain positions cutPosition - 1 and
+    // cutPosition is missing where -1 and chainLength denote the intersections. Returns -1 for roads that are kept.
+    private int getCutPosition(int road) {
+        if (isHighway(road) || GeneratorRandom.uniform(seed, road) >= deletionProbability) {
+            return -1;
+        }
+        return chainLength / 2;
+    }
+
+    private boolean isHighway(int road) {
+        if (road < numHorizontalRoads) {
+            return (road / (width - 1)) % highwaySpacing == 0;
+        }
+        return ((road - numHorizontalRoads) % width) % highwaySpacing == 0;
+    }
+
+    private int getHorizontalRoad(int row, int column) {
+        return row * (width - 1) + column;
+    }
+
+    private int getVerticalRoad(int row, int column) {
+        return numHorizontalRoads + row * width + column;
+    }
+
+    private int getFirstIntersection(int road) {
+        if (road < numHorizontalRoads) {
+            return (road / (width - 1)) * width + road % (width - 1);
+        }
+        return road - numHorizontalRoads;
+    }
+
+    private int getSecondIntersection(int road) {
+        if (road < numHorizontalRoads) {
+            return getFirstIntersection(road) + 1;
+        }
+        return road - numHorizontalRoads + width;
+    }
+}
@@ -0,0 +1,25 @@
+package dk.tbyrresen.engine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+// There is one of these for every piercing step, so short phases are not recorded by default
+@Name("dk.tbyrresen.engine.EdmondsKarpPhase")
+@Label("Edmonds-Karp Phase")
+@Category({"Nested Dissection", "Flow"})
+@Description("Flow augmentation or reachability update of a FlowCutter run")
+@Threshold("1 ms")
+public final class EdmondsKarpPhaseEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Augmenting Paths")
+    public int numAugmentingPaths;
+
+    @Label("Visited Nodes")
+    public long numVisitedNodes;
+}
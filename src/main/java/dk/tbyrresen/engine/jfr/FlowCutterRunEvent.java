@@ -0,0 +1,30 @@
+package dk.tbyrresen.engine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("dk.tbyrresen.engine.FlowCutterRun")
+@Label("FlowCutter Run")
+@Category({"Nested Dissection", "Separators"})
+@Description("A single FlowCutter run between one source and target pair")
+public final class FlowCutterRunEvent extends Event {
+    @Label("Graph Nodes")
+    public int numNodes;
+
+    @Label("Piercing Steps")
+    public int numPiercingSteps;
+
+    @Label("Max Flow")
+    @Description("Size of the last cut found")
+    public int maxFlow;
+
+    @Label("Pareto Cuts")
+    public int numCuts;
+
+    @Label("Abandoned")
+    @Description("The run stopped early since a concurrent run had already found a better cut")
+    public boolean isAbandoned;
+}
@@ -0,0 +1,39 @@
+package dk.tbyrresen.engine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("dk.tbyrresen.engine.GraphSeparator")
+@Label("Graph Separator")
+@Category({"Nested Dissection", "Separators"})
+@Description("Computation of a separator for a graph or subgraph")
+public final class GraphSeparatorEvent extends Event {
+    @Label("Graph Nodes")
+    public int numNodes;
+
+    @Label("FlowCutter Runs")
+    public int numFlowCutterRuns;
+
+    @Label("Articulation Separator")
+    @Description("The separator is a single articulation point, so FlowCutter was not run")
+    public boolean isArticulationSeparator;
+
+    @Label("Cut Size")
+    @Description("Size of the chosen cut, in separator nodes for vertex cuts and in edges for edge cuts, "
+            + "0 for articulation separators")
+    public int cutSize;
+
+    @Label("Coarsening Levels")
+    @Description("Number of times the graph was coarsened before running FlowCutter, "
+            + "0 unless the multilevel path was used")
+    public int numCoarseningLevels;
+
+    @Label("Separator Size")
+    public int separatorSize;
+
+    @Label("Imbalance")
+    public double imbalance;
+}
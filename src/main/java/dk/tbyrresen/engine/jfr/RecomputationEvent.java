@@ -0,0 +1,23 @@
+package dk.tbyrresen.engine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("dk.tbyrresen.engine.Recomputation")
+@Label("ND-Tree Recomputation")
+@Category({"Nested Dissection", "ND-Tree"})
+@Description("Rebuild of the subtree of an ND-tree node after an insertion")
+public final class RecomputationEvent extends Event {
+    @Label("Depth")
+    public int depth;
+
+    @Label("Subtree Nodes")
+    @Description("Number of graph nodes in the rebuilt subtree")
+    public int subtreeNodes;
+
+    @Label("Trigger")
+    public String trigger;
+}
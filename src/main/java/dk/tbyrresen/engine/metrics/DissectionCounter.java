@@ -0,0 +1,12 @@
+package dk.tbyrresen.engine.metrics;
+
+public enum DissectionCounter {
+    AUGMENTING_PATHS,
+    BFS_NODES_VISITED,
+    PIERCING_STEPS,
+    AUGMENTING_PIERCINGS,
+    NON_AUGMENTING_PIERCINGS,
+    ABANDONED_FLOWCUTTER_RUNS,
+    GLOBAL_RELABELS,
+    ADOPTED_ORPHANS
+}
@@ -0,0 +1,154 @@
+package dk.tbyrresen.engine.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Process wide timers and counters for the dissection pipeline. Values are accumulated in LongAdders, which are
+// striped per thread under contention, so the parallel separator runs can record without contending on a single
+// counter. Metrics are only recorded when the JVM is started with -Ddk.tbyrresen.engine.metrics=true. The flag is
+// a static final, so when it is off the JIT removes the recording calls entirely and the cost is near zero.
+//
+// Typical use around a phase:
+//   var start = DissectionMetrics.startTimer();
+//   ...
+//   DissectionMetrics.stopTimer(DissectionPhase.CUT_EXTRACTION, start);
+public final class DissectionMetrics {
+    public static final boolean ENABLED = Boolean.getBoolean("dk.tbyrresen.engine.metrics");
+    private static final String MBEAN_NAME = "dk.tbyrresen.engine:type=DissectionMetrics";
+
+    private static final LongAdder[] phaseNanos = newAdders(DissectionPhase.values().length);
+    private static final LongAdder[] phaseInvocations = newAdders(DissectionPhase.values().length);
+    private static final LongAdder[] counters = newAdders(DissectionCounter.values().length);
+    private static final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+
+    private DissectionMetrics() {
+    }
+
+    private static LongAdder[] newAdders(int size) {
+        var adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    public static long startTimer() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static void stopTimer(DissectionPhase phase, long startNanos) {
+        if (ENABLED) {
+            phaseNanos[phase.ordinal()].add(System.nanoTime() - startNanos);
+            phaseInvocations[phase.ordinal()].increment();
+        }
+    }
+
+    public static void increment(DissectionCounter counter) {
+        if (ENABLED) {
+            counters[counter.ordinal()].increment();
+        }
+    }
+
+    public static void add(DissectionCounter counter, long amount) {
+        if (ENABLED) {
+            counters[counter.ordinal()].add(amount);
+        }
+    }
+
+    public static MetricsSnapshot snapshot() {
+        var nanos = new EnumMap<DissectionPhase, Long>(DissectionPhase.class);
+        var invocations = new EnumMap<DissectionPhase, Long>(DissectionPhase.class);
+        for (var phase : DissectionPhase.values()) {
+            nanos.put(phase, phaseNanos[phase.ordinal()].sum());
+            invocations.put(phase, phaseInvocations[phase.ordinal()].sum());
+        }
+        var counts = new EnumMap<DissectionCounter, Long>(DissectionCounter.class);
+        for (var counter : DissectionCounter.values()) {
+            counts.put(counter, counters[counter.ordinal()].sum());
+        }
+        return new MetricsSnapshot(nanos, invocations, counts);
+    }
+
+    public static void reset() {
+        for (var adders : List.of(phaseNanos, phaseInvocations, counters)) {
+            for (var adder : adders) {
+                adder.reset();
+            }
+        }
+    }
+
+    public static void addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+    }
+
+    public static void removeExporter(MetricsExporter exporter) {
+        exporters.remove(exporter);
+    }
+
+    // Hands a snapshot of the current metrics to every registered exporter
+    public static void export() {
+        if (exporters.isEmpty()) {
+            return;
+        }
+        var snapshot = snapshot();
+        for (var exporter : exporters) {
+            exporter.export(snapshot);
+        }
+    }
+
+    // Registers the metrics with the platform MBean server so they can be inspected live with e.g. JConsole.
+    // Registering more than once has no effect.
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMXBean(), new ObjectName(MBEAN_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // already registered
+        } catch (JMException e) {
+            throw new IllegalStateException(String.format("Could not register MBean %s", MBEAN_NAME), e);
+        }
+    }
+
+    private static class MetricsMXBean implements DissectionMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public Map<String, Long> getPhaseMillis() {
+            return toNamedMap(snapshot().getPhaseNanos(), TimeUnit.NANOSECONDS::toMillis);
+        }
+
+        @Override
+        public Map<String, Long> getPhaseInvocations() {
+            return toNamedMap(snapshot().getPhaseInvocations(), Function.identity());
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            return toNamedMap(snapshot().getCounters(), Function.identity());
+        }
+
+        @Override
+        public void reset() {
+            DissectionMetrics.reset();
+        }
+
+        private static <E extends Enum<E>> Map<String, Long> toNamedMap(Map<E, Long> values,
+                                                                        Function<Long, Long> conversion) {
+            Map<String, Long> named = new LinkedHashMap<>();
+            values.forEach((key, value) -> named.put(key.name(), conversion.apply(value)));
+            return named;
+        }
+    }
+}
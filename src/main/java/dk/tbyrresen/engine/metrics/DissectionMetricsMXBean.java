@@ -0,0 +1,16 @@
+package dk.tbyrresen.engine.metrics;
+
+import java.util.Map;
+
+// Management interface of the dissection metrics, registered by DissectionMetrics.registerMBean
+public interface DissectionMetricsMXBean {
+    boolean isEnabled();
+
+    Map<String, Long> getPhaseMillis();
+
+    Map<String, Long> getPhaseInvocations();
+
+    Map<String, Long> getCounters();
+
+    void reset();
+}
@@ -0,0 +1,14 @@
+package dk.tbyrresen.engine.metrics;
+
+// The parts of the dissection pipeline whose time is measured separately. The phases never nest, so the times
+// of a single thread add up, while parallel separator runs are all counted and can sum to more than wall time.
+public enum DissectionPhase {
+    HOP_DISTANCE_BFS,     // hop distances from the source and target in FlowCutter
+    AUGMENTING_PATH,      // augmenting flow and updating the reachable sets after piercing
+    CUT_EXTRACTION,       // extracting cuts, choosing piercing nodes and filtering dominated cuts
+    SEPARATOR_CONVERSION, // choosing the optimal cut and converting it into a node separator
+    SEPARATOR_REFINEMENT, // local search improving the node separator
+    COARSENING,           // contracting large graphs and projecting separators back in the multilevel path
+    COMPONENT_FINDING,    // articulation points and the connected components of the separated sides
+    TREE_BOOKKEEPING      // locating, updating and rebuilding the graphs of ND-tree nodes
+}
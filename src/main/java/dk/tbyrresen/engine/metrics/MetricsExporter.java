@@ -0,0 +1,6 @@
+package dk.tbyrresen.engine.metrics;
+
+// Receives the metrics whenever DissectionMetrics.export is called, e.g. to write them to a log or a file
+public interface MetricsExporter {
+    void export(MetricsSnapshot snapshot);
+}
@@ -0,0 +1,45 @@
+package dk.tbyrresen.engine.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Point in time copy of the dissection metrics. Values recorded concurrently with taking the snapshot may or may
+// not be included.
+public class MetricsSnapshot {
+    private final Map<DissectionPhase, Long> phaseNanos;
+    private final Map<DissectionPhase, Long> phaseInvocations;
+    private final Map<DissectionCounter, Long> counters;
+
+    MetricsSnapshot(EnumMap<DissectionPhase, Long> phaseNanos,
+                    EnumMap<DissectionPhase, Long> phaseInvocations,
+                    EnumMap<DissectionCounter, Long> counters) {
+        this.phaseNanos = Collections.unmodifiableMap(phaseNanos);
+        this.phaseInvocations = Collections.unmodifiableMap(phaseInvocations);
+        this.counters = Collections.unmodifiableMap(counters);
+    }
+
+    public long getPhaseNanos(DissectionPhase phase) {
+        return phaseNanos.get(phase);
+    }
+
+    public long getPhaseInvocations(DissectionPhase phase) {
+        return phaseInvocations.get(phase);
+    }
+
+    public long getCount(DissectionCounter counter) {
+        return counters.get(counter);
+    }
+
+    public Map<DissectionPhase, Long> getPhaseNanos() {
+        return phaseNanos;
+    }
+
+    public Map<DissectionPhase, Long> getPhaseInvocations() {
+        return phaseInvocations;
+    }
+
+    public Map<DissectionCounter, Long> getCounters() {
+        return counters;
+    }
+}
@@ -0,0 +1,20 @@
+package dk.tbyrresen.engine.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+public class PrintingMetricsExporter implements MetricsExporter {
+    @Override
+    public void export(MetricsSnapshot snapshot) {
+        System.out.println("Dissection phase times:");
+        for (var phase : DissectionPhase.values()) {
+            System.out.printf("  %-20s %10d ms in %d invocations%n",
+                              phase,
+                              TimeUnit.NANOSECONDS.toMillis(snapshot.getPhaseNanos(phase)),
+                              snapshot.getPhaseInvocations(phase));
+        }
+        System.out.println("Dissection counters:");
+        for (var counter : DissectionCounter.values()) {
+            System.out.printf("  %-24s %d%n", counter, snapshot.getCount(counter));
+        }
+    }
+}
@@ -0,0 +1,6 @@
+@NonNullApi
+@NonNullFields
+package dk.tbyrresen.engine.metrics;
+
+import org.springframework.lang.NonNullApi;
+import org.springframework.lang.NonNullFields;
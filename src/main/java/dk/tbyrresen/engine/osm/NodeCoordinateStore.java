@@ -0,0 +1,116 @@
+package dk.tbyrresen.engine.osm;
+
+import dk.tbyrresen.engine.Node;
+import dk.tbyrresen.engine.NodeCoordinates;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+// Latitudes and longitudes of a fixed set of OSM nodes, stored off heap as fixed point ints of 1e-7 degrees, the
+// precision of OSM itself. The node ids are kept sorted so the dense index of a node is the position of its id,
+// found by binary search, and the coordinates of the node with index i are at 2 * i and 2 * i + 1 in the buffer.
+// Coordinates are projected equirectangularly around the middle latitude of the stored nodes, which keeps
+// directions and distances close to true ones at the scale of a road network.
+public class NodeCoordinateStore implements NodeCoordinates<Node> {
+    private static final double FIXED_POINT_SCALE = 1e7;
+    private static final int MISSING = Integer.MIN_VALUE; // never a valid fixed point latitude or longitude
+
+    private final long[] sortedNodeIds;
+    private final IntBuffer coordinates;
+    private int numStored = 0;
+    private double longitudeScale = 1.0;
+
+    // Only the given nodes get coordinates, typically the nodes of the graph parsed from the same file
+    public NodeCoordinateStore(Collection<Node> nodes) {
+        if (nodes.size() > Integer.MAX_VALUE / Long.BYTES) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot store coordinates of %d nodes in a single buffer", nodes.size()));
+        }
+        sortedNodeIds = nodes.stream().mapToLong(Node::getId).sorted().distinct().toArray();
+        coordinates = ByteBuffer.allocateDirect(sortedNodeIds.length * 2 * Integer.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+        for (int i = 0; i < coordinates.capacity(); i++) {
+            coordinates.put(i, MISSING);
+        }
+    }
+
+    // Reads the coordinates of the given nodes from an OSM file. This is the second pass of the import, after the
+    // ways have been parsed into a graph, so only the nodes of the graph are kept.
+    public static NodeCoordinateStore read(String fileName, Collection<Node> nodes) {
+        var store = new NodeCoordinateStore(nodes);
+        OSMNodeHandler.parseFromXML(store, fileName);
+        store.updateProjection();
+        System.out.println("Read OSM node coordinates: " + store.getNumStored());
+        return store;
+    }
+
+    // Ignores nodes that are not kept
+    void put(long nodeId, double latitude, double longitude) {
+        var index = Arrays.binarySearch(sortedNodeIds, nodeId);
+        if (index < 0) {
+            return;
+        }
+        if (coordinates.get(2 * index) == MISSING) {
+            numStored++;
+        }
+        coordinates.put(2 * index, (int) Math.round(latitude * FIXED_POINT_SCALE));
+        coordinates.put(2 * index + 1, (int) Math.round(longitude * FIXED_POINT_SCALE));
+    }
+
+    private void updateProjection() {
+        var minLatitude = Integer.MAX_VALUE;
+        var maxLatitude = Integer.MIN_VALUE;
+        for (int i = 0; i < sortedNodeIds.length; i++) {
+            var latitude = coordinates.get(2 * i);
+            if (latitude != MISSING) {
+                minLatitude = Math.min(minLatitude, latitude);
+                maxLatitude = Math.max(maxLatitude, latitude);
+            }
+        }
+        if (numStored > 0) {
+            var middleLatitude = ((double) minLatitude + maxLatitude) / 2 / FIXED_POINT_SCALE;
+            longitudeScale = Math.cos(Math.toRadians(middleLatitude));
+        }
+    }
+
+    public int getNumStored() {
+        return numStored;
+    }
+
+    @Override
+    public boolean hasCoordinates(Node node) {
+        var index = Arrays.binarySearch(sortedNodeIds, node.getId());
+        return index >= 0 && coordinates.get(2 * index) != MISSING;
+    }
+
+    public double getLatitude(Node node) {
+        return coordinates.get(2 * getIndex(node)) / FIXED_POINT_SCALE;
+    }
+
+    public double getLongitude(Node node) {
+        return coordinates.get(2 * getIndex(node) + 1) / FIXED_POINT_SCALE;
+    }
+
+    // Degrees of longitude scaled to the length of a degree of latitude
+    @Override
+    public double getX(Node node) {
+        return getLongitude(node) * longitudeScale;
+    }
+
+    @Override
+    public double getY(Node node) {
+        return getLatitude(node);
+    }
+
+    private int getIndex(Node node) {
+        var index = Arrays.binarySearch(sortedNodeIds, node.getId());
+        if (index < 0 || coordinates.get(2 * index) == MISSING) {
+            throw new IllegalArgumentException(String.format("No coordinates stored for node %s", node));
+        }
+        return index;
+    }
+}
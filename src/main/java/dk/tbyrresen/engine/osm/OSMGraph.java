@@ -1,6 +1,10 @@
 package dk.tbyrresen.engine.osm;
 
+import dk.tbyrresen.engine.ConnectedComponentTracker;
 import dk.tbyrresen.engine.Edge;
+import dk.tbyrresen.engine.Graph;
+import dk.tbyrresen.engine.GraphUtils;
+import dk.tbyrresen.engine.LongIntHashMap;
 import dk.tbyrresen.engine.Node;
 import dk.tbyrresen.engine.StandardEdge;
 import dk.tbyrresen.engine.StandardGraph;
@@ -17,6 +21,8 @@ import java.util.Set;
 
 public class OSMGraph extends StandardGraph<Node> {
     private final Set<OSMWay> osmWays = new HashSet<>();
+    // Components are tracked while the edges are built so we never need a separate pass to find the LCC
+    private final ConnectedComponentTracker<Node> componentTracker = new ConnectedComponentTracker<>();
 
     // This is a really messed up way to make OSMGraph extend StandardGraph, but its good enough for our needs
     public OSMGraph(String fileName) {
@@ -34,29 +40,41 @@ public class OSMGraph extends StandardGraph<Node> {
         allowsParallelEdges = false;
     }
 
+    // Ways share most of their nodes, so every node id is given a dense index the first time it is seen, and only
+    // then is a node created. An edge is packed by the indices of its end points, so the parallel edges of ways
+    // sharing a stretch are dropped before an edge object is created or hashed.
     private Pair<Set<Node>, Set<Edge<Node>>> buildNodesAndEdgesFromOsmWays() {
-        Set<Node> graphNodes = new HashSet<>();
-        Set<Edge<Node>> graphEdges = new HashSet<>();
+        var nodeIndices = new LongIntHashMap();
+        List<Node> graphNodes = new ArrayList<>();
+        var packedEdges = new LongIntHashMap();
+        List<Edge<Node>> graphEdges = new ArrayList<>();
         for (var way : osmWays) {
-            List<Node> wayNodes = new ArrayList<>();
-            Set<Edge<Node>> wayEdges = new HashSet<>();
             Queue<Long> nodeRefs = way.getNodeRefs();
+            var previous = -1;
             while (!nodeRefs.isEmpty()) {
-                wayNodes.add(new Node(nodeRefs.remove()));
+                long nodeId = nodeRefs.remove();
+                var current = nodeIndices.putIfAbsent(nodeId, graphNodes.size());
+                if (current == graphNodes.size()) {
+                    graphNodes.add(new Node(nodeId));
+                    componentTracker.addNode(graphNodes.get(current));
+                }
+                // self loops are skipped, and parallel edges are removed by packing both directions to the same key
+                if (previous != -1 && previous != current) {
+                    var edgeIndex = packedEdges.putIfAbsent(GraphUtils.packEdge(previous, current), graphEdges.size());
+                    if (edgeIndex == graphEdges.size()) {
+                        graphEdges.add(new StandardEdge<>(graphNodes.get(previous), graphNodes.get(current)));
+                        componentTracker.addEdge(graphNodes.get(previous), graphNodes.get(current));
+                    }
+                }
+                previous = current;
             }
-            for (int i = 0; i < wayNodes.size() - 1; i++) {
-                wayEdges.add(new StandardEdge<>(wayNodes.get(i), wayNodes.get(i + 1)));
-            }
-            graphNodes.addAll(wayNodes);
-            graphEdges.addAll(wayEdges);
         }
-        removeSelfLoops(graphEdges);
-        // parallel edges are removed by using set to contains nodes and by having an appropriate equals method
-        return ImmutablePair.of(graphNodes, graphEdges);
+        return ImmutablePair.of(new HashSet<>(graphNodes), new HashSet<>(graphEdges));
     }
 
-    private void removeSelfLoops(Set<Edge<Node>> edges) {
-        edges.removeIf(e -> e.getSource().equals(e.getTarget()));
+    // Builds only the largest connected component as its own graph
+    public Graph<Node> getLargestConnectedComponent() {
+        return GraphUtils.extractSubGraph(this, componentTracker.getLargestComponentNodes());
     }
 
     public void addWay(OSMWay way) {
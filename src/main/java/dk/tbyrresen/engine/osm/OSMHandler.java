@@ -52,7 +52,7 @@ public class OSMHandler extends DefaultHandler {
     }
 
     // Note that we simply ignore nodes and instead build these from the parsed ways. This is much cheaper since we
-    // only care about the node ids and not lat and lon.
+    // only care about the node ids here, the lat and lon are read in a second pass by NodeCoordinateStore if needed.
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) {
         if (qName.equals("way")) {
@@ -0,0 +1,52 @@
+package dk.tbyrresen.engine.osm;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
+
+// Reads the lat and lon of the node elements into a coordinate store, which keeps only the nodes it was created
+// for. Everything but the node elements is skipped, and OSM files list all nodes before the ways, so we stop at
+// the first way.
+public class OSMNodeHandler extends DefaultHandler {
+    private final NodeCoordinateStore store;
+
+    private OSMNodeHandler(NodeCoordinateStore store) {
+        this.store = store;
+    }
+
+    public static void parseFromXML(NodeCoordinateStore store, String fileName) {
+        try {
+            SAXParserFactory saxFactory = SAXParserFactory.newInstance();
+            SAXParser saxParser = saxFactory.newSAXParser();
+            saxParser.parse(fileName, new OSMNodeHandler(store));
+        } catch (EndOfNodesException e) {
+            // all nodes have been read
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        if (qName.equals("node")) {
+            store.put(Long.parseLong(attributes.getValue("id")),
+                      Double.parseDouble(attributes.getValue("lat")),
+                      Double.parseDouble(attributes.getValue("lon")));
+        } else if (qName.equals("way")) {
+            throw new EndOfNodesException();
+        }
+    }
+
+    private static class EndOfNodesException extends SAXException {
+        private static final long serialVersionUID = 1L;
+
+        private EndOfNodesException() {
+            super("All OSM nodes have been read");
+        }
+    }
+}